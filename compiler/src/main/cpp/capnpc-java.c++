@@ -1074,6 +1074,16 @@ private:
                          spaces(indent), "    _setPointerField(factory, ", offset, ", value);\n",
                          spaces(indent), "  }\n")),
 
+            (field.getType().getBrandParameter() != nullptr ? kj::strTree() :
+             kj::strTree(
+               spaces(indent), "  public final org.capnproto.Orphan<", builderType, "> disown", titleCase, "() {\n",
+               unionDiscrim.check,
+               spaces(indent), "    return _disownPointerField(", factoryArg, ", ", offset, ");\n",
+               spaces(indent), "  }\n",
+               spaces(indent), "  public final void adopt", titleCase, "(org.capnproto.Orphan<", builderType, "> value) {\n",
+               unionDiscrim.set,
+               spaces(indent), "    _adoptPointerField(", offset, ", value);\n",
+               spaces(indent), "  }\n")),
 
             "\n"),
       };
@@ -1133,6 +1143,15 @@ private:
           unionDiscrim.set,
           spaces(indent), "    return ",
           "_initPointerField(", factoryArg, ",",  offset, ", 0);\n",
+          spaces(indent), "  }\n",
+
+          spaces(indent), "  public final org.capnproto.Orphan<", builderType, "> disown", titleCase, "() {\n",
+          unionDiscrim.check,
+          spaces(indent), "    return _disownPointerField(", factoryArg, ", ", offset, ");\n",
+          spaces(indent), "  }\n",
+          spaces(indent), "  public final void adopt", titleCase, "(org.capnproto.Orphan<", builderType, "> value) {\n",
+          unionDiscrim.set,
+          spaces(indent), "    _adoptPointerField(", offset, ", value);\n",
           spaces(indent), "  }\n"),
       };
 
@@ -1183,6 +1202,15 @@ private:
           spaces(indent), "  public final ", builderType, " init", titleCase, "(int size) {\n",
           unionDiscrim.set,
           spaces(indent), "    return _initPointerField(", factory, ", ", offset, ", size);\n",
+          spaces(indent), "  }\n",
+
+          spaces(indent), "  public final org.capnproto.Orphan<", builderType, "> disown", titleCase, "() {\n",
+          unionDiscrim.check,
+          spaces(indent), "    return _disownPointerField(", factory, ", ", offset, ");\n",
+          spaces(indent), "  }\n",
+          spaces(indent), "  public final void adopt", titleCase, "(org.capnproto.Orphan<", builderType, "> value) {\n",
+          unionDiscrim.set,
+          spaces(indent), "    _adoptPointerField(", offset, ", value);\n",
           spaces(indent), "  }\n"),
       };
     } else if (kind == FieldKind::LIST) {
@@ -1312,7 +1340,18 @@ private:
                unionDiscrim.set,
                spaces(indent), "    return _initPointerField(", listFactory, ", ", offset, ", size);\n",
                spaces(indent), "  }\n")
-              )
+              ),
+
+            (isGeneric ? kj::strTree() :
+             kj::strTree(
+               spaces(indent), "  public final org.capnproto.Orphan<", builderType, "> disown", titleCase, "() {\n",
+               unionDiscrim.check,
+               spaces(indent), "    return _disownPointerField(", listFactory, ", ", offset, ");\n",
+               spaces(indent), "  }\n",
+               spaces(indent), "  public final void adopt", titleCase, "(org.capnproto.Orphan<", builderType, "> value) {\n",
+               unionDiscrim.set,
+               spaces(indent), "    _adoptPointerField(", offset, ", value);\n",
+               spaces(indent), "  }\n"))
           ),
 
 
@@ -0,0 +1,235 @@
+// Copyright (c) 2013-2014 Sandstorm Development Group, Inc. and contributors
+// Licensed under the MIT License:
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.capnproto;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Learns how large the messages built for a given key (for example a root struct type
+ * or a call site) end up, and hands out Allocators whose first segment is big enough
+ * to hold most of them.
+ *
+ * Call newAllocator(key) (or newMessageBuilder(key)) when starting a message, and
+ * record(key, message) once it is complete. The first segment is sized to the
+ * configured quantile of the recorded sizes, so that most messages fit in one
+ * segment without far pointers while small messages do not pay for a large one.
+ * Later segments grow as with BuilderArena.AllocationStrategy.GROW_HEURISTICALLY.
+ *
+ * Instances are safe to share between threads.
+ */
+public final class AdaptiveAllocator {
+
+    // Upper bounds, in words, of the histogram buckets: four per power of two.
+    private static final int[] BUCKET_WORDS;
+    static {
+        int[] bounds = new int[128];
+        int count = 0;
+        for (int ii = 1; ii <= 4; ++ii) {
+            bounds[count++] = ii;
+        }
+        for (int base = 4; base < 1 << 28; base <<= 1) {
+            for (int step = 1; step <= 4; ++step) {
+                bounds[count++] = base + step * (base / 4);
+            }
+        }
+        BUCKET_WORDS = Arrays.copyOf(bounds, count);
+    }
+
+    private static int bucket(long words) {
+        if (words > BUCKET_WORDS[BUCKET_WORDS.length - 1]) {
+            return BUCKET_WORDS.length - 1;
+        }
+        int index = Arrays.binarySearch(BUCKET_WORDS, (int)words);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * A snapshot of what has been recorded for one key.
+     */
+    public static final class Stats {
+        // number of messages recorded
+        public final long messages;
+
+        // how many of them fit in their first segment
+        public final long singleSegmentMessages;
+
+        // total words used by the recorded messages
+        public final long usedWords;
+
+        // total words allocated for the recorded messages
+        public final long allocatedWords;
+
+        // the first segment size that newAllocator() currently picks
+        public final int firstSegmentWords;
+
+        Stats(long messages, long singleSegmentMessages, long usedWords, long allocatedWords,
+              int firstSegmentWords) {
+            this.messages = messages;
+            this.singleSegmentMessages = singleSegmentMessages;
+            this.usedWords = usedWords;
+            this.allocatedWords = allocatedWords;
+            this.firstSegmentWords = firstSegmentWords;
+        }
+
+        @Override
+        public String toString() {
+            return "messages=" + messages + " singleSegment=" + singleSegmentMessages +
+                " usedWords=" + usedWords + " allocatedWords=" + allocatedWords +
+                " firstSegmentWords=" + firstSegmentWords;
+        }
+    }
+
+    private final class Histogram {
+        final AtomicLongArray counts = new AtomicLongArray(BUCKET_WORDS.length);
+        final AtomicLong messages = new AtomicLong();
+        final AtomicLong singleSegmentMessages = new AtomicLong();
+        final AtomicLong usedWords = new AtomicLong();
+        final AtomicLong allocatedWords = new AtomicLong();
+        volatile int firstSegmentWords = AdaptiveAllocator.this.initialSegmentWords;
+
+        void record(long used, long allocated, boolean singleSegment) {
+            this.counts.incrementAndGet(bucket(used));
+            this.usedWords.addAndGet(used);
+            this.allocatedWords.addAndGet(allocated);
+            if (singleSegment) {
+                this.singleSegmentMessages.incrementAndGet();
+            }
+            long n = this.messages.incrementAndGet();
+            // Recomputing is a scan over the buckets, so after a warm-up only do it now and then.
+            if (n <= RECOMPUTE_INTERVAL || n % RECOMPUTE_INTERVAL == 0) {
+                this.firstSegmentWords = quantileWords();
+            }
+        }
+
+        int quantileWords() {
+            long total = 0;
+            for (int ii = 0; ii < BUCKET_WORDS.length; ++ii) {
+                total += this.counts.get(ii);
+            }
+            long target = (long)Math.ceil(total * AdaptiveAllocator.this.quantile);
+            long seen = 0;
+            for (int ii = 0; ii < BUCKET_WORDS.length; ++ii) {
+                seen += this.counts.get(ii);
+                if (seen >= target) {
+                    return Math.max(AdaptiveAllocator.this.minSegmentWords,
+                                    Math.min(BUCKET_WORDS[ii], AdaptiveAllocator.this.maxSegmentWords));
+                }
+            }
+            return AdaptiveAllocator.this.maxSegmentWords;
+        }
+    }
+
+    private static final int RECOMPUTE_INTERVAL = 64;
+
+    public final double quantile;
+    public final int initialSegmentWords;
+    public final int minSegmentWords;
+    public final int maxSegmentWords;
+
+    private final ConcurrentHashMap<Object, Histogram> histograms =
+        new ConcurrentHashMap<Object, Histogram>();
+
+    /**
+     * Sizes first segments to hold 95% of messages.
+     */
+    public AdaptiveAllocator() {
+        this(0.95, BuilderArena.SUGGESTED_FIRST_SEGMENT_WORDS, 8, 1 << 24);
+    }
+
+    /**
+     * @param quantile fraction of messages that the first segment should be able to hold
+     * @param initialSegmentWords first segment size for a key that has no recorded messages yet
+     * @param minSegmentWords smallest first segment to allocate
+     * @param maxSegmentWords largest first segment to allocate
+     */
+    public AdaptiveAllocator(double quantile, int initialSegmentWords,
+                             int minSegmentWords, int maxSegmentWords) {
+        if (!(quantile > 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("quantile must be in (0, 1]");
+        }
+        if (minSegmentWords <= 0 || maxSegmentWords < minSegmentWords || maxSegmentWords >= 1 << 28) {
+            throw new IllegalArgumentException("invalid segment size bounds");
+        }
+        this.quantile = quantile;
+        this.initialSegmentWords = Math.max(minSegmentWords, Math.min(initialSegmentWords, maxSegmentWords));
+        this.minSegmentWords = minSegmentWords;
+        this.maxSegmentWords = maxSegmentWords;
+    }
+
+    private Histogram histogram(Object key) {
+        Histogram result = this.histograms.get(key);
+        if (result == null) {
+            Histogram fresh = new Histogram();
+            result = this.histograms.putIfAbsent(key, fresh);
+            if (result == null) {
+                result = fresh;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns an Allocator for one message built for `key`.
+     */
+    public Allocator newAllocator(Object key) {
+        DefaultAllocator allocator = new DefaultAllocator(BuilderArena.AllocationStrategy.GROW_HEURISTICALLY);
+        allocator.setNextAllocationSizeBytes(histogram(key).firstSegmentWords * Constants.BYTES_PER_WORD);
+        return allocator;
+    }
+
+    public MessageBuilder newMessageBuilder(Object key) {
+        return new MessageBuilder(newAllocator(key));
+    }
+
+    /**
+     * Records the final size of a message built for `key`. Call this once the message is
+     * complete, before it is reset or released.
+     */
+    public void record(Object key, MessageBuilder message) {
+        java.util.ArrayList<SegmentBuilder> segments = message.arena.segments;
+        long used = 0;
+        long allocated = 0;
+        for (int ii = 0; ii < segments.size(); ++ii) {
+            SegmentBuilder segment = segments.get(ii);
+            used += segment.currentSize();
+            allocated += segment.capacity();
+        }
+        histogram(key).record(used, allocated, segments.size() <= 1);
+    }
+
+    /**
+     * Returns what has been recorded for `key` so far. A key that has not been seen yet
+     * gets empty Stats, without being added.
+     */
+    public Stats stats(Object key) {
+        Histogram histogram = this.histograms.get(key);
+        if (histogram == null) {
+            return new Stats(0, 0, 0, 0, this.initialSegmentWords);
+        }
+        return new Stats(histogram.messages.get(), histogram.singleSegmentMessages.get(),
+                         histogram.usedWords.get(), histogram.allocatedWords.get(),
+                         histogram.firstSegmentWords);
+    }
+}
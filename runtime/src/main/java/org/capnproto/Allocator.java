@@ -10,4 +10,22 @@ public interface Allocator {
      * set to zero.
      */
    public java.nio.ByteBuffer allocateSegment(int minimumSize);
+
+    /**
+     * Like allocateSegment(int), for a message whose earlier segments hold `messageBytes`
+     * bytes in total, or zero when this is to be its first segment. Allocators shared by
+     * many messages can use this to grow segments over the course of each message. The
+     * default ignores `messageBytes`.
+     */
+   public default java.nio.ByteBuffer allocateSegment(int minimumSize, int messageBytes) {
+       return allocateSegment(minimumSize);
+   }
+
+    /**
+     * Hands back a segment previously returned by allocateSegment() once the message
+     * using it has been released (see MessageBuilder.release()). All of the
+     * segment's bytes have been set to zero by the time this is called, so it may
+     * be returned again by a later allocateSegment(). The default does nothing.
+     */
+   public default void releaseSegment(java.nio.ByteBuffer segment) { }
 }
@@ -98,6 +98,14 @@ public final class AnyPointer {
             factory.setPointerBuilder(this.segment, this.pointer, reader);
         }
 
+        public final <T> Orphan<T> disownAs(FromPointerBuilder<T> factory) {
+            return Orphan.disown(factory, this.segment, this.pointer);
+        }
+
+        public final void adopt(Orphan<?> orphan) {
+            orphan.adoptInto(this.segment, this.pointer);
+        }
+
         public final Reader asReader() {
             return new Reader(segment, pointer, java.lang.Integer.MAX_VALUE);
         }
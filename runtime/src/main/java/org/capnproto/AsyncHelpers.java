@@ -0,0 +1,278 @@
+// Copyright (c) 2013-2014 Sandstorm Development Group, Inc. and contributors
+// Licensed under the MIT License:
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.capnproto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Chains completion handlers to read and write messages on asynchronous channels without
+ * blocking a thread while a message is in flight.
+ */
+final class AsyncHelpers {
+
+    /**
+     * A source of bytes: reads some bytes into `dst` and reports how many, or -1 at
+     * end-of-stream.
+     */
+    interface Input {
+        void read(ByteBuffer dst, CompletionHandler<Integer, Object> handler);
+    }
+
+    /**
+     * A sink of bytes: writes some bytes from `src` and reports how many.
+     */
+    interface Output {
+        void write(ByteBuffer src, CompletionHandler<Integer, Object> handler);
+    }
+
+    static Input input(AsynchronousByteChannel channel) {
+        return (dst, handler) -> channel.read(dst, null, handler);
+    }
+
+    static Output output(AsynchronousByteChannel channel) {
+        return (src, handler) -> channel.write(src, null, handler);
+    }
+
+    /**
+     * Reads from the file starting at `position`, advancing past the bytes read.
+     */
+    static Input input(AsynchronousFileChannel channel, long position) {
+        long[] next = new long[]{position};
+        return (dst, handler) -> channel.read(dst, next[0], null, advance(next, handler));
+    }
+
+    /**
+     * Writes to the file starting at `position`, advancing past the bytes written.
+     */
+    static Output output(AsynchronousFileChannel channel, long position) {
+        long[] next = new long[]{position};
+        return (src, handler) -> channel.write(src, next[0], null, advance(next, handler));
+    }
+
+    private static CompletionHandler<Integer, Object> advance(long[] position,
+                                                             CompletionHandler<Integer, Object> handler) {
+        return new CompletionHandler<Integer, Object>() {
+            @Override
+            public void completed(Integer n, Object attachment) {
+                if (n > 0) {
+                    position[0] += n;
+                }
+                handler.completed(n, attachment);
+            }
+
+            @Override
+            public void failed(Throwable exc, Object attachment) {
+                handler.failed(exc, attachment);
+            }
+        };
+    }
+
+    /**
+     * Completes once `buffer` has been filled.
+     */
+    static CompletableFuture<java.lang.Void> fill(Input input, ByteBuffer buffer) {
+        CompletableFuture<java.lang.Void> result = new CompletableFuture<>();
+        fill(input, buffer, result);
+        return result;
+    }
+
+    private static void fill(Input input, ByteBuffer buffer, CompletableFuture<java.lang.Void> result) {
+        if (!buffer.hasRemaining()) {
+            result.complete(null);
+            return;
+        }
+        try {
+            input.read(buffer, new CompletionHandler<Integer, Object>() {
+                @Override
+                public void completed(Integer n, Object attachment) {
+                    if (n < 0) {
+                        result.completeExceptionally(new IOException("premature EOF"));
+                    } else {
+                        fill(input, buffer, result);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable exc, Object attachment) {
+                    result.completeExceptionally(exc);
+                }
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Completes once all of `buffer` has been written.
+     */
+    static CompletableFuture<java.lang.Void> drain(Output output, ByteBuffer buffer) {
+        CompletableFuture<java.lang.Void> result = new CompletableFuture<>();
+        drain(output, buffer, result);
+        return result;
+    }
+
+    private static void drain(Output output, ByteBuffer buffer, CompletableFuture<java.lang.Void> result) {
+        if (!buffer.hasRemaining()) {
+            result.complete(null);
+            return;
+        }
+        try {
+            output.write(buffer, new CompletionHandler<Integer, Object>() {
+                @Override
+                public void completed(Integer n, Object attachment) {
+                    drain(output, buffer, result);
+                }
+
+                @Override
+                public void failed(Throwable exc, Object attachment) {
+                    result.completeExceptionally(exc);
+                }
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Reads one message in the standard (unpacked) stream encoding. Reads exactly the bytes
+     * of the message and nothing past its end.
+     */
+    static CompletableFuture<MessageReader> readMessage(Input input, ReaderOptions options) {
+        ByteBuffer firstWord = Serialize.makeByteBuffer(Constants.BYTES_PER_WORD);
+        return fill(input, firstWord).thenCompose(ignored -> {
+            int segmentCount = Serialize.parseSegmentCount(firstWord);
+            if (segmentCount == 1) {
+                return readSegments(input, firstWord, null, options);
+            }
+            ByteBuffer moreSizes = Serialize.makeByteBuffer(Serialize.moreSizesBytes(segmentCount));
+            return fill(input, moreSizes).thenCompose(
+                ignored2 -> readSegments(input, firstWord, moreSizes, options));
+        });
+    }
+
+    private static CompletableFuture<MessageReader> readSegments(Input input,
+                                                                 ByteBuffer firstWord,
+                                                                 ByteBuffer moreSizes,
+                                                                 ReaderOptions options) {
+        int[] segmentSizes = Serialize.parseSegmentSizes(firstWord, moreSizes, options);
+        long totalWords = Serialize.totalWords(segmentSizes);
+        ByteBuffer[] segments = new ByteBuffer[segmentSizes.length];
+
+        CompletableFuture<java.lang.Void> filled;
+        try {
+            if (totalWords <= Serialize.MAX_SEGMENT_WORDS) {
+                ByteBuffer all = Serialize.makeByteBufferForWords((int)totalWords);
+                filled = fill(input, all).thenRun(() -> Serialize.sliceSegments(all, segmentSizes, segments));
+            } else {
+                filled = CompletableFuture.completedFuture(null);
+                for (int ii = 0; ii < segmentSizes.length; ++ii) {
+                    ByteBuffer segment = Serialize.makeByteBufferForWords(segmentSizes[ii]);
+                    segments[ii] = segment;
+                    filled = filled.thenCompose(ignored -> fill(input, segment))
+                        .thenRun(() -> segment.rewind());
+                }
+            }
+        } catch (DecodeException e) {
+            CompletableFuture<MessageReader> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        return filled.thenApply(ignored -> new MessageReader(segments, options));
+    }
+
+    /**
+     * Reads input in chunks of up to `buffer.capacity()` bytes and feeds it to `decoder` until
+     * a message is complete. Bytes read past the end of the message are left in `buffer`,
+     * between its position and limit.
+     */
+    static CompletableFuture<MessageReader> decode(Input input, MessageStreamDecoder decoder,
+                                                   ByteBuffer buffer) {
+        CompletableFuture<MessageReader> result = new CompletableFuture<>();
+        decode(input, decoder, buffer, result);
+        return result;
+    }
+
+    private static void decode(Input input, MessageStreamDecoder decoder, ByteBuffer buffer,
+                               CompletableFuture<MessageReader> result) {
+        try {
+            MessageReader message = decoder.decode(buffer);
+            if (message != null) {
+                result.complete(message);
+                return;
+            }
+            buffer.clear();
+            input.read(buffer, new CompletionHandler<Integer, Object>() {
+                @Override
+                public void completed(Integer n, Object attachment) {
+                    buffer.flip();
+                    if (n < 0) {
+                        result.completeExceptionally(new IOException("premature EOF"));
+                    } else {
+                        decode(input, decoder, buffer, result);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable exc, Object attachment) {
+                    result.completeExceptionally(exc);
+                }
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Writes out everything that `encoder` produces.
+     */
+    static CompletableFuture<java.lang.Void> write(Output output, MessageStreamEncoder encoder) {
+        CompletableFuture<java.lang.Void> result = new CompletableFuture<>();
+        write(output, encoder, result);
+        return result;
+    }
+
+    private static void write(Output output, MessageStreamEncoder encoder, CompletableFuture<java.lang.Void> result) {
+        ByteBuffer chunk;
+        try {
+            chunk = encoder.nextChunk();
+        } catch (IOException | RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        if (chunk == null) {
+            result.complete(null);
+            return;
+        }
+        drain(output, chunk).whenComplete((ignored, exc) -> {
+            if (exc != null) {
+                result.completeExceptionally(exc);
+            } else {
+                write(output, encoder, result);
+            }
+        });
+    }
+}
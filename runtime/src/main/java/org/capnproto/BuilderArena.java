@@ -24,6 +24,7 @@ package org.capnproto;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 
 public final class BuilderArena implements Arena {
     public enum AllocationStrategy {
@@ -38,6 +39,23 @@ public final class BuilderArena implements Arena {
     public final ArrayList<SegmentBuilder> segments;
     private final Allocator allocator;
 
+    // Segments that were allocated for an earlier message and were kept by reset().
+    private final ArrayList<SegmentBuilder> spareSegments = new ArrayList<SegmentBuilder>();
+
+    // Whether segment 0 was passed to the constructor rather than obtained from `allocator`.
+    private final boolean callerFirstSegment;
+
+    // The number of leading segments that belong to a MessageReader and must not be modified.
+    private int readerSegments;
+
+    // The segment that allocations go to. External segments are never allocated in, so
+    // this is not always the last element of `segments`.
+    private SegmentBuilder allocationSegment;
+
+    // Read-only segments of other messages that objects of this message point into, keyed
+    // by the segment they were attached from. Created on first use.
+    private IdentityHashMap<SegmentReader, SegmentBuilder> externalSegments;
+
     public BuilderArena(int firstSegmentSizeWords, AllocationStrategy allocationStrategy) {
         this.segments = new ArrayList<SegmentBuilder>();
         {
@@ -45,11 +63,13 @@ public final class BuilderArena implements Arena {
             allocator.setNextAllocationSizeBytes(firstSegmentSizeWords * Constants.BYTES_PER_WORD);
             this.allocator = allocator;
         }
+        this.callerFirstSegment = false;
     }
 
     public BuilderArena(Allocator allocator) {
         this.segments = new ArrayList<SegmentBuilder>();
         this.allocator = allocator;
+        this.callerFirstSegment = false;
     }
 
     public BuilderArena(Allocator allocator, ByteBuffer firstSegment) {
@@ -60,8 +80,10 @@ public final class BuilderArena implements Arena {
         newSegment.buffer.order(ByteOrder.LITTLE_ENDIAN);
         newSegment.id = 0;
         this.segments.add(newSegment);
+        this.allocationSegment = newSegment;
 
         this.allocator = allocator;
+        this.callerFirstSegment = true;
     }
 
      /**
@@ -86,6 +108,8 @@ public final class BuilderArena implements Arena {
         // Use largest segment as next size.
         defaultAllocator.setNextAllocationSizeBytes(largestSegment);
         this.allocator = defaultAllocator;
+        this.callerFirstSegment = false;
+        this.readerSegments = this.segments.size();
     }
 
     @Override
@@ -116,28 +140,140 @@ public final class BuilderArena implements Arena {
      *  exists, in a new segment.
      */
     public AllocateResult allocate(int amount) {
+        int offset = allocateInLastSegment(amount);
+        return new AllocateResult(lastSegment(), offset);
+    }
+
+    /**
+     * Like allocate(), but without allocating a result: the words always end up in
+     * lastSegment(), and their offset there is returned.
+     */
+    final int allocateInLastSegment(int amount) {
         int len = this.segments.size();
 
-        // we allocate the first segment in the constructor.
-        if (len > 0) {
-            int result = this.segments.get(len - 1).allocate(amount);
+        if (this.allocationSegment != null) {
+            int result = this.allocationSegment.allocate(amount);
             if (result != SegmentBuilder.FAILED_ALLOCATION) {
-                return new AllocateResult(this.segments.get(len - 1), result);
+                return result;
             }
         }
         if (amount >= 1 << 28) {
             // Computing `amount * Constants.BYTES_PER_WORD` would overflow.
             throw new RuntimeException("Too many words to allocate: " + amount);
         }
-        SegmentBuilder newSegment = new SegmentBuilder(
-            this.allocator.allocateSegment(amount * Constants.BYTES_PER_WORD),
-            this);
-
-        newSegment.buffer.order(ByteOrder.LITTLE_ENDIAN);
+        SegmentBuilder newSegment = takeSpareSegment(amount);
+        if (newSegment == null) {
+            newSegment = new SegmentBuilder(
+                this.allocator.allocateSegment(amount * Constants.BYTES_PER_WORD, allocatedBytes()),
+                this);
+            newSegment.buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
         newSegment.id = len;
         this.segments.add(newSegment);
+        this.allocationSegment = newSegment;
+
+        return newSegment.allocate(amount);
+    }
+
+    // The number of bytes in the segments that this message can allocate in, capped at
+    // Integer.MAX_VALUE.
+    private int allocatedBytes() {
+        long result = 0;
+        for (int ii = 0; ii < this.segments.size(); ++ii) {
+            SegmentBuilder segment = this.segments.get(ii);
+            if (segment.isWritable()) {
+                result += (long)segment.capacity() * Constants.BYTES_PER_WORD;
+            }
+        }
+        return (int)Math.min(result, java.lang.Integer.MAX_VALUE);
+    }
+
+    // The segment that the last allocation went to.
+    final SegmentBuilder lastSegment() {
+        return this.allocationSegment;
+    }
+
+    /**
+     * Adds `segment`, which belongs to another message, to this arena as a read-only
+     * segment, unless it has been added already, and returns it. The segment's buffer is
+     * referenced rather than copied, so it must stay unchanged for as long as this arena
+     * points into it.
+     */
+    final SegmentBuilder attachExternalSegment(SegmentReader segment) {
+        if (this.externalSegments == null) {
+            this.externalSegments = new IdentityHashMap<SegmentReader, SegmentBuilder>();
+        }
+        SegmentBuilder result = this.externalSegments.get(segment);
+        if (result == null) {
+            ByteBuffer buffer = segment.buffer.asReadOnlyBuffer();
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            result = new SegmentBuilder(buffer, this, false);
+            result.id = this.segments.size();
+            this.segments.add(result);
+            this.externalSegments.put(segment, result);
+        }
+        return result;
+    }
 
-        return new AllocateResult(newSegment, newSegment.allocate(amount));
+    // Removes and returns the first spare segment that can hold `amount` words, or null.
+    private SegmentBuilder takeSpareSegment(int amount) {
+        for (int ii = 0; ii < this.spareSegments.size(); ++ii) {
+            if (this.spareSegments.get(ii).capacity() >= amount) {
+                return this.spareSegments.remove(ii);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Zeroes the used part of every segment so that the arena can build another
+     * message. The first segment stays in place and the others are kept as spares,
+     * to be handed out again before asking the allocator for more. Segments borrowed
+     * from a ReaderArena, and external segments, are dropped without being modified.
+     */
+    final void reset() {
+        for (; this.readerSegments > 0; --this.readerSegments) {
+            this.segments.remove(0);
+        }
+        if (this.externalSegments != null) {
+            this.segments.removeAll(this.externalSegments.values());
+            this.externalSegments = null;
+        }
+        int len = this.segments.size();
+        for (int ii = 1; ii < len; ++ii) {
+            SegmentBuilder segment = this.segments.get(ii);
+            segment.clear();
+            this.spareSegments.add(segment);
+        }
+        for (int ii = len - 1; ii >= 1; --ii) {
+            this.segments.remove(ii);
+        }
+        if (len > 0) {
+            SegmentBuilder first = this.segments.get(0);
+            first.clear();
+            first.id = 0;
+            this.allocationSegment = first;
+        } else {
+            this.allocationSegment = null;
+        }
+    }
+
+    /**
+     * Like reset(), but then hands every segment that came from the allocator back
+     * to it. A first segment that was passed to the constructor is kept, empty, for
+     * the next message.
+     */
+    final void release() {
+        reset();
+        for (SegmentBuilder segment : this.spareSegments) {
+            this.allocator.releaseSegment(segment.buffer);
+        }
+        this.spareSegments.clear();
+        if (!this.segments.isEmpty() && !this.callerFirstSegment) {
+            this.allocator.releaseSegment(this.segments.get(0).buffer);
+            this.segments.clear();
+            this.allocationSegment = null;
+        }
     }
 
     public final ByteBuffer[] getSegmentsForOutput() {
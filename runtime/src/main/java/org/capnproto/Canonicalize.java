@@ -0,0 +1,422 @@
+// Copyright (c) 2013-2014 Sandstorm Development Group, Inc. and contributors
+// Licensed under the MIT License:
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.capnproto;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The canonical form of a message, as defined by the Cap'n Proto encoding spec: a single
+ * segment, starting with the root pointer, holding every object exactly once in pre-order,
+ * with no far pointers, trailing zero data words and trailing null pointers truncated from
+ * structs (from all elements alike in struct lists), zero padding, and empty structs
+ * pointed to with an offset of -1. Two messages with the same content have byte-for-byte
+ * the same canonical form.
+ */
+public final class Canonicalize {
+
+    private Canonicalize() {}
+
+    /**
+     * Returns the canonical form of a message whose root is `root`, as the words of its
+     * only segment. The buffer is little-endian, and its position and limit span the words.
+     */
+    public static ByteBuffer write(StructReader root) {
+        WriteSink sink = new WriteSink();
+        traverse(root, sink);
+        ByteBuffer result = sink.buffer.duplicate();
+        result.limit(sink.words * Constants.BYTES_PER_WORD);
+        result.position(0);
+        return result.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Whether `message` is already in canonical form.
+     */
+    public static boolean isCanonical(MessageReader message) {
+        if (message.arena.segments.size() != 1) {
+            return false;
+        }
+        SegmentReader segment = message.arena.segments.get(0);
+        int words = segment.buffer.capacity() / Constants.BYTES_PER_WORD;
+        if (words == 0) {
+            return false;
+        }
+        CompareSink sink = new CompareSink(segment.buffer, words);
+        Traversal traversal = new Traversal(sink);
+        try {
+            traversal.pointer(segment, 0, traversal.allocate(1), message.nestingLimit);
+            traversal.run();
+        } catch (DecodeException e) {
+            return false;
+        }
+        return !sink.mismatch && traversal.end == words;
+    }
+
+    /**
+     * Returns a 64-bit hash of the canonical form of a message whose root is `root`, so that
+     * messages with the same content hash the same however they are laid out. The canonical
+     * words are hashed as they are visited, without being written anywhere.
+     *
+     * This is not a cryptographic hash.
+     */
+    public static long hash(StructReader root) {
+        HashSink sink = new HashSink();
+        return sink.finish(traverse(root, sink));
+    }
+
+    /**
+     * Returns the same hash as hash(StructReader), given canonical words such as those
+     * returned by write(), from the buffer's position to its limit.
+     */
+    public static long hash(ByteBuffer canonicalWords) {
+        HashSink sink = new HashSink();
+        ByteBuffer words = canonicalWords.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int count = words.remaining() / Constants.BYTES_PER_WORD;
+        for (int ii = 0; ii < count; ++ii) {
+            sink.put(ii, words.getLong(words.position() + ii * Constants.BYTES_PER_WORD));
+        }
+        return sink.finish(count);
+    }
+
+    private static int traverse(StructReader root, Sink sink) {
+        Traversal traversal = new Traversal(sink);
+        traversal.struct(traversal.allocate(1), root.segment, root.data, root.pointers,
+                         root.dataSize, root.pointerCount, root.nestingLimit);
+        traversal.run();
+        return traversal.end;
+    }
+
+    // Receives the canonical words, each with its index in the canonical segment. Words
+    // arrive in no particular order, but every word is put exactly once.
+    private static abstract class Sink {
+        // Set when a comparison fails, which ends the traversal early.
+        boolean mismatch;
+
+        abstract void put(int index, long word);
+
+        // Called whenever the canonical segment grows to `words` words.
+        void reserve(int words) {}
+
+        // A message that is being checked cannot be canonical if it has far pointers.
+        boolean acceptsFarPointers() {
+            return true;
+        }
+    }
+
+    private static final class WriteSink extends Sink {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * Constants.BYTES_PER_WORD).order(ByteOrder.LITTLE_ENDIAN);
+        int words;
+
+        @Override
+        void put(int index, long word) {
+            if (word != 0) {
+                this.buffer.putLong(index * Constants.BYTES_PER_WORD, word);
+            }
+        }
+
+        @Override
+        void reserve(int words) {
+            this.words = words;
+            if (words * Constants.BYTES_PER_WORD > this.buffer.capacity()) {
+                int capacity = Math.max(words, (int)Math.min(Integer.MAX_VALUE / Constants.BYTES_PER_WORD,
+                                                             2L * this.buffer.capacity() / Constants.BYTES_PER_WORD));
+                ByteBuffer grown = ByteBuffer.allocate(capacity * Constants.BYTES_PER_WORD)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+                grown.put(this.buffer.array());
+                this.buffer = grown;
+            }
+        }
+    }
+
+    private static final class CompareSink extends Sink {
+        private final ByteBuffer buffer;
+        private final int words;
+
+        CompareSink(ByteBuffer buffer, int words) {
+            this.buffer = buffer;
+            this.words = words;
+        }
+
+        @Override
+        void put(int index, long word) {
+            if (index >= this.words || this.buffer.getLong(index * Constants.BYTES_PER_WORD) != word) {
+                this.mismatch = true;
+            }
+        }
+
+        @Override
+        boolean acceptsFarPointers() {
+            return false;
+        }
+    }
+
+    // Sums a mix of each word with its index, so that words can be added in any order.
+    private static final class HashSink extends Sink {
+        private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+        private long sum;
+
+        @Override
+        void put(int index, long word) {
+            this.sum += mix(word + (index + 1) * GOLDEN_GAMMA);
+        }
+
+        long finish(int words) {
+            return mix(this.sum ^ words);
+        }
+
+        // The finalizer of MurmurHash3.
+        private static long mix(long x) {
+            x ^= x >>> 33;
+            x *= 0xff51afd7ed558ccdL;
+            x ^= x >>> 33;
+            x *= 0xc4ceb9fe1a85ec53L;
+            x ^= x >>> 33;
+            return x;
+        }
+    }
+
+    // Visits a message in canonical order. It places each object right after the previous
+    // one, and PointerRuns visits objects depth first, so positions come out in pre-order.
+    // Runs hold no destination segment, only the slots of the canonical pointers.
+    private static final class Traversal implements PointerRuns.Visitor<Object> {
+        private static final long EMPTY_STRUCT_POINTER = 0xfffffffcL;
+
+        private final Sink sink;
+        private final PointerRuns<Object> runs = new PointerRuns<>();
+        int end; // words of the canonical segment allocated so far
+
+        Traversal(Sink sink) {
+            this.sink = sink;
+        }
+
+        int allocate(int words) {
+            int result = this.end;
+            if (words > Integer.MAX_VALUE / Constants.BYTES_PER_WORD - result) {
+                throw new DecodeException("Message is too large to canonicalize.");
+            }
+            this.end += words;
+            this.sink.reserve(this.end);
+            return result;
+        }
+
+        void run() {
+            this.runs.run(this);
+        }
+
+        @Override
+        public void visit(PointerRuns<Object> runs, Object dstSegment, int slot,
+                          SegmentReader segment, int refOffset, int nestingLimit) {
+            if (this.sink.mismatch) {
+                // The message has already been found not to be canonical.
+                runs.clear();
+                return;
+            }
+            pointer(segment, refOffset, slot, nestingLimit);
+        }
+
+        // Visits the pointer at `refOffset`, whose canonical copy goes at `slot`.
+        void pointer(SegmentReader segment, int refOffset, int slot, int nestingLimit) {
+            long ref = segment.get(refOffset);
+            if (WirePointer.isNull(ref)) {
+                this.sink.put(slot, 0L);
+                return;
+            }
+            if (WirePointer.kind(ref) == WirePointer.FAR && !this.sink.acceptsFarPointers()) {
+                this.sink.mismatch = true;
+                return;
+            }
+
+            int refTarget = WirePointer.target(refOffset, ref);
+            SegmentReader resolvedSegment = WireHelpers.followFarsSegment(ref, segment);
+            long resolvedRef = WireHelpers.followFarsRef(ref, segment);
+            int resolvedPtr = WireHelpers.followFarsPtr(ref, refTarget, segment);
+
+            switch (WirePointer.kind(resolvedRef)) {
+            case WirePointer.STRUCT : {
+                if (nestingLimit <= 0) {
+                    throw new DecodeException("Message is too deeply nested or contains cycles. See org.capnproto.ReaderOptions.");
+                }
+                int dataSize = StructPointer.dataSize(resolvedRef);
+                int ptrCount = StructPointer.ptrCount(resolvedRef);
+                if (!WireHelpers.bounds_check(resolvedSegment, resolvedPtr, dataSize + ptrCount)) {
+                    throw new DecodeException("Message contains out-of-bounds struct pointer");
+                }
+                resolvedSegment.arena.checkReadLimit(dataSize + ptrCount);
+                struct(slot, resolvedSegment, resolvedPtr * Constants.BYTES_PER_WORD, resolvedPtr + dataSize,
+                       dataSize * Constants.BITS_PER_WORD, (short)ptrCount, nestingLimit - 1);
+                break;
+            }
+            case WirePointer.LIST :
+                if (nestingLimit <= 0) {
+                    throw new DecodeException("Message is too deeply nested or contains cycles. See org.capnproto.ReaderOptions.");
+                }
+                list(slot, resolvedSegment, resolvedRef, resolvedPtr, nestingLimit - 1);
+                break;
+            case WirePointer.FAR :
+                throw new DecodeException("Unexpected FAR pointer.");
+            default :
+                throw new DecodeException("Capabilities have no canonical form.");
+            }
+        }
+
+        // Visits a struct whose canonical pointer goes at `slot`. `data` is in bytes,
+        // `pointers` in words and `dataSize` in bits, as in StructReader.
+        void struct(int slot, SegmentReader segment, int data, int pointers, int dataSize,
+                    short pointerCount, int nestingLimit) {
+            int dataWords = WireHelpers.roundBitsUpToWords(dataSize);
+            while (dataWords > 0 && dataWord(segment, data, dataSize, dataWords - 1) == 0) {
+                --dataWords;
+            }
+            int ptrCount = pointerCount;
+            while (ptrCount > 0 && segment.get(pointers + ptrCount - 1) == 0) {
+                --ptrCount;
+            }
+
+            int position = allocate(dataWords + ptrCount);
+            if (dataWords + ptrCount == 0) {
+                this.sink.put(slot, EMPTY_STRUCT_POINTER);
+            } else {
+                this.sink.put(slot, word((position - slot - 1) << 2 | WirePointer.STRUCT,
+                                         dataWords | ptrCount << 16));
+            }
+            for (int ii = 0; ii < dataWords; ++ii) {
+                this.sink.put(position + ii, dataWord(segment, data, dataSize, ii));
+            }
+            this.runs.push(null, position + dataWords, 0, segment, pointers, 0, 1, ptrCount, nestingLimit);
+        }
+
+        private void list(int slot, SegmentReader segment, long ref, int ptr, int nestingLimit) {
+            byte elementSize = ListPointer.elementSize(ref);
+            if (elementSize == ElementSize.INLINE_COMPOSITE) {
+                int wordCount = ListPointer.inlineCompositeWordCount(ref);
+                if (!WireHelpers.bounds_check(segment, ptr, wordCount + 1)) {
+                    throw new DecodeException("Message contains out-of-bounds list pointer");
+                }
+                segment.arena.checkReadLimit(wordCount + 1);
+
+                long tag = segment.get(ptr);
+                if (WirePointer.kind(tag) != WirePointer.STRUCT) {
+                    throw new DecodeException("INLINE_COMPOSITE lists of non-STRUCT type are not supported.");
+                }
+                int elementCount = WirePointer.inlineCompositeListElementCount(tag);
+                int srcDataSize = StructPointer.dataSize(tag);
+                int srcPtrCount = StructPointer.ptrCount(tag);
+                int srcStride = srcDataSize + srcPtrCount;
+                if ((long)srcStride * elementCount > wordCount) {
+                    throw new DecodeException("INLINE_COMPOSITE list's elements overrun its word count.");
+                }
+                if (srcStride == 0) {
+                    // Watch out for lists of zero-sized structs, which can claim to be arbitrarily
+                    // large without having sent actual data.
+                    segment.arena.checkReadLimit(elementCount);
+                }
+
+                // A word can only be truncated if it is zero in every element.
+                int dataSize = 0;
+                int ptrCount = 0;
+                int first = ptr + Constants.POINTER_SIZE_IN_WORDS;
+                for (int ii = 0; ii < elementCount; ++ii) {
+                    int element = first + ii * srcStride;
+                    for (int jj = srcDataSize; jj > dataSize; --jj) {
+                        if (segment.get(element + jj - 1) != 0) {
+                            dataSize = jj;
+                            break;
+                        }
+                    }
+                    for (int jj = srcPtrCount; jj > ptrCount; --jj) {
+                        if (segment.get(element + srcDataSize + jj - 1) != 0) {
+                            ptrCount = jj;
+                            break;
+                        }
+                    }
+                }
+                int stride = dataSize + ptrCount;
+                int words = stride * elementCount;
+
+                int position = allocate(Constants.POINTER_SIZE_IN_WORDS + words);
+                this.sink.put(slot, word((position - slot - 1) << 2 | WirePointer.LIST,
+                                         ElementSize.INLINE_COMPOSITE | words << 3));
+                this.sink.put(position, word(elementCount << 2 | WirePointer.STRUCT,
+                                             dataSize | ptrCount << 16));
+                int dst = position + Constants.POINTER_SIZE_IN_WORDS;
+                for (int ii = 0; ii < elementCount; ++ii) {
+                    for (int jj = 0; jj < dataSize; ++jj) {
+                        this.sink.put(dst + ii * stride + jj, segment.get(first + ii * srcStride + jj));
+                    }
+                }
+                this.runs.push(null, dst + dataSize, stride, segment, first + srcDataSize, srcStride,
+                               elementCount, ptrCount, nestingLimit);
+            } else {
+                int elementCount = ListPointer.elementCount(ref);
+                int step = ElementSize.dataBitsPerElement(elementSize) +
+                    ElementSize.pointersPerElement(elementSize) * Constants.BITS_PER_POINTER;
+                long bits = (long)elementCount * step;
+                int wordCount = WireHelpers.roundBitsUpToWords(bits);
+                if (!WireHelpers.bounds_check(segment, ptr, wordCount)) {
+                    throw new DecodeException("Message contains out-of-bounds list pointer");
+                }
+                segment.arena.checkReadLimit(wordCount);
+                if (elementSize == ElementSize.VOID) {
+                    // Watch out for lists of void, which can claim to be arbitrarily large without
+                    // having sent actual data.
+                    segment.arena.checkReadLimit(elementCount);
+                }
+
+                int position = allocate(wordCount);
+                this.sink.put(slot, word((position - slot - 1) << 2 | WirePointer.LIST,
+                                         elementSize | elementCount << 3));
+                if (elementSize == ElementSize.POINTER) {
+                    this.runs.push(null, position, 1, segment, ptr, 1, elementCount, 1, nestingLimit);
+                } else {
+                    for (int ii = 0; ii < wordCount; ++ii) {
+                        long word = segment.get(ptr + ii);
+                        if (ii == wordCount - 1 && bits % Constants.BITS_PER_WORD != 0) {
+                            // Padding after the last element must be zero.
+                            word &= (1L << (bits % Constants.BITS_PER_WORD)) - 1;
+                        }
+                        this.sink.put(position + ii, word);
+                    }
+                }
+            }
+        }
+
+        // The `index`th word of a data section of `dataSize` bits at byte offset `data`. Only
+        // structs read from lists of primitives can end in a partial word.
+        private static long dataWord(SegmentReader segment, int data, int dataSize, int index) {
+            int bits = dataSize - index * Constants.BITS_PER_WORD;
+            int offset = data + index * Constants.BYTES_PER_WORD;
+            if (bits >= Constants.BITS_PER_WORD) {
+                return segment.buffer.getLong(offset);
+            }
+            long result = 0;
+            for (int ii = 0; ii * Constants.BITS_PER_BYTE < bits; ++ii) {
+                result |= (segment.buffer.get(offset + ii) & 0xffL) << (ii * Constants.BITS_PER_BYTE);
+            }
+            return result & ((1L << bits) - 1);
+        }
+
+        private static long word(int lower, int upper) {
+            return (lower & 0xffffffffL) | ((long)upper << 32);
+        }
+    }
+}
@@ -93,6 +93,14 @@ public final class DataList {
             _setPointerElement(Data.factory, index, value);
         }
 
+        public final Orphan<Data.Builder> disown(int index) {
+            return _disownPointerElement(Data.factory, index);
+        }
+
+        public final void adopt(int index, Orphan<Data.Builder> value) {
+            _adoptPointerElement(index, value);
+        }
+
         public final Reader asReader() {
             return new Reader(this.segment, this.ptr, this.elementCount, this.step,
                               this.structDataSize, this.structPointerCount,
@@ -138,6 +138,19 @@ public class ListBuilder {
             elementCount);
     }
 
+    protected final <T> Orphan<T> _disownPointerElement(FromPointerBuilder<T> factory, int index) {
+        return Orphan.disown(
+            factory,
+            this.segment,
+            (this.ptr + (int)((long)index * this.step / Constants.BITS_PER_BYTE)) / Constants.BYTES_PER_WORD);
+    }
+
+    protected final void _adoptPointerElement(int index, Orphan<?> orphan) {
+        orphan.adoptInto(
+            this.segment,
+            (this.ptr + (int)((long)index * this.step / Constants.BITS_PER_BYTE)) / Constants.BYTES_PER_WORD);
+    }
+
     protected final <Builder, Reader> void _setPointerElement(SetPointerBuilder<Builder, Reader> factory, int index, Reader value) {
         factory.setPointerBuilder(this.segment,
                                   (this.ptr + (int)((long)index * this.step / Constants.BITS_PER_BYTE)) / Constants.BYTES_PER_WORD,
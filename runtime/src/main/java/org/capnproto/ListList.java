@@ -87,6 +87,14 @@ public final class ListList {
             return _getPointerElement(this.factory, index);
         }
 
+        public final Orphan<T> disown(int index) {
+            return _disownPointerElement(this.factory, index);
+        }
+
+        public final void adopt(int index, Orphan<T> value) {
+            _adoptPointerElement(index, value);
+        }
+
         // TODO: rework generics so that we don't need this factory parameter
         public final <U extends ListReader> Reader<U> asReader(ListFactory<T, U> factor) {
             return new Reader<U>(factor,
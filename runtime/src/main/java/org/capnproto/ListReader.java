@@ -66,6 +66,24 @@ public class ListReader {
         return this.elementCount;
     }
 
+    // The elements of a list as a little-endian slice of its segment, if they are
+    // `elementBytes` wide and stored back to back; null if each is followed by other data,
+    // as when a list of structs is read as a list of primitives.
+    static java.nio.ByteBuffer packedElements(SegmentReader segment, int ptr, int elementCount, int step,
+                                              int elementBytes) {
+        if (step != elementBytes * Constants.BITS_PER_BYTE) {
+            return null;
+        }
+        java.nio.ByteBuffer result = java.nio.ByteBuffer.allocate(0);
+        if (elementCount > 0) {
+            result = segment.buffer.duplicate();
+            result.limit(ptr + elementCount * elementBytes);
+            result.position(ptr);
+            result = result.slice();
+        }
+        return result.order(java.nio.ByteOrder.LITTLE_ENDIAN);
+    }
+
     protected boolean _getBooleanElement(int index) {
         long bindex = (long)index * this.step;
         byte b = this.segment.buffer.get(this.ptr + (int)(bindex / Constants.BITS_PER_BYTE));
@@ -107,6 +125,14 @@ public class ListReader {
                                        this.structPointerCount, this.nestingLimit - 1);
     }
 
+    // Moves `element`, a reader of an element of this list, to the element at `index`.
+    final void moveStructElement(StructReader element, int index) {
+        long indexBit = (long)index * this.step;
+        int structData = this.ptr + (int)(indexBit / Constants.BITS_PER_BYTE);
+        int structPointers = structData + (this.structDataSize / Constants.BITS_PER_BYTE);
+        element.moveTo(structData, structPointers / 8);
+    }
+
     protected <T> T _getPointerElement(FromPointerReader<T> factory, int index) {
       return factory.fromPointerReader(
         this.segment,
@@ -21,9 +21,9 @@
 
 package org.capnproto;
 
-public final class MessageBuilder {
+public final class MessageBuilder implements AutoCloseable {
 
-    private final BuilderArena arena;
+    final BuilderArena arena;
 
     public MessageBuilder() {
         this.arena = new BuilderArena(BuilderArena.SUGGESTED_FIRST_SEGMENT_WORDS,
@@ -90,7 +90,7 @@ public final class MessageBuilder {
 
     private AnyPointer.Builder getRootInternal() {
         if (this.arena.segments.isEmpty()) {
-            this.arena.allocate(1);
+            this.arena.allocateInLastSegment(1);
         }
         SegmentBuilder rootSegment = this.arena.segments.get(0);
         if (rootSegment.currentSize() == 0) {
@@ -119,10 +119,40 @@ public final class MessageBuilder {
         return this.getRootInternal().initAs(factory);
     }
 
+    public final Orphanage getOrphanage() {
+        return new Orphanage(this.arena);
+    }
+
     public final java.nio.ByteBuffer[] getSegmentsForOutput() {
         return this.arena.getSegmentsForOutput();
     }
 
+    /**
+     * Returns a copy of this message in a single segment, with its objects laid out in
+     * depth-first order. Building a message typically spreads it over several segments
+     * linked by far pointers, and leaves zeroed gaps where objects were replaced or grown;
+     * the copy has neither, so it is smaller on the wire and cheaper to read. This costs
+     * one deep copy, and is meant as a last step before storing a message that will be
+     * read many times.
+     */
+    public final MessageBuilder toSingleSegment() {
+        if (this.arena.segments.isEmpty()) {
+            return new MessageBuilder(1, BuilderArena.AllocationStrategy.FIXED_SIZE);
+        }
+
+        // Size the copy from what is reachable from the root, rather than from the segments,
+        // which may also hold orphaned objects and read-only segments of other messages.
+        // A first segment of exactly that size means the copy never needs a second one.
+        long words = Constants.POINTER_SIZE_IN_WORDS +
+            WireHelpers.totalSize(this.arena.segments.get(0), 0, java.lang.Integer.MAX_VALUE);
+        if (words > java.lang.Integer.MAX_VALUE / Constants.BYTES_PER_WORD) {
+            throw new IllegalStateException("message is too large to fit in a single segment");
+        }
+        MessageBuilder result = new MessageBuilder((int)words, BuilderArena.AllocationStrategy.FIXED_SIZE);
+        result.setRoot(AnyPointer.factory, this.getRoot(AnyPointer.factory).asReader());
+        return result;
+    }
+
     /**
      * Sets the first segment buffer to contain all zeros so that it can be reused in
      * another message. (See the MessageBuilder(Allocator, ByteBuffer) constructor above.)
@@ -133,4 +163,37 @@ public final class MessageBuilder {
     public final void clearFirstSegment() {
         this.arena.segments.get(0).clear();
     }
+
+    /**
+     * Zeroes the used part of every segment so that this builder can build another
+     * message. Unlike clearFirstSegment(), all segments are kept: later segments are
+     * reused, in order, whenever the next message outgrows the ones before them, so a
+     * message that fits in the previous one's segments is usually built without allocating.
+     *
+     * After calling this method, the previous message and any buffers obtained from
+     * getSegmentsForOutput() will be corrupted, so make sure to write the message first.
+     */
+    public final void reset() {
+        this.arena.reset();
+    }
+
+    /**
+     * Zeroes the used part of every segment and returns the segments to the Allocator
+     * (see Allocator.releaseSegment()), leaving this builder empty.
+     *
+     * After calling this method, the message and any buffers previously obtained from
+     * getSegmentsForOutput() must no longer be used, since the allocator may hand their
+     * memory to another message.
+     */
+    public final void release() {
+        this.arena.release();
+    }
+
+    /**
+     * Same as release().
+     */
+    @Override
+    public final void close() {
+        this.release();
+    }
 }
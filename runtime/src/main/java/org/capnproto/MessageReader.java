@@ -32,6 +32,27 @@ public final class MessageReader {
         this.arena = new ReaderArena(segmentSlices, options.traversalLimitInWords);
     }
 
+    MessageReader(ReaderArena arena, int nestingLimit) {
+        this.arena = arena;
+        this.nestingLimit = nestingLimit;
+    }
+
+    /**
+     * Returns a reader of the same message that counts the words it reads against a
+     * traversal limit of its own, starting from the limit in the ReaderOptions this reader
+     * was created with.
+     *
+     * A MessageReader counts every word it reads against a single traversal limit, so it must
+     * not be used by several threads at once, and a message read repeatedly through one reader
+     * eventually exceeds the limit. Sessions share the segments, which are never written to,
+     * but not the limit: to read one message from several threads, give each thread a session
+     * of its own, and to read a message again with a fresh limit, start a new session. This
+     * costs one small object per segment and copies no message data.
+     */
+    public MessageReader newSession() {
+        return new MessageReader(this.arena.newSession(), this.nestingLimit);
+    }
+
     public <T> T getRoot(FromPointerReader<T> factory) {
         SegmentReader segment = this.arena.tryGetSegment(0);
         AnyPointer.Reader any = new AnyPointer.Reader(segment, 0, this.nestingLimit);
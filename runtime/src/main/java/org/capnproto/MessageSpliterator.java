@@ -0,0 +1,135 @@
+// Copyright (c) 2013-2014 Sandstorm Development Group, Inc. and contributors
+// Licensed under the MIT License:
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.capnproto;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Walks a buffer holding back-to-back messages in the standard (unpacked) stream encoding,
+ * such as a memory-mapped log file, yielding one MessageReader per message. Messages are
+ * not copied: their segments are slices of the underlying buffer, as with
+ * `Serialize.read(ByteBuffer)`.
+ *
+ * Each message is reported along with its byte offset in the buffer, so that a scan can be
+ * resumed later by positioning the buffer at that offset. Splitting only reads segment
+ * tables, so the spliterator can back a parallel stream.
+ */
+public final class MessageSpliterator implements Spliterator<MessageSpliterator.Frame> {
+
+    public static final class Frame {
+        /**
+         * Byte offset of the start of this message's segment table in the underlying buffer.
+         */
+        public final int offset;
+
+        /**
+         * Number of bytes occupied by this message, including its segment table.
+         */
+        public final int sizeInBytes;
+
+        public final MessageReader message;
+
+        Frame(int offset, int sizeInBytes, MessageReader message) {
+            this.offset = offset;
+            this.sizeInBytes = sizeInBytes;
+            this.message = message;
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private final ReaderOptions options;
+    private int position;
+    private final int end;
+
+    /**
+     * Iterates over the messages between `bb.position()` and `bb.limit()`. The position of
+     * `bb` is not modified.
+     */
+    public MessageSpliterator(ByteBuffer bb, ReaderOptions options) {
+        this(bb.duplicate().order(ByteOrder.LITTLE_ENDIAN), bb.position(), bb.limit(), options);
+    }
+
+    private MessageSpliterator(ByteBuffer buffer, int position, int end, ReaderOptions options) {
+        this.buffer = buffer;
+        this.position = position;
+        this.end = end;
+        this.options = options;
+    }
+
+    /**
+     * Returns the offset of the next message to be yielded.
+     */
+    public int position() {
+        return this.position;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Frame> action) {
+        if (this.position >= this.end) {
+            return false;
+        }
+        ByteBuffer frame = this.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        frame.limit(this.end);
+        frame.position(this.position);
+        MessageReader message;
+        try {
+            message = Serialize.read(frame, this.options);
+        } catch (java.io.IOException e) {
+            // Serialize.read(ByteBuffer) does no I/O.
+            throw new java.io.UncheckedIOException(e);
+        }
+        int offset = this.position;
+        this.position = frame.position();
+        action.accept(new Frame(offset, this.position - offset, message));
+        return true;
+    }
+
+    @Override
+    public Spliterator<Frame> trySplit() {
+        // Skip whole messages until we pass the midpoint. This only reads segment tables.
+        int mid = this.position + (this.end - this.position) / 2;
+        int split = this.position;
+        while (split < mid) {
+            split += Serialize.messageSizeInBytes(this.buffer, split);
+        }
+        if (split == this.position || split >= this.end) {
+            return null;
+        }
+        MessageSpliterator prefix = new MessageSpliterator(this.buffer, this.position, split, this.options);
+        this.position = split;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        // Every message occupies at least one word.
+        return (this.end - this.position) / Constants.BYTES_PER_WORD;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+}
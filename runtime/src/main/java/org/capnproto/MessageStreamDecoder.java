@@ -0,0 +1,257 @@
+// Copyright (c) 2013-2014 Sandstorm Development Group, Inc. and contributors
+// Licensed under the MIT License:
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.capnproto;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incrementally decodes a stream of messages from chunks of bytes as they arrive, for use
+ * with non-blocking channels. Unlike `Serialize.read()`, the decoder never asks for more
+ * input; instead it keeps its state between calls to `decode()`:
+ *
+ * <pre>
+ *     while (channel.read(buf) > 0) {
+ *         buf.flip();
+ *         MessageReader message;
+ *         while ((message = decoder.decode(buf)) != null) {
+ *             handle(message);
+ *         }
+ *         buf.compact();
+ *     }
+ * </pre>
+ *
+ * ReaderOptions limits are enforced as soon as the segment table has been received, before
+ * any space is allocated for the segments.
+ */
+public final class MessageStreamDecoder {
+
+    private final ReaderOptions options;
+    private final boolean packed;
+
+    private final ByteBuffer firstWord = Serialize.makeByteBuffer(Constants.BYTES_PER_WORD);
+    private ByteBuffer moreSizes = null;
+    private ByteBuffer[] segments = null;
+    private int segmentIndex = 0;
+
+    // Unpacking state, only used when `packed` is true.
+    private int tag = -1; // the tag byte currently being expanded, or -1
+    private int bit = 0; // next bit of `tag` to expand
+    private int pendingZeroBytes = 0;
+    private int pendingLiteralBytes = 0;
+
+    private MessageStreamDecoder(ReaderOptions options, boolean packed) {
+        this.options = options;
+        this.packed = packed;
+    }
+
+    /**
+     * Constructs a decoder for the standard (unpacked) stream encoding.
+     */
+    public MessageStreamDecoder(ReaderOptions options) {
+        this(options, false);
+    }
+
+    public MessageStreamDecoder() {
+        this(ReaderOptions.DEFAULT_READER_OPTIONS, false);
+    }
+
+    /**
+     * Constructs a decoder for the packed encoding.
+     */
+    public static MessageStreamDecoder packed(ReaderOptions options) {
+        return new MessageStreamDecoder(options, true);
+    }
+
+    public static MessageStreamDecoder packed() {
+        return packed(ReaderOptions.DEFAULT_READER_OPTIONS);
+    }
+
+    /**
+     * Consumes bytes from `input` until a message is complete or `input` is exhausted.
+     * Returns the completed message, or null if more input is needed. Throws a
+     * DecodeException if the input is malformed (including a packed run that continues
+     * past the end of a message) or exceeds the ReaderOptions limits, after
+     * which the decoder must not be used again.
+     */
+    public MessageReader decode(ByteBuffer input) {
+        while (true) {
+            if (this.firstWord.hasRemaining()) {
+                transfer(input, this.firstWord);
+                if (this.firstWord.hasRemaining()) {
+                    return null;
+                }
+                int segmentCount = Serialize.parseSegmentCount(this.firstWord);
+                if (segmentCount > 1) {
+                    this.moreSizes = Serialize.makeByteBuffer(Serialize.moreSizesBytes(segmentCount));
+                } else {
+                    startSegments();
+                }
+            } else if (this.segments == null) {
+                transfer(input, this.moreSizes);
+                if (this.moreSizes.hasRemaining()) {
+                    return null;
+                }
+                startSegments();
+            } else {
+                while (this.segmentIndex < this.segments.length) {
+                    ByteBuffer segment = this.segments[this.segmentIndex];
+                    transfer(input, segment);
+                    if (segment.hasRemaining()) {
+                        return null;
+                    }
+                    if (this.segmentIndex == this.segments.length - 1 &&
+                        this.tag >= 0 && this.bit == 8) {
+                        // The run count that follows the message's last word has not arrived yet.
+                        return null;
+                    }
+                    segment.rewind();
+                    ++this.segmentIndex;
+                }
+                ByteBuffer[] segments = this.segments;
+                this.firstWord.clear();
+                this.moreSizes = null;
+                this.segments = null;
+                this.segmentIndex = 0;
+                if (!isAtMessageBoundary()) {
+                    // A run of zero or literal words continues past the end of the message.
+                    throw new DecodeException("Packed input did not end cleanly on a segment boundary");
+                }
+                return new MessageReader(segments, this.options);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the decoder holds no part of an unfinished message. A stream that
+     * reaches end-of-stream while this is false was truncated.
+     */
+    public boolean isAtMessageBoundary() {
+        return this.firstWord.position() == 0 &&
+            this.tag == -1 && this.pendingZeroBytes == 0 && this.pendingLiteralBytes == 0;
+    }
+
+    private void startSegments() {
+        int[] segmentSizes = Serialize.parseSegmentSizes(this.firstWord, this.moreSizes, this.options);
+        long totalWords = Serialize.totalWords(segmentSizes);
+        ByteBuffer[] segments = new ByteBuffer[segmentSizes.length];
+        if (totalWords <= Serialize.MAX_SEGMENT_WORDS) {
+            Serialize.sliceSegments(Serialize.makeByteBufferForWords((int)totalWords),
+                                    segmentSizes, segments);
+        } else {
+            for (int ii = 0; ii < segmentSizes.length; ++ii) {
+                segments[ii] = Serialize.makeByteBufferForWords(segmentSizes[ii]);
+            }
+        }
+        this.segments = segments;
+        this.segmentIndex = 0;
+    }
+
+    private void transfer(ByteBuffer input, ByteBuffer output) {
+        if (this.packed) {
+            unpack(input, output);
+        } else {
+            int n = Math.min(input.remaining(), output.remaining());
+            ByteBuffer slice = input.slice();
+            slice.limit(n);
+            output.put(slice);
+            input.position(input.position() + n);
+        }
+    }
+
+    /**
+     * Unpacks as much of `input` into `output` as possible. Tags and runs may be split
+     * arbitrarily between calls.
+     */
+    private void unpack(ByteBuffer input, ByteBuffer output) {
+        while (true) {
+            if (this.tag >= 0 && this.bit == 8) {
+                // An all-zero word is followed by a count of consecutive zero words; an
+                // all-nonzero word is followed by a count of uncompressed words. We consume
+                // the count even if `output` is full, so that a message ending in such a
+                // word leaves the decoder at a message boundary.
+                if (!input.hasRemaining()) {
+                    return;
+                }
+                int runLength = (input.get() & 0xff) * Constants.BYTES_PER_WORD;
+                if (this.tag == 0) {
+                    this.pendingZeroBytes = runLength;
+                } else {
+                    this.pendingLiteralBytes = runLength;
+                }
+                this.tag = -1;
+            } else if (!output.hasRemaining()) {
+                return;
+            } else if (this.pendingZeroBytes > 0) {
+                // Both are multiples of 8, since runs and segments are made of whole words.
+                int n = Math.min(this.pendingZeroBytes, output.remaining());
+                PackedInputStream.zeroFill(output, n);
+                this.pendingZeroBytes -= n;
+            } else if (this.pendingLiteralBytes > 0) {
+                int n = Math.min(this.pendingLiteralBytes, Math.min(output.remaining(), input.remaining()));
+                if (n == 0) {
+                    return;
+                }
+                ByteBuffer slice = input.slice();
+                slice.limit(n);
+                output.put(slice);
+                input.position(input.position() + n);
+                this.pendingLiteralBytes -= n;
+            } else if (this.tag < 0) {
+                if (input.remaining() > Constants.BYTES_PER_WORD &&
+                    output.remaining() >= Constants.BYTES_PER_WORD) {
+                    // The whole word is available, so expand it at once.
+                    int inPos = input.position();
+                    int tag = input.get(inPos) & 0xff;
+                    long word = input.hasArray()
+                        ? PackedInputStream.expandWord(input.array(), input.arrayOffset() + inPos + 1, tag)
+                        : PackedInputStream.expandWord(input, inPos + 1, tag);
+                    output.putLong(output.position(), word);
+                    output.position(output.position() + Constants.BYTES_PER_WORD);
+                    input.position(inPos + 1 + Integer.bitCount(tag));
+                    if (tag == 0 || tag == 0xff) {
+                        this.tag = tag;
+                        this.bit = 8;
+                    }
+                } else {
+                    if (!input.hasRemaining()) {
+                        return;
+                    }
+                    this.tag = input.get() & 0xff;
+                    this.bit = 0;
+                }
+            } else {
+                if ((this.tag & (1 << this.bit)) != 0) {
+                    if (!input.hasRemaining()) {
+                        return;
+                    }
+                    output.put(input.get());
+                } else {
+                    output.put((byte)0);
+                }
+                ++this.bit;
+                if (this.bit == 8 && this.tag != 0 && this.tag != 0xff) {
+                    this.tag = -1;
+                }
+            }
+        }
+    }
+}
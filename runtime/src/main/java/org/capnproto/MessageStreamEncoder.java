@@ -0,0 +1,183 @@
+// Copyright (c) 2013-2014 Sandstorm Development Group, Inc. and contributors
+// Licensed under the MIT License:
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.capnproto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes a single message to a non-blocking channel. Each call to `write()` hands the
+ * channel as many bytes as it will accept and returns whether the message has been written
+ * completely; if not, call `write()` again once the channel is writable. Unlike
+ * `Serialize.write()`, the encoder never spins waiting for the channel.
+ *
+ * The segments of the message must not be modified until the encoder has finished.
+ */
+public final class MessageStreamEncoder {
+
+    // Packing a single word produces at most 10 bytes: the tag, eight literal bytes, and a
+    // run count.
+    private static final int MAX_PACKED_BYTES_PER_WORD = 10;
+
+    private static final int PACK_BUFFER_BYTES = 8192;
+
+    private final ByteBuffer[] buffers;
+    private int index = 0;
+
+    // Packed output that has not been written yet, in read mode. Null when not packing.
+    private final ByteBuffer packBuffer;
+
+    private MessageStreamEncoder(ByteBuffer[] segments, boolean packed) {
+        this.buffers = new ByteBuffer[segments.length + 1];
+        this.buffers[0] = Serialize.makeSegmentTable(segments);
+        System.arraycopy(segments, 0, this.buffers, 1, segments.length);
+        if (packed) {
+            this.packBuffer = ByteBuffer.allocate(PACK_BUFFER_BYTES);
+            this.packBuffer.limit(0);
+        } else {
+            this.packBuffer = null;
+        }
+    }
+
+    private static ByteBuffer[] segmentsOf(MessageReader message) {
+        ByteBuffer[] segments = new ByteBuffer[message.arena.segments.size()];
+        for (int ii = 0 ; ii < message.arena.segments.size(); ++ii) {
+            segments[ii] = message.arena.segments.get(ii).buffer.duplicate();
+        }
+        return segments;
+    }
+
+    /**
+     * Constructs an encoder for the standard (unpacked) stream encoding.
+     */
+    public MessageStreamEncoder(MessageBuilder message) {
+        this(message.getSegmentsForOutput(), false);
+    }
+
+    public MessageStreamEncoder(MessageReader message) {
+        this(segmentsOf(message), false);
+    }
+
+    /**
+     * Constructs an encoder for the packed encoding.
+     */
+    public static MessageStreamEncoder packed(MessageBuilder message) {
+        return new MessageStreamEncoder(message.getSegmentsForOutput(), true);
+    }
+
+    public static MessageStreamEncoder packed(MessageReader message) {
+        return new MessageStreamEncoder(segmentsOf(message), true);
+    }
+
+    /**
+     * Writes as much of the message as the channel accepts. Returns true once the whole
+     * message has been written.
+     */
+    public boolean write(WritableByteChannel channel) throws IOException {
+        if (this.packBuffer == null) {
+            return writeUnpacked(channel);
+        }
+
+        while (true) {
+            while (this.packBuffer.hasRemaining()) {
+                if (channel.write(this.packBuffer) == 0) {
+                    return false;
+                }
+            }
+            if (!refillPackBuffer()) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the next run of bytes to write, or null if the whole message has been handed
+     * out. The caller must drain each returned buffer before asking for the next one.
+     */
+    ByteBuffer nextChunk() throws IOException {
+        if (this.packBuffer == null) {
+            return skipWritten() < this.buffers.length ? this.buffers[this.index] : null;
+        }
+        if (this.packBuffer.hasRemaining() || refillPackBuffer()) {
+            return this.packBuffer;
+        }
+        return null;
+    }
+
+    public boolean isFinished() {
+        return skipWritten() == this.buffers.length &&
+            (this.packBuffer == null || !this.packBuffer.hasRemaining());
+    }
+
+    private int skipWritten() {
+        while (this.index < this.buffers.length && !this.buffers[this.index].hasRemaining()) {
+            ++this.index;
+        }
+        return this.index;
+    }
+
+    private boolean writeUnpacked(WritableByteChannel channel) throws IOException {
+        while (skipWritten() < this.buffers.length) {
+            long n;
+            if (channel instanceof GatheringByteChannel) {
+                n = ((GatheringByteChannel)channel).write(this.buffers, this.index,
+                                                          this.buffers.length - this.index);
+            } else {
+                n = channel.write(this.buffers[this.index]);
+            }
+            if (n == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Packs the next part of the message into `packBuffer`. Returns false if there is
+     * nothing left to pack.
+     */
+    private boolean refillPackBuffer() throws IOException {
+        this.packBuffer.clear();
+        ArrayOutputStream out = new ArrayOutputStream(this.packBuffer);
+        PackedOutputStream packer = new PackedOutputStream(out);
+
+        while (skipWritten() < this.buffers.length) {
+            // Only take as many words as are guaranteed to fit once packed.
+            int words = out.buf.remaining() / MAX_PACKED_BYTES_PER_WORD;
+            if (words == 0) {
+                break;
+            }
+            ByteBuffer input = this.buffers[this.index];
+            int n = Math.min(input.remaining(), words * Constants.BYTES_PER_WORD);
+            ByteBuffer slice = input.slice();
+            slice.limit(n);
+            packer.write(slice);
+            input.position(input.position() + n);
+        }
+
+        this.packBuffer.limit(out.buf.position());
+        this.packBuffer.position(0);
+        return this.packBuffer.hasRemaining();
+    }
+}
@@ -0,0 +1,217 @@
+// Copyright (c) 2013-2014 Sandstorm Development Group, Inc. and contributors
+// Licensed under the MIT License:
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.capnproto;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Checks a whole message up front, so that it can then be read any number of times without
+ * checks on each read.
+ *
+ * A MessageReader checks every pointer it follows: that the object it points to is within
+ * its segment, and that the words read so far stay within the traversal limit. Both checks
+ * are repeated each time the pointer is followed again, and the traversal limit makes a
+ * message that is read often enough fail eventually. validate() follows every pointer in
+ * the message once, applying the same rules, and returns a reader that skips those checks.
+ * Reads from the underlying buffers are still checked by ByteBuffer itself.
+ */
+public final class MessageValidator {
+
+    private MessageValidator() {}
+
+    /**
+     * Checks every object reachable from the root of `message` against `options`: that it
+     * is within bounds, that far pointers lead to valid landing pads, that pointers are
+     * nested no deeper than options.nestingLimit, and that the message, counted as a reader
+     * would count it, fits in options.traversalLimitInWords.
+     *
+     * Returns a reader over the same segments that follows pointers without bounds checks
+     * and without a traversal limit. It still enforces options.nestingLimit, which every
+     * path through the message has been checked against.
+     *
+     * @throws DecodeException if the message is invalid.
+     */
+    public static MessageReader validate(MessageReader message, ReaderOptions options) {
+        ArrayList<SegmentReader> segments = message.arena.segments;
+        if (segments.isEmpty() || segments.get(0).buffer.capacity() < Constants.BYTES_PER_WORD) {
+            throw new DecodeException("Message has no root pointer.");
+        }
+
+        Validation validation = new Validation(segments, options.traversalLimitInWords);
+        validation.pointer(segments.get(0), 0, options.nestingLimit);
+        validation.run();
+
+        ByteBuffer[] segmentSlices = new ByteBuffer[segments.size()];
+        for (int ii = 0; ii < segmentSlices.length; ++ii) {
+            segmentSlices[ii] = segments.get(ii).buffer;
+        }
+        return new MessageReader(new ReaderArena(segmentSlices, -1, false), options.nestingLimit);
+    }
+
+    // Follows every pointer of a message, keeping those still to be followed in PointerRuns.
+    // Nothing is written anywhere, so runs hold no destination.
+    private static final class Validation implements PointerRuns.Visitor<Object> {
+        private final ArrayList<SegmentReader> segments;
+
+        // Counts the words read against the traversal limit, as the message's own arena would.
+        private final ReaderArena budget;
+
+        private final PointerRuns<Object> runs = new PointerRuns<>();
+
+        Validation(ArrayList<SegmentReader> segments, long traversalLimitInWords) {
+            this.segments = segments;
+            this.budget = new ReaderArena(new ByteBuffer[0], traversalLimitInWords);
+        }
+
+        private void push(SegmentReader segment, int offset, int stride, int pointerCount,
+                          int elementCount, int nestingLimit) {
+            this.runs.push(null, 0, 0, segment, offset, stride, elementCount, pointerCount, nestingLimit);
+        }
+
+        void run() {
+            this.runs.run(this);
+        }
+
+        @Override
+        public void visit(PointerRuns<Object> runs, Object dstSegment, int dstOffset,
+                          SegmentReader segment, int refOffset, int nestingLimit) {
+            pointer(segment, refOffset, nestingLimit);
+        }
+
+        private SegmentReader segment(int id) {
+            if (id < 0 || id >= this.segments.size()) {
+                throw new DecodeException("Message contains far pointer to unknown segment.");
+            }
+            return this.segments.get(id);
+        }
+
+        // Checks the pointer at `refOffset`, which is known to be within `segment`.
+        void pointer(SegmentReader segment, int refOffset, int nestingLimit) {
+            long ref = segment.get(refOffset);
+            if (WirePointer.isNull(ref)) {
+                return;
+            }
+
+            int ptr;
+            if (WirePointer.kind(ref) == WirePointer.FAR) {
+                SegmentReader padSegment = segment(FarPointer.getSegmentId(ref));
+                int padOffset = FarPointer.positionInSegment(ref);
+                boolean doubleFar = FarPointer.isDoubleFar(ref);
+                if (!padSegment.isInBounds(padOffset, doubleFar ? 2 : 1)) {
+                    throw new DecodeException("Message contains out-of-bounds far pointer.");
+                }
+                long pad = padSegment.get(padOffset);
+                if (!doubleFar) {
+                    if (WirePointer.kind(pad) == WirePointer.FAR) {
+                        throw new DecodeException("Far pointer's landing pad is another far pointer.");
+                    }
+                    segment = padSegment;
+                    ref = pad;
+                    ptr = WirePointer.target(padOffset, pad);
+                } else {
+                    if (WirePointer.kind(pad) != WirePointer.FAR || FarPointer.isDoubleFar(pad)) {
+                        throw new DecodeException("Double-far landing pad does not start with a far pointer.");
+                    }
+                    segment = segment(FarPointer.getSegmentId(pad));
+                    ref = padSegment.get(padOffset + 1);
+                    ptr = FarPointer.positionInSegment(pad);
+                }
+            } else {
+                ptr = WirePointer.target(refOffset, ref);
+            }
+
+            switch (WirePointer.kind(ref)) {
+            case WirePointer.STRUCT : {
+                if (nestingLimit <= 0) {
+                    throw new DecodeException("Message is too deeply nested or contains cycles. See org.capnproto.ReaderOptions.");
+                }
+                int dataSize = StructPointer.dataSize(ref);
+                int ptrCount = StructPointer.ptrCount(ref);
+                if (!segment.isInBounds(ptr, dataSize + ptrCount)) {
+                    throw new DecodeException("Message contains out-of-bounds struct pointer");
+                }
+                this.budget.checkReadLimit(dataSize + ptrCount);
+                push(segment, ptr + dataSize, 0, ptrCount, 1, nestingLimit - 1);
+                break;
+            }
+            case WirePointer.LIST :
+                if (nestingLimit <= 0) {
+                    throw new DecodeException("Message is too deeply nested or contains cycles. See org.capnproto.ReaderOptions.");
+                }
+                list(segment, ref, ptr, nestingLimit - 1);
+                break;
+            case WirePointer.FAR :
+                throw new DecodeException("Unexpected FAR pointer.");
+            default :
+                // A capability. Readers never follow these.
+                break;
+            }
+        }
+
+        private void list(SegmentReader segment, long ref, int ptr, int nestingLimit) {
+            byte elementSize = ListPointer.elementSize(ref);
+            if (elementSize == ElementSize.INLINE_COMPOSITE) {
+                int wordCount = ListPointer.inlineCompositeWordCount(ref);
+                if (!segment.isInBounds(ptr, wordCount + 1)) {
+                    throw new DecodeException("Message contains out-of-bounds list pointer.");
+                }
+                this.budget.checkReadLimit(wordCount + 1);
+
+                long tag = segment.get(ptr);
+                if (WirePointer.kind(tag) != WirePointer.STRUCT) {
+                    throw new DecodeException("INLINE_COMPOSITE lists of non-STRUCT type are not supported.");
+                }
+                int elementCount = WirePointer.inlineCompositeListElementCount(tag);
+                int dataSize = StructPointer.dataSize(tag);
+                int wordsPerElement = StructPointer.wordSize(tag);
+                if ((long)wordsPerElement * elementCount > wordCount) {
+                    throw new DecodeException("INLINE_COMPOSITE list's elements overrun its word count.");
+                }
+                if (wordsPerElement == 0) {
+                    // Watch out for lists of zero-sized structs, which can claim to be arbitrarily
+                    // large without having sent actual data.
+                    this.budget.checkReadLimit(elementCount);
+                }
+                push(segment, ptr + Constants.POINTER_SIZE_IN_WORDS + dataSize, wordsPerElement,
+                     StructPointer.ptrCount(tag), elementCount, nestingLimit);
+            } else {
+                int elementCount = ListPointer.elementCount(ref);
+                int step = ElementSize.dataBitsPerElement(elementSize) +
+                    ElementSize.pointersPerElement(elementSize) * Constants.BITS_PER_POINTER;
+                int wordCount = WireHelpers.roundBitsUpToWords((long)elementCount * step);
+                if (!segment.isInBounds(ptr, wordCount)) {
+                    throw new DecodeException("Message contains out-of-bounds list pointer.");
+                }
+                this.budget.checkReadLimit(wordCount);
+                if (elementSize == ElementSize.VOID) {
+                    // Watch out for lists of void, which can claim to be arbitrarily large without
+                    // having sent actual data.
+                    this.budget.checkReadLimit(elementCount);
+                }
+                if (elementSize == ElementSize.POINTER) {
+                    push(segment, ptr, 1, 1, elementCount, nestingLimit);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+// Copyright (c) 2013-2014 Sandstorm Development Group, Inc. and contributors
+// Licensed under the MIT License:
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.capnproto;
+
+/**
+ * An object that is not pointed to by anything in its message. Orphans are created with
+ * an Orphanage, or by disowning a pointer field, and are attached back to the message by
+ * adopting them into a pointer field of the same message. Neither step copies the object:
+ * only pointers are rewritten.
+ *
+ * The orphan keeps its object alive through a private pointer word in the message, which
+ * is zeroed once the orphan is adopted.
+ */
+public final class Orphan<T> {
+    private final FromPointerBuilder<T> factory;
+    private SegmentBuilder segment; // null once adopted
+    private final int pointer;
+
+    Orphan(FromPointerBuilder<T> factory, SegmentBuilder segment, int pointer) {
+        this.factory = factory;
+        this.segment = segment;
+        this.pointer = pointer;
+    }
+
+    // Allocates a pointer word for an orphan.
+    static <T> Orphan<T> allocate(FromPointerBuilder<T> factory, BuilderArena arena) {
+        if (arena.segments.isEmpty() || arena.segments.get(0).currentSize() == 0) {
+            // The first word of the message is reserved for the root pointer.
+            arena.allocateInLastSegment(Constants.POINTER_SIZE_IN_WORDS);
+        }
+        int pointer = arena.allocateInLastSegment(Constants.POINTER_SIZE_IN_WORDS);
+        return new Orphan<T>(factory, arena.lastSegment(), pointer);
+    }
+
+    // Moves the object pointed to by the pointer at `pointer` into a new orphan.
+    static <T> Orphan<T> disown(FromPointerBuilder<T> factory, SegmentBuilder segment, int pointer) {
+        Orphan<T> result = allocate(factory, segment.getArena());
+        WireHelpers.transferPointer(result.segment, result.pointer, segment, pointer);
+        segment.put(pointer, 0L);
+        return result;
+    }
+
+    // Points the pointer at `pointer` to this orphan's object, discarding whatever it
+    // pointed to before.
+    void adoptInto(SegmentBuilder segment, int pointer) {
+        if (this.segment == null) {
+            throw new IllegalStateException("orphan has already been adopted");
+        }
+        if (this.segment.getArena() != segment.getArena()) {
+            throw new IllegalArgumentException("cannot adopt an orphan from a different message");
+        }
+        if (!WirePointer.isNull(segment.get(pointer))) {
+            WireHelpers.zeroObject(segment, pointer);
+        }
+        WireHelpers.transferPointer(segment, pointer, this.segment, this.pointer);
+        this.segment.put(this.pointer, 0L);
+        this.segment = null;
+    }
+
+    void initAs(FromPointerBuilder<T> factory, int elementCount) {
+        factory.initFromPointerBuilder(this.segment, this.pointer, elementCount);
+    }
+
+    <U> void setAs(SetPointerBuilder<T, U> factory, U value) {
+        factory.setPointerBuilder(this.segment, this.pointer, value);
+    }
+
+    void referenceExternal(AnyPointer.Reader value) {
+        WireHelpers.referenceExternalPointer(this.segment, this.pointer,
+                                             value.segment, value.pointer, value.nestingLimit);
+    }
+
+    public final boolean isNull() {
+        return this.segment == null || WirePointer.isNull(this.segment.get(this.pointer));
+    }
+
+    /**
+     * Returns a builder for the object. This must not be called after the orphan is adopted;
+     * use the field it was adopted into instead.
+     */
+    public final T get() {
+        if (this.segment == null) {
+            throw new IllegalStateException("orphan has already been adopted");
+        }
+        return this.factory.fromPointerBuilder(this.segment, this.pointer);
+    }
+
+    public final <U> U getAsReader(FromPointerReader<U> factory) {
+        if (this.segment == null) {
+            throw new IllegalStateException("orphan has already been adopted");
+        }
+        return factory.fromPointerReader(this.segment, this.pointer, java.lang.Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,76 @@
+// Copyright (c) 2013-2014 Sandstorm Development Group, Inc. and contributors
+// Licensed under the MIT License:
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.capnproto;
+
+/**
+ * Creates orphans inside a message (see Orphan). Obtain one with
+ * MessageBuilder.getOrphanage().
+ */
+public final class Orphanage {
+    private final BuilderArena arena;
+
+    Orphanage(BuilderArena arena) {
+        this.arena = arena;
+    }
+
+    /**
+     * Allocates a new struct (or, for AnyPointer, a null pointer) as an orphan.
+     */
+    public <T> Orphan<T> newOrphan(FromPointerBuilder<T> factory) {
+        return newOrphan(factory, 0);
+    }
+
+    /**
+     * Allocates a new list, text or data blob of `elementCount` elements as an orphan.
+     */
+    public <T> Orphan<T> newOrphan(FromPointerBuilder<T> factory, int elementCount) {
+        Orphan<T> result = Orphan.allocate(factory, this.arena);
+        result.initAs(factory, elementCount);
+        return result;
+    }
+
+    /**
+     * Makes a deep copy of `value` as an orphan.
+     */
+    public <T, U, F extends FromPointerBuilder<T> & SetPointerBuilder<T, U>> Orphan<T> newOrphanCopy(F factory, U value) {
+        Orphan<T> result = Orphan.allocate(factory, this.arena);
+        result.setAs(factory, value);
+        return result;
+    }
+
+    /**
+     * Makes an orphan that refers to `value`, an object in a message being read, without
+     * copying it: the segment of that message which holds `value` becomes a read-only segment
+     * of this one. That requires `value`, and everything reachable from it, to lie in a single
+     * segment; if it does not, or if `value` belongs to a message that is being built, `value`
+     * is copied instead. The other message's buffers must stay unchanged for as long as this
+     * message refers to them.
+     *
+     * Readers of the object see the original data. Getting a builder for it makes a private
+     * copy first, so writes never reach the other message.
+     */
+    public <T> Orphan<T> referenceExternal(FromPointerBuilder<T> factory, AnyPointer.Reader value) {
+        Orphan<T> result = Orphan.allocate(factory, this.arena);
+        result.referenceExternal(value);
+        return result;
+    }
+}
@@ -24,6 +24,7 @@ package org.capnproto;
 import java.io.IOException;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public final class PackedInputStream implements ReadableByteChannel {
     final BufferedInputStream inner;
@@ -41,14 +42,13 @@ public final class PackedInputStream implements ReadableByteChannel {
             throw new DecodeException("PackedInputStream reads must be word-aligned");
         }
 
-        int outPtr = outBuf.position();
-        int outEnd = outPtr + len;
+        boolean littleEndian = outBuf.order() == ByteOrder.LITTLE_ENDIAN;
 
         ByteBuffer inBuf = this.inner.getReadBuffer();
 
         while (true) {
 
-            byte tag = 0;
+            int tag = 0;
 
             if (inBuf.remaining() < 10) {
                 if (outBuf.remaining() == 0) {
@@ -63,7 +63,7 @@ public final class PackedInputStream implements ReadableByteChannel {
                 //# We have at least 1, but not 10, bytes available. We need to read
                 //# slowly, doing a bounds check on each byte.
 
-                tag = inBuf.get();
+                tag = inBuf.get() & 0xff;
 
                 for (int i = 0; i < 8; ++i) {
                     if ((tag & (1 << i)) != 0) {
@@ -76,17 +76,26 @@ public final class PackedInputStream implements ReadableByteChannel {
                     }
                 }
 
-                if (inBuf.remaining() == 0 && (tag == 0 || tag == (byte)0xff)) {
+                if (inBuf.remaining() == 0 && (tag == 0 || tag == 0xff)) {
                     inBuf = this.inner.getReadBuffer();
                 }
             } else {
-
-                tag = inBuf.get();
-                for (int n = 0; n < 8; ++n) {
-                    boolean isNonzero = (tag & (1 << n)) != 0;
-                    outBuf.put((byte)(inBuf.get() & (isNonzero ? -1 : 0)));
-                    inBuf.position(inBuf.position() + (isNonzero ? 0 : -1));
+                // Fast path: the tag and all of its data bytes are in inBuf, so we can
+                // expand the whole word at once without bounds checks on each byte.
+                int inPos = inBuf.position();
+                tag = inBuf.get(inPos) & 0xff;
+
+                long word;
+                if (inBuf.hasArray()) {
+                    word = expandWord(inBuf.array(), inBuf.arrayOffset() + inPos + 1, tag);
+                } else {
+                    word = expandWord(inBuf, inPos + 1, tag);
                 }
+
+                int outPos = outBuf.position();
+                outBuf.putLong(outPos, littleEndian ? word : Long.reverseBytes(word));
+                outBuf.position(outPos + 8);
+                inBuf.position(inPos + 1 + Integer.bitCount(tag));
             }
 
             if (tag == 0) {
@@ -96,14 +105,12 @@ public final class PackedInputStream implements ReadableByteChannel {
 
                 int runLength = (0xff & (int)inBuf.get()) * 8;
 
-                if (runLength > outEnd - outPtr) {
+                if (runLength > outBuf.remaining()) {
                     throw new DecodeException("Packed input did not end cleanly on a segment boundary");
                 }
 
-                for (int i = 0; i < runLength; ++i) {
-                    outBuf.put((byte) 0);
-                }
-            } else if (tag == (byte)0xff) {
+                zeroFill(outBuf, runLength);
+            } else if (tag == 0xff) {
 
                 int runLength = (0xff & (int)inBuf.get()) * 8;
 
@@ -139,6 +146,48 @@ public final class PackedInputStream implements ReadableByteChannel {
         }
     }
 
+    /**
+     * Expands the data bytes that follow `tag` into a little-endian word, placing the n-th
+     * data byte at the position of the n-th set bit of `tag`. Reads up to 8 bytes starting
+     * at `pos` regardless of how many bits are set, so the caller must ensure that they exist.
+     */
+    static long expandWord(byte[] in, int pos, int tag) {
+        long word = 0;
+        for (int i = 0; i < 8; ++i) {
+            int bit = (tag >>> i) & 1;
+            word |= ((long)(in[pos] & 0xff) & -bit) << (i * 8);
+            pos += bit;
+        }
+        return word;
+    }
+
+    static long expandWord(ByteBuffer in, int pos, int tag) {
+        long word = 0;
+        for (int i = 0; i < 8; ++i) {
+            int bit = (tag >>> i) & 1;
+            word |= ((long)(in.get(pos) & 0xff) & -bit) << (i * 8);
+            pos += bit;
+        }
+        return word;
+    }
+
+    /**
+     * Writes `length` zero bytes at the position of `outBuf`, advancing it. `length` must be a
+     * multiple of 8.
+     */
+    static void zeroFill(ByteBuffer outBuf, int length) {
+        int outPos = outBuf.position();
+        if (outBuf.hasArray()) {
+            int start = outBuf.arrayOffset() + outPos;
+            java.util.Arrays.fill(outBuf.array(), start, start + length, (byte)0);
+        } else {
+            for (int ii = 0; ii < length; ii += 8) {
+                outBuf.putLong(outPos + ii, 0L);
+            }
+        }
+        outBuf.position(outPos + length);
+    }
+
     public void close() throws IOException {
         inner.close();
     }
@@ -24,6 +24,7 @@ package org.capnproto;
 import java.io.IOException;
 import java.nio.channels.WritableByteChannel;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public final class PackedOutputStream implements WritableByteChannel {
     final BufferedOutputStream inner;
@@ -32,12 +33,75 @@ public final class PackedOutputStream implements WritableByteChannel {
         this.inner = output;
     }
 
+    /**
+     * Returns a word with the high bit of each byte set if the corresponding byte of `word`
+     * is nonzero, and all other bits clear.
+     */
+    static long nonzeroBytes(long word) {
+        return (((word & 0x7f7f7f7f7f7f7f7fL) + 0x7f7f7f7f7f7f7f7fL) | word) & 0x8080808080808080L;
+    }
+
+    /**
+     * Returns the tag byte for a little-endian word: bit i is set if byte i is nonzero.
+     */
+    static int tagOf(long word) {
+        // Gather the high bit of each byte into the top byte.
+        return (int)(((nonzeroBytes(word) >>> 7) * 0x0102040810204080L) >>> 56);
+    }
+
+    private static long getWord(ByteBuffer buffer, int index, boolean littleEndian) {
+        long word = buffer.getLong(index);
+        return littleEndian ? word : Long.reverseBytes(word);
+    }
+
+    /**
+     * Returns the number of bytes that write() produces when packing `inBuf`, from its
+     * position to its limit. Does not modify `inBuf`.
+     */
+    static long packedSizeInBytes(ByteBuffer inBuf) {
+        long size = 0;
+        int inPtr = inBuf.position();
+        int inEnd = inBuf.limit();
+        while (inPtr < inEnd) {
+            int count = Long.bitCount(nonzeroBytes(inBuf.getLong(inPtr)));
+            inPtr += 8;
+            size += 1 + count;
+
+            if (count == 0) {
+                int limit = Math.min(inEnd, inPtr + 255 * 8);
+                while (inPtr < limit && inBuf.getLong(inPtr) == 0) {
+                    inPtr += 8;
+                }
+                size += 1;
+            } else if (count == 8) {
+                int runStart = inPtr;
+                inPtr = literalRunEnd(inBuf, inPtr, Math.min(inEnd, inPtr + 255 * 8));
+                size += 1 + (inPtr - runStart);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the end of the run of words starting at `inPtr` that have no more than a single
+     * zero byte. We look for at least two zeros because that's the point where our compression
+     * scheme becomes a net win.
+     */
+    private static int literalRunEnd(ByteBuffer inBuf, int inPtr, int limit) {
+        while (inPtr < limit && Long.bitCount(nonzeroBytes(inBuf.getLong(inPtr))) >= 7) {
+            inPtr += 8;
+        }
+        return inPtr;
+    }
+
     public int write(ByteBuffer inBuf) throws IOException {
         int length = inBuf.remaining();
         ByteBuffer out = this.inner.getWriteBuffer();
 
         ByteBuffer slowBuffer = ByteBuffer.allocate(20);
 
+        boolean littleEndian = inBuf.order() == ByteOrder.LITTLE_ENDIAN;
+
         int inPtr = inBuf.position();
         int inEnd = inPtr + length;
         while (inPtr < inEnd) {
@@ -58,63 +122,31 @@ public final class PackedOutputStream implements WritableByteChannel {
                 out.rewind();
             }
 
+            long word = getWord(inBuf, inPtr, littleEndian);
+            inPtr += 8;
+
+            int tag = tagOf(word);
             int tagPos = out.position();
-            out.position(tagPos + 1);
-
-            byte curByte;
-
-            curByte = inBuf.get(inPtr);
-            byte bit0 = (curByte != 0) ? (byte)1 : (byte)0;
-            out.put(curByte);
-            out.position(out.position() + bit0 - 1);
-            inPtr += 1;
-
-            curByte = inBuf.get(inPtr);
-            byte bit1 = (curByte != 0) ? (byte)1 : (byte)0;
-            out.put(curByte);
-            out.position(out.position() + bit1 - 1);
-            inPtr += 1;
-
-            curByte = inBuf.get(inPtr);
-            byte bit2 = (curByte != 0) ? (byte)1 : (byte)0;
-            out.put(curByte);
-            out.position(out.position() + bit2 - 1);
-            inPtr += 1;
-
-            curByte = inBuf.get(inPtr);
-            byte bit3 = (curByte != 0) ? (byte)1 : (byte)0;
-            out.put(curByte);
-            out.position(out.position() + bit3 - 1);
-            inPtr += 1;
-
-            curByte = inBuf.get(inPtr);
-            byte bit4 = (curByte != 0) ? (byte)1 : (byte)0;
-            out.put(curByte);
-            out.position(out.position() + bit4 - 1);
-            inPtr += 1;
-
-            curByte = inBuf.get(inPtr);
-            byte bit5 = (curByte != 0) ? (byte)1 : (byte)0;
-            out.put(curByte);
-            out.position(out.position() + bit5 - 1);
-            inPtr += 1;
-
-            curByte = inBuf.get(inPtr);
-            byte bit6 = (curByte != 0) ? (byte)1 : (byte)0;
-            out.put(curByte);
-            out.position(out.position() + bit6 - 1);
-            inPtr += 1;
-
-            curByte = inBuf.get(inPtr);
-            byte bit7 = (curByte != 0) ? (byte)1 : (byte)0;
-            out.put(curByte);
-            out.position(out.position() + bit7 - 1);
-            inPtr += 1;
-
-            byte tag = (byte)((bit0) | (bit1 << 1) | (bit2 << 2) | (bit3 << 3) |
-                              (bit4 << 4) | (bit5 << 5) | (bit6 << 6) | (bit7 << 7));
-
-            out.put(tagPos, tag);
+            out.put(tagPos, (byte)tag);
+
+            // Store every byte, but only advance past the nonzero ones. This writes up to
+            // 8 bytes past the tag, which is why we need 10 bytes of space.
+            int outPos = tagPos + 1;
+            if (out.hasArray()) {
+                byte[] outArray = out.array();
+                int pos = out.arrayOffset() + outPos;
+                for (int i = 0; i < 8; ++i) {
+                    outArray[pos] = (byte)(word >>> (i * 8));
+                    pos += (tag >>> i) & 1;
+                }
+            } else {
+                int pos = outPos;
+                for (int i = 0; i < 8; ++i) {
+                    out.put(pos, (byte)(word >>> (i * 8)));
+                    pos += (tag >>> i) & 1;
+                }
+            }
+            out.position(outPos + Integer.bitCount(tag));
 
             if (tag == 0) {
                 //# An all-zero word is followed by a count of
@@ -130,7 +162,7 @@ public final class PackedOutputStream implements WritableByteChannel {
                 }
                 out.put((byte)((inPtr - runStart)/8));
 
-            } else if (tag == (byte)0xff) {
+            } else if (tag == 0xff) {
                 //# An all-nonzero word is followed by a count of
                 //# consecutive uncompressed words, followed by the
                 //# uncompressed words themselves.
@@ -146,19 +178,7 @@ public final class PackedOutputStream implements WritableByteChannel {
                     limit = inPtr + 255 * 8;
                 }
 
-                while (inPtr < limit) {
-                    byte c = 0;
-                    for (int ii = 0; ii < 8; ++ii) {
-                        c += (inBuf.get(inPtr) == 0 ? 1 : 0);
-                        inPtr += 1;
-                    }
-                    if (c >= 2) {
-                        //# Un-read the word with multiple zeros, since
-                        //# we'll want to compress that one.
-                        inPtr -= 8;
-                        break;
-                    }
-                }
+                inPtr = literalRunEnd(inBuf, inPtr, limit);
 
                 int count = inPtr - runStart;
                 out.put((byte)(count / 8));
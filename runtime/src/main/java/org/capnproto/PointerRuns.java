@@ -0,0 +1,120 @@
+// Copyright (c) 2013-2014 Sandstorm Development Group, Inc. and contributors
+// Licensed under the MIT License:
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.capnproto;
+
+import java.util.Arrays;
+
+/**
+ * The pointers still to be visited by a walk over a message, such as a deep copy. Walks keep
+ * them here instead of recursing into each pointer, so that long chains of pointers cannot
+ * overflow the call stack.
+ *
+ * Each entry is a run of pointers: `elementCount` elements of `pointerCount` pointers each,
+ * whose source pointers are `srcStride` words apart and whose destinations, for walks that
+ * write somewhere, are `dstStride` words apart. Runs pushed last are visited first, which
+ * visits objects in the same depth-first order as recursing would.
+ */
+final class PointerRuns<D> {
+
+    interface Visitor<D> {
+        // Visits one pointer, pushing the pointers of whatever it points to onto `runs`.
+        void visit(PointerRuns<D> runs, D dstSegment, int dstOffset,
+                   SegmentReader srcSegment, int srcOffset, int nestingLimit);
+    }
+
+    private static final int DST_OFFSET = 0;
+    private static final int DST_STRIDE = 1;
+    private static final int SRC_OFFSET = 2;
+    private static final int SRC_STRIDE = 3;
+    private static final int POINTER_COUNT = 4;
+    private static final int NEXT = 5;
+    private static final int END = 6;
+    private static final int NESTING_LIMIT = 7;
+    private static final int INTS_PER_RUN = 8;
+
+    private Object[] dstSegments;
+    private SegmentReader[] srcSegments;
+    private int[] runs;
+    private int size;
+
+    void push(D dstSegment, int dstOffset, int dstStride,
+              SegmentReader srcSegment, int srcOffset, int srcStride,
+              int elementCount, int pointerCount, int nestingLimit) {
+        if (elementCount == 0 || pointerCount == 0) {
+            return;
+        }
+        if (this.runs == null) {
+            this.dstSegments = new Object[8];
+            this.srcSegments = new SegmentReader[8];
+            this.runs = new int[8 * INTS_PER_RUN];
+        } else if (this.size == this.srcSegments.length) {
+            this.dstSegments = Arrays.copyOf(this.dstSegments, this.size * 2);
+            this.srcSegments = Arrays.copyOf(this.srcSegments, this.size * 2);
+            this.runs = Arrays.copyOf(this.runs, this.size * 2 * INTS_PER_RUN);
+        }
+        this.dstSegments[this.size] = dstSegment;
+        this.srcSegments[this.size] = srcSegment;
+        int run = this.size * INTS_PER_RUN;
+        this.runs[run + DST_OFFSET] = dstOffset;
+        this.runs[run + DST_STRIDE] = dstStride;
+        this.runs[run + SRC_OFFSET] = srcOffset;
+        this.runs[run + SRC_STRIDE] = srcStride;
+        this.runs[run + POINTER_COUNT] = pointerCount;
+        this.runs[run + NEXT] = 0;
+        this.runs[run + END] = elementCount * pointerCount;
+        this.runs[run + NESTING_LIMIT] = nestingLimit;
+        ++this.size;
+    }
+
+    // Visits pointers until there are none left, or until clear() is called.
+    @SuppressWarnings("unchecked")
+    void run(Visitor<D> visitor) {
+        while (this.size > 0) {
+            int top = this.size - 1;
+            int run = top * INTS_PER_RUN;
+            D dstSegment = (D)this.dstSegments[top];
+            SegmentReader srcSegment = this.srcSegments[top];
+            int pointerCount = this.runs[run + POINTER_COUNT];
+            int index = this.runs[run + NEXT]++;
+            int element = index / pointerCount;
+            int pointer = index % pointerCount;
+            int dstOffset = this.runs[run + DST_OFFSET] + element * this.runs[run + DST_STRIDE] + pointer;
+            int srcOffset = this.runs[run + SRC_OFFSET] + element * this.runs[run + SRC_STRIDE] + pointer;
+            int nestingLimit = this.runs[run + NESTING_LIMIT];
+            if (index + 1 == this.runs[run + END]) {
+                this.dstSegments[top] = null;
+                this.srcSegments[top] = null;
+                this.size = top;
+            }
+            visitor.visit(this, dstSegment, dstOffset, srcSegment, srcOffset, nestingLimit);
+        }
+    }
+
+    // Drops every pointer not yet visited, for walks that can stop early.
+    void clear() {
+        if (this.runs != null) {
+            Arrays.fill(this.dstSegments, 0, this.size, null);
+            Arrays.fill(this.srcSegments, 0, this.size, null);
+        }
+        this.size = 0;
+    }
+}
@@ -0,0 +1,203 @@
+// Copyright (c) 2013-2014 Sandstorm Development Group, Inc. and contributors
+// Licensed under the MIT License:
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.capnproto;
+
+import java.nio.ByteBuffer;
+
+import org.capnproto.DefaultAllocator.ByteBufferAllocationStyle;
+
+/**
+ * An Allocator that recycles segments handed back by MessageBuilder.release().
+ *
+ * Segment sizes are rounded up to a size class of `minSegmentBytes` times a power of two.
+ * Each size class keeps a few free lists ("stripes"), and a thread first uses the stripe
+ * picked by its id, so threads rarely contend for the same lock. Segments larger than
+ * `maxPooledSegmentBytes` are allocated exactly and are not recycled. Within one message,
+ * segments grow as with BuilderArena.AllocationStrategy.GROW_HEURISTICALLY.
+ *
+ * A single PooledAllocator is meant to be shared by many MessageBuilders, from any
+ * number of threads.
+ */
+public final class PooledAllocator implements Allocator {
+
+    public static final int DEFAULT_MIN_SEGMENT_BYTES =
+        BuilderArena.SUGGESTED_FIRST_SEGMENT_WORDS * Constants.BYTES_PER_WORD;
+    public static final int DEFAULT_MAX_POOLED_SEGMENT_BYTES = 1 << 24;
+    public static final int DEFAULT_MAX_SEGMENTS_PER_STRIPE = 16;
+
+    private static final class FreeList {
+        private final ByteBuffer[] buffers;
+        private int count = 0;
+
+        FreeList(int capacity) {
+            this.buffers = new ByteBuffer[capacity];
+        }
+
+        synchronized ByteBuffer poll() {
+            if (this.count == 0) {
+                return null;
+            }
+            ByteBuffer result = this.buffers[--this.count];
+            this.buffers[this.count] = null;
+            return result;
+        }
+
+        synchronized boolean offer(ByteBuffer buffer) {
+            if (this.count == this.buffers.length) {
+                return false;
+            }
+            this.buffers[this.count++] = buffer;
+            return true;
+        }
+
+        synchronized int size() {
+            return this.count;
+        }
+    }
+
+    public final ByteBufferAllocationStyle allocationStyle;
+    public final int minSegmentBytes;
+    public final int maxPooledSegmentBytes;
+
+    // freeLists[sizeClass][stripe]
+    private final FreeList[][] freeLists;
+    private final int stripeMask;
+
+    public PooledAllocator() {
+        this(ByteBufferAllocationStyle.REGULAR);
+    }
+
+    public PooledAllocator(ByteBufferAllocationStyle style) {
+        this(style, DEFAULT_MIN_SEGMENT_BYTES, DEFAULT_MAX_POOLED_SEGMENT_BYTES,
+             DEFAULT_MAX_SEGMENTS_PER_STRIPE);
+    }
+
+    public PooledAllocator(ByteBufferAllocationStyle style,
+                           int minSegmentBytes,
+                           int maxPooledSegmentBytes,
+                           int maxSegmentsPerStripe) {
+        if (minSegmentBytes <= 0 || minSegmentBytes % Constants.BYTES_PER_WORD != 0) {
+            throw new IllegalArgumentException("minSegmentBytes must be a positive multiple of 8");
+        }
+        if (maxPooledSegmentBytes < minSegmentBytes) {
+            throw new IllegalArgumentException("maxPooledSegmentBytes must be at least minSegmentBytes");
+        }
+        this.allocationStyle = style;
+        this.minSegmentBytes = minSegmentBytes;
+        this.maxPooledSegmentBytes = maxPooledSegmentBytes;
+
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        this.stripeMask = stripes - 1;
+        int sizeClasses = sizeClass(maxPooledSegmentBytes);
+        if (((long)minSegmentBytes << sizeClasses) > maxPooledSegmentBytes) {
+            --sizeClasses;
+        }
+        this.freeLists = new FreeList[sizeClasses + 1][stripes];
+        for (int ii = 0; ii < this.freeLists.length; ++ii) {
+            for (int jj = 0; jj < stripes; ++jj) {
+                this.freeLists[ii][jj] = new FreeList(maxSegmentsPerStripe);
+            }
+        }
+    }
+
+    // The smallest k such that `minSegmentBytes << k` is at least `size`.
+    private int sizeClass(int size) {
+        long multiple = ((long)size + this.minSegmentBytes - 1) / this.minSegmentBytes;
+        return multiple <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(multiple - 1);
+    }
+
+    private int stripe() {
+        return (int)Thread.currentThread().getId() & this.stripeMask;
+    }
+
+    private ByteBuffer newBuffer(int size) {
+        switch (this.allocationStyle) {
+            case DIRECT:
+                return ByteBuffer.allocateDirect(size);
+            default:
+                return ByteBuffer.allocate(size);
+        }
+    }
+
+    @Override
+    public ByteBuffer allocateSegment(int minimumSize) {
+        int sizeClass = sizeClass(minimumSize);
+        if (sizeClass >= this.freeLists.length) {
+            return newBuffer(Math.max(minimumSize, this.minSegmentBytes));
+        }
+
+        FreeList[] stripes = this.freeLists[sizeClass];
+        int home = stripe();
+        for (int ii = 0; ii < stripes.length; ++ii) {
+            ByteBuffer result = stripes[(home + ii) & this.stripeMask].poll();
+            if (result != null) {
+                result.clear();
+                return result;
+            }
+        }
+        return newBuffer(this.minSegmentBytes << sizeClass);
+    }
+
+    /**
+     * Grows segments as with BuilderArena.AllocationStrategy.GROW_HEURISTICALLY: each new
+     * segment of a message is at least as large as all of its earlier ones together, up
+     * to `maxPooledSegmentBytes`.
+     */
+    @Override
+    public ByteBuffer allocateSegment(int minimumSize, int messageBytes) {
+        return allocateSegment(Math.max(minimumSize, Math.min(messageBytes, this.maxPooledSegmentBytes)));
+    }
+
+    @Override
+    public void releaseSegment(ByteBuffer segment) {
+        int capacity = segment.capacity();
+        int sizeClass = sizeClass(capacity);
+        if (sizeClass >= this.freeLists.length ||
+            capacity != this.minSegmentBytes << sizeClass ||
+            segment.isReadOnly() ||
+            segment.isDirect() != (this.allocationStyle == ByteBufferAllocationStyle.DIRECT)) {
+            // Not one of ours.
+            return;
+        }
+
+        FreeList[] stripes = this.freeLists[sizeClass];
+        int home = stripe();
+        for (int ii = 0; ii < stripes.length; ++ii) {
+            if (stripes[(home + ii) & this.stripeMask].offer(segment)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of segments currently waiting to be reused.
+     */
+    public int pooledSegmentCount() {
+        int result = 0;
+        for (FreeList[] stripes : this.freeLists) {
+            for (FreeList list : stripes) {
+                result += list.size();
+            }
+        }
+        return result;
+    }
+}
@@ -293,6 +293,78 @@ public class PrimitiveList {
             public int get(int index) {
                 return _getIntElement(index);
             }
+
+            /**
+             * Copies the elements to `dst`, starting at `dst[offset]`.
+             */
+            public void copyTo(int[] dst, int offset) {
+                java.nio.ByteBuffer elements = packedElements(this.segment, this.ptr, this.elementCount, this.step, 4);
+                if (elements != null) {
+                    elements.asIntBuffer().get(dst, offset, this.elementCount);
+                } else {
+                    for (int ii = 0; ii < this.elementCount; ++ii) {
+                        dst[offset + ii] = _getIntElement(ii);
+                    }
+                }
+            }
+
+            /**
+             * Returns a read-only view of the elements, or a read-only copy of them if they
+             * are not stored back to back in the message (when this list was written as a list
+             * of structs).
+             */
+            public java.nio.IntBuffer asIntBuffer() {
+                java.nio.ByteBuffer elements = packedElements(this.segment, this.ptr, this.elementCount, this.step, 4);
+                if (elements != null) {
+                    return elements.asIntBuffer().asReadOnlyBuffer();
+                }
+                int[] copy = new int[this.elementCount];
+                copyTo(copy, 0);
+                return java.nio.IntBuffer.wrap(copy).asReadOnlyBuffer();
+            }
+
+            public java.util.stream.IntStream stream() {
+                return java.util.stream.IntStream.range(0, this.elementCount).map(ii -> _getIntElement(ii));
+            }
+
+            /**
+             * Returns the sum of the elements, as a long so that it cannot overflow.
+             */
+            public long sum() {
+                long result = 0;
+                int stride = this.step / Constants.BITS_PER_BYTE;
+                for (int ii = 0, position = this.ptr; ii < this.elementCount; ++ii, position += stride) {
+                    result += this.segment.buffer.getInt(position);
+                }
+                return result;
+            }
+
+            /**
+             * @throws java.util.NoSuchElementException if the list is empty.
+             */
+            public int min() {
+                if (this.elementCount == 0) {
+                    throw new java.util.NoSuchElementException("empty list");
+                }
+                int result = _getIntElement(0);
+                int stride = this.step / Constants.BITS_PER_BYTE;
+                for (int ii = 1, position = this.ptr + stride; ii < this.elementCount; ++ii, position += stride) {
+                    result = java.lang.Math.min(result, this.segment.buffer.getInt(position));
+                }
+                return result;
+            }
+
+            public int max() {
+                if (this.elementCount == 0) {
+                    throw new java.util.NoSuchElementException("empty list");
+                }
+                int result = _getIntElement(0);
+                int stride = this.step / Constants.BITS_PER_BYTE;
+                for (int ii = 1, position = this.ptr + stride; ii < this.elementCount; ++ii, position += stride) {
+                    result = java.lang.Math.max(result, this.segment.buffer.getInt(position));
+                }
+                return result;
+            }
         }
 
         public static final class Builder extends ListBuilder {
@@ -310,6 +382,42 @@ public class PrimitiveList {
                 _setIntElement(index, value);
             }
 
+            public void copyTo(int[] dst, int offset) {
+                asReader().copyTo(dst, offset);
+            }
+
+            /**
+             * Sets every element, from `src`, which must have exactly size() values.
+             */
+            public void setAll(int[] src) {
+                if (src.length != this.elementCount) {
+                    throw new IllegalArgumentException(
+                        "cannot set " + src.length + " values in a list of " + this.elementCount);
+                }
+                java.nio.ByteBuffer elements = ListReader.packedElements(this.segment, this.ptr, this.elementCount, this.step, 4);
+                if (elements != null) {
+                    elements.asIntBuffer().put(src);
+                } else {
+                    for (int ii = 0; ii < this.elementCount; ++ii) {
+                        _setIntElement(ii, src[ii]);
+                    }
+                }
+            }
+
+            /**
+             * Returns a view of the elements, through which they can be read and written.
+             *
+             * @throws UnsupportedOperationException if the elements are not stored back to back
+             *         in the message (when this list was written as a list of structs).
+             */
+            public java.nio.IntBuffer asIntBuffer() {
+                java.nio.ByteBuffer elements = ListReader.packedElements(this.segment, this.ptr, this.elementCount, this.step, 4);
+                if (elements == null) {
+                    throw new UnsupportedOperationException("list elements are not stored back to back");
+                }
+                return elements.asIntBuffer();
+            }
+
             public final Reader asReader() {
                 return new Reader(this.segment, this.ptr, this.elementCount, this.step,
                                   this.structDataSize, this.structPointerCount,
@@ -353,6 +461,64 @@ public class PrimitiveList {
             public float get(int index) {
                 return _getFloatElement(index);
             }
+
+            public void copyTo(float[] dst, int offset) {
+                java.nio.ByteBuffer elements = packedElements(this.segment, this.ptr, this.elementCount, this.step, 4);
+                if (elements != null) {
+                    elements.asFloatBuffer().get(dst, offset, this.elementCount);
+                } else {
+                    for (int ii = 0; ii < this.elementCount; ++ii) {
+                        dst[offset + ii] = _getFloatElement(ii);
+                    }
+                }
+            }
+
+            public java.nio.FloatBuffer asFloatBuffer() {
+                java.nio.ByteBuffer elements = packedElements(this.segment, this.ptr, this.elementCount, this.step, 4);
+                if (elements != null) {
+                    return elements.asFloatBuffer().asReadOnlyBuffer();
+                }
+                float[] copy = new float[this.elementCount];
+                copyTo(copy, 0);
+                return java.nio.FloatBuffer.wrap(copy).asReadOnlyBuffer();
+            }
+
+            public java.util.stream.DoubleStream stream() {
+                return java.util.stream.IntStream.range(0, this.elementCount).mapToDouble(ii -> _getFloatElement(ii));
+            }
+
+            public double sum() {
+                double result = 0;
+                int stride = this.step / Constants.BITS_PER_BYTE;
+                for (int ii = 0, position = this.ptr; ii < this.elementCount; ++ii, position += stride) {
+                    result += this.segment.buffer.getFloat(position);
+                }
+                return result;
+            }
+
+            public float min() {
+                if (this.elementCount == 0) {
+                    throw new java.util.NoSuchElementException("empty list");
+                }
+                float result = _getFloatElement(0);
+                int stride = this.step / Constants.BITS_PER_BYTE;
+                for (int ii = 1, position = this.ptr + stride; ii < this.elementCount; ++ii, position += stride) {
+                    result = java.lang.Math.min(result, this.segment.buffer.getFloat(position));
+                }
+                return result;
+            }
+
+            public float max() {
+                if (this.elementCount == 0) {
+                    throw new java.util.NoSuchElementException("empty list");
+                }
+                float result = _getFloatElement(0);
+                int stride = this.step / Constants.BITS_PER_BYTE;
+                for (int ii = 1, position = this.ptr + stride; ii < this.elementCount; ++ii, position += stride) {
+                    result = java.lang.Math.max(result, this.segment.buffer.getFloat(position));
+                }
+                return result;
+            }
         }
 
         public static final class Builder extends ListBuilder {
@@ -370,6 +536,33 @@ public class PrimitiveList {
                 _setFloatElement(index, value);
             }
 
+            public void copyTo(float[] dst, int offset) {
+                asReader().copyTo(dst, offset);
+            }
+
+            public void setAll(float[] src) {
+                if (src.length != this.elementCount) {
+                    throw new IllegalArgumentException(
+                        "cannot set " + src.length + " values in a list of " + this.elementCount);
+                }
+                java.nio.ByteBuffer elements = ListReader.packedElements(this.segment, this.ptr, this.elementCount, this.step, 4);
+                if (elements != null) {
+                    elements.asFloatBuffer().put(src);
+                } else {
+                    for (int ii = 0; ii < this.elementCount; ++ii) {
+                        _setFloatElement(ii, src[ii]);
+                    }
+                }
+            }
+
+            public java.nio.FloatBuffer asFloatBuffer() {
+                java.nio.ByteBuffer elements = ListReader.packedElements(this.segment, this.ptr, this.elementCount, this.step, 4);
+                if (elements == null) {
+                    throw new UnsupportedOperationException("list elements are not stored back to back");
+                }
+                return elements.asFloatBuffer();
+            }
+
             public final Reader asReader() {
                 return new Reader(this.segment, this.ptr, this.elementCount, this.step,
                                   this.structDataSize, this.structPointerCount,
@@ -414,6 +607,64 @@ public class PrimitiveList {
             public long get(int index) {
                 return _getLongElement(index);
             }
+
+            public void copyTo(long[] dst, int offset) {
+                java.nio.ByteBuffer elements = packedElements(this.segment, this.ptr, this.elementCount, this.step, 8);
+                if (elements != null) {
+                    elements.asLongBuffer().get(dst, offset, this.elementCount);
+                } else {
+                    for (int ii = 0; ii < this.elementCount; ++ii) {
+                        dst[offset + ii] = _getLongElement(ii);
+                    }
+                }
+            }
+
+            public java.nio.LongBuffer asLongBuffer() {
+                java.nio.ByteBuffer elements = packedElements(this.segment, this.ptr, this.elementCount, this.step, 8);
+                if (elements != null) {
+                    return elements.asLongBuffer().asReadOnlyBuffer();
+                }
+                long[] copy = new long[this.elementCount];
+                copyTo(copy, 0);
+                return java.nio.LongBuffer.wrap(copy).asReadOnlyBuffer();
+            }
+
+            public java.util.stream.LongStream stream() {
+                return java.util.stream.IntStream.range(0, this.elementCount).mapToLong(ii -> _getLongElement(ii));
+            }
+
+            public long sum() {
+                long result = 0;
+                int stride = this.step / Constants.BITS_PER_BYTE;
+                for (int ii = 0, position = this.ptr; ii < this.elementCount; ++ii, position += stride) {
+                    result += this.segment.buffer.getLong(position);
+                }
+                return result;
+            }
+
+            public long min() {
+                if (this.elementCount == 0) {
+                    throw new java.util.NoSuchElementException("empty list");
+                }
+                long result = _getLongElement(0);
+                int stride = this.step / Constants.BITS_PER_BYTE;
+                for (int ii = 1, position = this.ptr + stride; ii < this.elementCount; ++ii, position += stride) {
+                    result = java.lang.Math.min(result, this.segment.buffer.getLong(position));
+                }
+                return result;
+            }
+
+            public long max() {
+                if (this.elementCount == 0) {
+                    throw new java.util.NoSuchElementException("empty list");
+                }
+                long result = _getLongElement(0);
+                int stride = this.step / Constants.BITS_PER_BYTE;
+                for (int ii = 1, position = this.ptr + stride; ii < this.elementCount; ++ii, position += stride) {
+                    result = java.lang.Math.max(result, this.segment.buffer.getLong(position));
+                }
+                return result;
+            }
         }
 
         public static final class Builder extends ListBuilder {
@@ -431,6 +682,33 @@ public class PrimitiveList {
                 _setLongElement(index, value);
             }
 
+            public void copyTo(long[] dst, int offset) {
+                asReader().copyTo(dst, offset);
+            }
+
+            public void setAll(long[] src) {
+                if (src.length != this.elementCount) {
+                    throw new IllegalArgumentException(
+                        "cannot set " + src.length + " values in a list of " + this.elementCount);
+                }
+                java.nio.ByteBuffer elements = ListReader.packedElements(this.segment, this.ptr, this.elementCount, this.step, 8);
+                if (elements != null) {
+                    elements.asLongBuffer().put(src);
+                } else {
+                    for (int ii = 0; ii < this.elementCount; ++ii) {
+                        _setLongElement(ii, src[ii]);
+                    }
+                }
+            }
+
+            public java.nio.LongBuffer asLongBuffer() {
+                java.nio.ByteBuffer elements = ListReader.packedElements(this.segment, this.ptr, this.elementCount, this.step, 8);
+                if (elements == null) {
+                    throw new UnsupportedOperationException("list elements are not stored back to back");
+                }
+                return elements.asLongBuffer();
+            }
+
             public final Reader asReader() {
                 return new Reader(this.segment, this.ptr, this.elementCount, this.step,
                                   this.structDataSize, this.structPointerCount,
@@ -474,6 +752,64 @@ public class PrimitiveList {
             public double get(int index) {
                 return _getDoubleElement(index);
             }
+
+            public void copyTo(double[] dst, int offset) {
+                java.nio.ByteBuffer elements = packedElements(this.segment, this.ptr, this.elementCount, this.step, 8);
+                if (elements != null) {
+                    elements.asDoubleBuffer().get(dst, offset, this.elementCount);
+                } else {
+                    for (int ii = 0; ii < this.elementCount; ++ii) {
+                        dst[offset + ii] = _getDoubleElement(ii);
+                    }
+                }
+            }
+
+            public java.nio.DoubleBuffer asDoubleBuffer() {
+                java.nio.ByteBuffer elements = packedElements(this.segment, this.ptr, this.elementCount, this.step, 8);
+                if (elements != null) {
+                    return elements.asDoubleBuffer().asReadOnlyBuffer();
+                }
+                double[] copy = new double[this.elementCount];
+                copyTo(copy, 0);
+                return java.nio.DoubleBuffer.wrap(copy).asReadOnlyBuffer();
+            }
+
+            public java.util.stream.DoubleStream stream() {
+                return java.util.stream.IntStream.range(0, this.elementCount).mapToDouble(ii -> _getDoubleElement(ii));
+            }
+
+            public double sum() {
+                double result = 0;
+                int stride = this.step / Constants.BITS_PER_BYTE;
+                for (int ii = 0, position = this.ptr; ii < this.elementCount; ++ii, position += stride) {
+                    result += this.segment.buffer.getDouble(position);
+                }
+                return result;
+            }
+
+            public double min() {
+                if (this.elementCount == 0) {
+                    throw new java.util.NoSuchElementException("empty list");
+                }
+                double result = _getDoubleElement(0);
+                int stride = this.step / Constants.BITS_PER_BYTE;
+                for (int ii = 1, position = this.ptr + stride; ii < this.elementCount; ++ii, position += stride) {
+                    result = java.lang.Math.min(result, this.segment.buffer.getDouble(position));
+                }
+                return result;
+            }
+
+            public double max() {
+                if (this.elementCount == 0) {
+                    throw new java.util.NoSuchElementException("empty list");
+                }
+                double result = _getDoubleElement(0);
+                int stride = this.step / Constants.BITS_PER_BYTE;
+                for (int ii = 1, position = this.ptr + stride; ii < this.elementCount; ++ii, position += stride) {
+                    result = java.lang.Math.max(result, this.segment.buffer.getDouble(position));
+                }
+                return result;
+            }
         }
 
         public static final class Builder extends ListBuilder {
@@ -491,6 +827,33 @@ public class PrimitiveList {
                 _setDoubleElement(index, value);
             }
 
+            public void copyTo(double[] dst, int offset) {
+                asReader().copyTo(dst, offset);
+            }
+
+            public void setAll(double[] src) {
+                if (src.length != this.elementCount) {
+                    throw new IllegalArgumentException(
+                        "cannot set " + src.length + " values in a list of " + this.elementCount);
+                }
+                java.nio.ByteBuffer elements = ListReader.packedElements(this.segment, this.ptr, this.elementCount, this.step, 8);
+                if (elements != null) {
+                    elements.asDoubleBuffer().put(src);
+                } else {
+                    for (int ii = 0; ii < this.elementCount; ++ii) {
+                        _setDoubleElement(ii, src[ii]);
+                    }
+                }
+            }
+
+            public java.nio.DoubleBuffer asDoubleBuffer() {
+                java.nio.ByteBuffer elements = ListReader.packedElements(this.segment, this.ptr, this.elementCount, this.step, 8);
+                if (elements == null) {
+                    throw new UnsupportedOperationException("list elements are not stored back to back");
+                }
+                return elements.asDoubleBuffer();
+            }
+
             public final Reader asReader() {
                 return new Reader(this.segment, this.ptr, this.elementCount, this.step,
                                   this.structDataSize, this.structPointerCount,
@@ -31,12 +31,34 @@ public final class ReaderArena implements Arena {
 
     public final ArrayList<SegmentReader> segments;
 
+    // The limit that new sessions start with.
+    final long traversalLimitInWords;
+    private final boolean boundsChecked;
+
     public ReaderArena(ByteBuffer[] segmentSlices, long traversalLimitInWords) {
+        this(segmentSlices, traversalLimitInWords, true);
+    }
+
+    ReaderArena(ByteBuffer[] segmentSlices, long traversalLimitInWords, boolean boundsChecked) {
         this.limit = traversalLimitInWords;
+        this.traversalLimitInWords = traversalLimitInWords;
+        this.boundsChecked = boundsChecked;
         this.segments = new ArrayList<>(segmentSlices.length);
         for(int ii = 0; ii < segmentSlices.length; ++ii) {
-            this.segments.add(new SegmentReader(segmentSlices[ii], this));
+            this.segments.add(new SegmentReader(segmentSlices[ii], this, boundsChecked));
+        }
+    }
+
+    /**
+     * Returns an arena over the same segment buffers, with the full traversal limit and
+     * none of the words read through this one counted against it.
+     */
+    ReaderArena newSession() {
+        ByteBuffer[] segmentSlices = new ByteBuffer[this.segments.size()];
+        for (int ii = 0; ii < segmentSlices.length; ++ii) {
+            segmentSlices[ii] = this.segments.get(ii).buffer;
         }
+        return new ReaderArena(segmentSlices, this.traversalLimitInWords, this.boundsChecked);
     }
 
     @Override
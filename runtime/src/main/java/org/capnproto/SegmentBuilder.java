@@ -29,9 +29,21 @@ public final class SegmentBuilder extends SegmentReader {
 
     public int pos = 0; // in words
     public int id = 0;
+    private final boolean writable;
 
     public SegmentBuilder(ByteBuffer buf, Arena arena) {
         super(buf, arena);
+        this.writable = true;
+    }
+
+    // A segment of another message that the arena references without copying. It is full
+    // from the start, so nothing is ever allocated in it.
+    SegmentBuilder(ByteBuffer buf, Arena arena, boolean writable) {
+        super(buf, arena);
+        this.writable = writable;
+        if (!writable) {
+            this.pos = this.capacity();
+        }
     }
 
     // the total number of words the buffer can hold
@@ -65,8 +77,7 @@ public final class SegmentBuilder extends SegmentReader {
     }
 
     public final boolean isWritable() {
-        // TODO support external non-writable segments
-        return true;
+        return this.writable;
     }
 
     public final void put(int index, long value) {
@@ -74,9 +85,24 @@ public final class SegmentBuilder extends SegmentReader {
     }
 
     public final void clear() {
-        for (int ii = 0; ii <  this.pos; ++ii) {
-            this.put(ii, 0);
-        }
+        zero(this.buffer, 0, this.pos * Constants.BYTES_PER_WORD);
         this.pos = 0;
     }
+
+    private static final byte[] ZEROS = new byte[4096];
+
+    // Sets `length` bytes of `buffer`, starting at `byteOffset`, to zero.
+    static void zero(ByteBuffer buffer, int byteOffset, int length) {
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset() + byteOffset;
+            java.util.Arrays.fill(buffer.array(), offset, offset + length, (byte)0);
+        } else {
+            ByteBuffer dup = buffer.duplicate();
+            dup.limit(byteOffset + length);
+            dup.position(byteOffset);
+            while (dup.hasRemaining()) {
+                dup.put(ZEROS, 0, Math.min(dup.remaining(), ZEROS.length));
+            }
+        }
+    }
 }
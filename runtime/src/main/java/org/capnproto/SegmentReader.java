@@ -28,9 +28,18 @@ public class SegmentReader {
     public final ByteBuffer buffer;
     final Arena arena;
 
+    // False for the segments of a message that MessageValidator has already checked, whose
+    // pointers are then followed without bounds checks.
+    final boolean boundsChecked;
+
     public SegmentReader(ByteBuffer buffer, Arena arena) {
+        this(buffer, arena, true);
+    }
+
+    SegmentReader(ByteBuffer buffer, Arena arena, boolean boundsChecked) {
         this.buffer = buffer;
         this.arena = arena;
+        this.boundsChecked = boundsChecked;
     }
 
     public static final SegmentReader EMPTY = new SegmentReader(ByteBuffer.allocate(8), null);
@@ -22,12 +22,19 @@
 package org.capnproto;
 
 import java.io.IOException;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.util.ArrayList;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Serialization using the standard (unpacked) stream encoding:
@@ -44,7 +51,7 @@ public final class Serialize {
 
     static final int MAX_SEGMENT_WORDS = (1 << 28) - 1;
 
-    static ByteBuffer makeByteBufferForWords(int words) throws IOException {
+    static ByteBuffer makeByteBufferForWords(int words) {
         if (words > MAX_SEGMENT_WORDS) {
              // Trying to construct the segment would cause overflow.
              throw new DecodeException("segment has too many words (" + words + ")");
@@ -122,15 +129,60 @@ public final class Serialize {
         return doRead(bc, options, firstWord);
     }
 
-    private static MessageReader doRead(ReadableByteChannel bc,
-                                        ReaderOptions options,
-                                        ByteBuffer firstWord) throws IOException {
+    /**
+     * Like fillBuffer(), but fills a sequence of buffers. If the channel is a ScatteringByteChannel,
+     * the buffers are filled with vectored reads.
+     */
+    static void fillBuffers(ByteBuffer[] buffers, ReadableByteChannel bc) throws IOException {
+        if (!(bc instanceof ScatteringByteChannel)) {
+            for (ByteBuffer buffer : buffers) {
+                fillBuffer(buffer, bc);
+            }
+            return;
+        }
+
+        ScatteringByteChannel sbc = (ScatteringByteChannel)bc;
+        int first = 0;
+        while (first < buffers.length) {
+            if (!buffers[first].hasRemaining()) {
+                ++first;
+                continue;
+            }
+            long r = sbc.read(buffers, first, buffers.length - first);
+            if (r < 0) {
+                throw new IOException("premature EOF");
+            } else if (r == 0) {
+                throw new IOException("Read zero bytes. Is the channel in non-blocking mode?");
+            }
+        }
+    }
+
+    /**
+     * Returns the number of segments declared by the first word of a segment table.
+     */
+    static int parseSegmentCount(ByteBuffer firstWord) {
         int rawSegmentCount = firstWord.getInt(0);
         if (rawSegmentCount < 0 || rawSegmentCount > 511) {
             throw new DecodeException("segment count must be between 0 and 512");
         }
+        return 1 + rawSegmentCount;
+    }
 
-        int segmentCount = 1 + rawSegmentCount;
+    /**
+     * Returns the number of bytes in the segment table that follow the first word.
+     */
+    static int moreSizesBytes(int segmentCount) {
+        return 4 * (segmentCount & ~1);
+    }
+
+    /**
+     * Decodes the segment sizes (in words) from the first word of a segment table and the
+     * remaining `moreSizesBytes(segmentCount)` bytes of it, which may be null for a single
+     * segment. Throws if any size is invalid or the total exceeds the traversal limit.
+     */
+    static int[] parseSegmentSizes(ByteBuffer firstWord, ByteBuffer moreSizesRaw,
+                                   ReaderOptions options) {
+        int segmentCount = parseSegmentCount(firstWord);
 
         int segment0Size = firstWord.getInt(4);
 
@@ -141,37 +193,83 @@ public final class Serialize {
         long totalWords = segment0Size;
 
         // in words
-        ArrayList<Integer> moreSizes = new ArrayList<>(segmentCount -1);
-
-        if (segmentCount > 1) {
-            ByteBuffer moreSizesRaw = makeByteBuffer(4 * (segmentCount & ~1));
-            fillBuffer(moreSizesRaw, bc);
-            for (int ii = 0; ii < segmentCount - 1; ++ii) {
-                int size = moreSizesRaw.getInt(ii * 4);
-                if (size < 0) {
-                    throw new DecodeException("segment " + (ii + 1) +
-                                              " has more than 2^31 words, which is unsupported");
-                }
-
-                moreSizes.add(size);
-                totalWords += size;
+        int[] segmentSizes = new int[segmentCount];
+        segmentSizes[0] = segment0Size;
+
+        for (int ii = 0; ii < segmentCount - 1; ++ii) {
+            int size = moreSizesRaw.getInt(ii * 4);
+            if (size < 0) {
+                throw new DecodeException("segment " + (ii + 1) +
+                                          " has more than 2^31 words, which is unsupported");
             }
+
+            segmentSizes[ii + 1] = size;
+            totalWords += size;
         }
 
-        if (totalWords > options.traversalLimitInWords) {
+        if (options.traversalLimitInWords != -1 && totalWords > options.traversalLimitInWords) {
             throw new DecodeException("Message size exceeds traversal limit.");
         }
 
-        ByteBuffer[] segmentSlices = new ByteBuffer[segmentCount];
+        return segmentSizes;
+    }
+
+    static long totalWords(int[] segmentSizes) {
+        long totalWords = 0;
+        for (int size : segmentSizes) {
+            totalWords += size;
+        }
+        return totalWords;
+    }
+
+    /**
+     * Fills `segmentSlices` with consecutive slices of `all`, one per entry in `segmentSizes`.
+     * Modifies the position and limit of `all`.
+     */
+    static void sliceSegments(ByteBuffer all, int[] segmentSizes, ByteBuffer[] segmentSlices) {
+        int offset = 0;
+        for (int ii = 0; ii < segmentSizes.length; ++ii) {
+            int segmentBytes = segmentSizes[ii] * Constants.BYTES_PER_WORD;
+            all.limit(offset + segmentBytes);
+            all.position(offset);
+            segmentSlices[ii] = all.slice();
+            segmentSlices[ii].order(ByteOrder.LITTLE_ENDIAN);
+            offset += segmentBytes;
+        }
+    }
+
+    private static MessageReader doRead(ReadableByteChannel bc,
+                                        ReaderOptions options,
+                                        ByteBuffer firstWord) throws IOException {
+        int segmentCount = parseSegmentCount(firstWord);
+
+        ByteBuffer moreSizesRaw = null;
+        if (segmentCount > 1) {
+            moreSizesRaw = makeByteBuffer(moreSizesBytes(segmentCount));
+            fillBuffer(moreSizesRaw, bc);
+        }
 
-        segmentSlices[0] = makeByteBufferForWords(segment0Size);
-        fillBuffer(segmentSlices[0], bc);
-        segmentSlices[0].rewind();
+        int[] segmentSizes = parseSegmentSizes(firstWord, moreSizesRaw, options);
+        long totalWords = totalWords(segmentSizes);
+
+        ByteBuffer[] segmentSlices = new ByteBuffer[segmentCount];
 
-        for (int ii = 1; ii < segmentCount; ++ii) {
-            segmentSlices[ii] = makeByteBufferForWords(moreSizes.get(ii - 1));
-            fillBuffer(segmentSlices[ii], bc);
-            segmentSlices[ii].rewind();
+        if (totalWords <= MAX_SEGMENT_WORDS) {
+            // Allocate the whole message at once, fill it in one go, and hand out
+            // slices of it as segments.
+            ByteBuffer all = makeByteBufferForWords((int)totalWords);
+            fillBuffer(all, bc);
+            sliceSegments(all, segmentSizes, segmentSlices);
+        } else {
+            // Too big for a single buffer. Allocate each segment separately, but
+            // still fill them with as few reads as the channel allows.
+            for (int ii = 0; ii < segmentCount; ++ii) {
+                segmentSlices[ii] = makeByteBufferForWords(segmentSizes[ii]);
+            }
+            fillBuffers(segmentSlices, bc);
+            for (ByteBuffer segment : segmentSlices) {
+                segment.rewind();
+            }
         }
 
         return new MessageReader(segmentSlices, options);
@@ -202,6 +300,7 @@ public final class Serialize {
         int segmentBase = (segmentSizesBase + segmentSizesSize + align) & ~align;
 
         int totalWords = 0;
+        int bufferLimit = bb.limit();
 
         for (int ii = 0; ii < segmentCount; ++ii) {
             int segmentSize = bb.getInt(segmentSizesBase + ii * 4);
@@ -210,13 +309,23 @@ public final class Serialize {
                 throw new DecodeException("segment size is too large");
             }
 
-            bb.position(segmentBase + totalWords * Constants.BYTES_PER_WORD);
+            int segmentStart = segmentBase + totalWords * Constants.BYTES_PER_WORD;
+            int segmentEnd = segmentStart + segmentSize * Constants.BYTES_PER_WORD;
+            if (segmentEnd > bufferLimit) {
+                bb.limit(bufferLimit);
+                throw new DecodeException("message ends prematurely");
+            }
+
+            // Bound the slice's capacity by the segment, so that bounds checks
+            // cannot reach into whatever follows it in `bb`.
+            bb.limit(segmentEnd);
+            bb.position(segmentStart);
             segmentSlices[ii] = bb.slice();
-            segmentSlices[ii].limit(segmentSize * Constants.BYTES_PER_WORD);
             segmentSlices[ii].order(ByteOrder.LITTLE_ENDIAN);
 
             totalWords += segmentSize;
         }
+        bb.limit(bufferLimit);
         bb.position(segmentBase + totalWords * Constants.BYTES_PER_WORD);
 
         if (options.traversalLimitInWords != -1 && totalWords > options.traversalLimitInWords) {
@@ -226,6 +335,159 @@ public final class Serialize {
         return new MessageReader(segmentSlices, options);
     }
 
+    /**
+     * Returns the number of bytes occupied by the message that starts at byte `offset` of `bb`,
+     * as declared by its segment table, without looking at the segments themselves. Throws if
+     * the message would extend past `bb.limit()`. `bb` must be little-endian.
+     */
+    static int messageSizeInBytes(ByteBuffer bb, int offset) {
+        if (bb.limit() - offset < Constants.BYTES_PER_WORD) {
+            throw new DecodeException("message ends prematurely");
+        }
+        int rawSegmentCount = bb.getInt(offset);
+        if (rawSegmentCount < 0 || rawSegmentCount > 511) {
+            throw new DecodeException("segment count must be between 0 and 512");
+        }
+        int segmentCount = 1 + rawSegmentCount;
+
+        long size = Constants.BYTES_PER_WORD + moreSizesBytes(segmentCount);
+        if (bb.limit() - offset < size) {
+            throw new DecodeException("message ends prematurely");
+        }
+        for (int ii = 0; ii < segmentCount; ++ii) {
+            int segmentSize = bb.getInt(offset + 4 + ii * 4);
+            if (segmentSize < 0) {
+                throw new DecodeException("segment size is too large");
+            }
+            size += (long)segmentSize * Constants.BYTES_PER_WORD;
+        }
+        if (size > bb.limit() - offset) {
+            throw new DecodeException("message ends prematurely");
+        }
+        return (int)size;
+    }
+
+    /**
+     * Returns a stream over the back-to-back messages in `bb`, from its position to its limit.
+     * Messages are not copied: their segments are slices of `bb`. See MessageSpliterator.
+     */
+    public static Stream<MessageSpliterator.Frame> stream(ByteBuffer bb, ReaderOptions options) {
+        return StreamSupport.stream(new MessageSpliterator(bb, options), false);
+    }
+
+    private static void fillBuffer(ByteBuffer buffer, FileChannel fc, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int r = fc.read(buffer, position);
+            if (r < 0) {
+                throw new IOException("premature EOF");
+            }
+            position += r;
+        }
+    }
+
+    public static MessageReader readMapped(FileChannel fc) throws IOException {
+        return readMapped(fc, 0, ReaderOptions.DEFAULT_READER_OPTIONS);
+    }
+
+    /**
+     * Reads the message that starts at byte `offset` of the file without copying it onto the
+     * heap: the segments of the returned reader are read-only slices of a MappedByteBuffer.
+     * The mapping remains valid after `fc` is closed, for as long as the reader is reachable.
+     *
+     * Only the segment table is read through the channel. The channel's position is not changed.
+     */
+    public static MessageReader readMapped(FileChannel fc, long offset, ReaderOptions options) throws IOException {
+        ByteBuffer firstWord = makeByteBufferForWords(1);
+        fillBuffer(firstWord, fc, offset);
+        int segmentCount = parseSegmentCount(firstWord);
+
+        ByteBuffer moreSizesRaw = null;
+        if (segmentCount > 1) {
+            moreSizesRaw = makeByteBuffer(moreSizesBytes(segmentCount));
+            fillBuffer(moreSizesRaw, fc, offset + Constants.BYTES_PER_WORD);
+        }
+
+        int[] segmentSizes = parseSegmentSizes(firstWord, moreSizesRaw, options);
+        long totalWords = totalWords(segmentSizes);
+
+        long segmentBase = offset + Constants.BYTES_PER_WORD + moreSizesBytes(segmentCount);
+        if (segmentBase + totalWords * Constants.BYTES_PER_WORD > fc.size()) {
+            throw new IOException("premature EOF");
+        }
+
+        ByteBuffer[] segmentSlices = new ByteBuffer[segmentCount];
+
+        if (totalWords <= MAX_SEGMENT_WORDS) {
+            ByteBuffer all = fc.map(FileChannel.MapMode.READ_ONLY, segmentBase,
+                                    totalWords * Constants.BYTES_PER_WORD);
+            sliceSegments(all, segmentSizes, segmentSlices);
+        } else {
+            // A single mapping cannot exceed 2 GB, so map each segment on its own.
+            long position = segmentBase;
+            for (int ii = 0; ii < segmentCount; ++ii) {
+                if (segmentSizes[ii] > MAX_SEGMENT_WORDS) {
+                    throw new DecodeException("segment has too many words (" + segmentSizes[ii] + ")");
+                }
+                long segmentBytes = (long)segmentSizes[ii] * Constants.BYTES_PER_WORD;
+                segmentSlices[ii] = fc.map(FileChannel.MapMode.READ_ONLY, position, segmentBytes);
+                segmentSlices[ii].order(ByteOrder.LITTLE_ENDIAN);
+                position += segmentBytes;
+            }
+        }
+
+        return new MessageReader(segmentSlices, options);
+    }
+
+    public static CompletableFuture<MessageReader> readAsync(AsynchronousByteChannel channel) {
+        return readAsync(channel, ReaderOptions.DEFAULT_READER_OPTIONS);
+    }
+
+    /**
+     * Reads a message from an asynchronous channel without blocking. The segment table and
+     * the segments are read by a chain of completion handlers, and nothing past the end of the
+     * message is consumed, so the next message can be read by calling this method again once
+     * the returned future completes.
+     */
+    public static CompletableFuture<MessageReader> readAsync(AsynchronousByteChannel channel,
+                                                             ReaderOptions options) {
+        return AsyncHelpers.readMessage(AsyncHelpers.input(channel), options);
+    }
+
+    /**
+     * Reads the message that starts at byte `position` of the file without blocking.
+     */
+    public static CompletableFuture<MessageReader> readAsync(AsynchronousFileChannel channel,
+                                                             long position,
+                                                             ReaderOptions options) {
+        return AsyncHelpers.readMessage(AsyncHelpers.input(channel, position), options);
+    }
+
+    /**
+     * Serializes a MessageBuilder to an asynchronous channel without blocking. The segments of
+     * the message must not be modified until the returned future completes.
+     */
+    public static CompletableFuture<java.lang.Void> writeAsync(AsynchronousByteChannel channel,
+                                                     MessageBuilder message) {
+        return AsyncHelpers.write(AsyncHelpers.output(channel), new MessageStreamEncoder(message));
+    }
+
+    /**
+     * Serializes a MessageReader to an asynchronous channel without blocking.
+     */
+    public static CompletableFuture<java.lang.Void> writeAsync(AsynchronousByteChannel channel,
+                                                     MessageReader message) {
+        return AsyncHelpers.write(AsyncHelpers.output(channel), new MessageStreamEncoder(message));
+    }
+
+    /**
+     * Serializes a MessageBuilder to the file, starting at byte `position`, without blocking.
+     */
+    public static CompletableFuture<java.lang.Void> writeAsync(AsynchronousFileChannel channel,
+                                                     long position,
+                                                     MessageBuilder message) {
+        return AsyncHelpers.write(AsyncHelpers.output(channel, position), new MessageStreamEncoder(message));
+    }
+
     public static long computeSerializedSizeInWords(MessageBuilder message) {
         return computeSerializedSizeInWords(message.getSegmentsForOutput());
     }
@@ -253,8 +515,7 @@ public final class Serialize {
         return bytes / Constants.BYTES_PER_WORD;
     }
 
-    private static void writeSegmentTable(WritableByteChannel outputChannel,
-                              ByteBuffer[] segments) throws IOException {
+    static ByteBuffer makeSegmentTable(ByteBuffer[] segments) {
         int tableSize = (segments.length + 2) & (~1);
 
         ByteBuffer table = ByteBuffer.allocate(4 * tableSize);
@@ -267,18 +528,24 @@ public final class Serialize {
         }
 
         // Any padding is already zeroed.
+        return table;
+    }
+
+    private static void writeSegments(WritableByteChannel outputChannel,
+                                      ByteBuffer[] segments) throws IOException {
+        ByteBuffer table = makeSegmentTable(segments);
+
+        if (outputChannel instanceof GatheringByteChannel) {
+            ByteBuffer[] buffers = new ByteBuffer[segments.length + 1];
+            buffers[0] = table;
+            System.arraycopy(segments, 0, buffers, 1, segments.length);
+            writeGathering((GatheringByteChannel)outputChannel, buffers);
+            return;
+        }
+
         while (table.hasRemaining()) {
             outputChannel.write(table);
         }
-    }
-
-    /**
-     * Serializes a MessageBuilder to a WritableByteChannel.
-     */
-    public static void write(WritableByteChannel outputChannel,
-                             MessageBuilder message) throws IOException {
-        ByteBuffer[] segments = message.getSegmentsForOutput();
-        writeSegmentTable(outputChannel, segments);
 
         for (ByteBuffer buffer : segments) {
             while(buffer.hasRemaining()) {
@@ -288,7 +555,34 @@ public final class Serialize {
     }
 
     /**
-     * Serializes a MessageReader to a WritableByteChannel.
+     * Writes all of `buffers` to the channel, issuing as few vectored writes as the
+     * channel allows. A write may stop partway through any buffer, so we skip past
+     * the buffers that have been fully drained before retrying.
+     */
+    private static void writeGathering(GatheringByteChannel outputChannel,
+                                       ByteBuffer[] buffers) throws IOException {
+        int first = 0;
+        while (first < buffers.length) {
+            if (!buffers[first].hasRemaining()) {
+                ++first;
+                continue;
+            }
+            outputChannel.write(buffers, first, buffers.length - first);
+        }
+    }
+
+    /**
+     * Serializes a MessageBuilder to a WritableByteChannel. If the channel is a
+     * GatheringByteChannel, the segment table and all segments are handed to it
+     * in a single vectored write.
+     */
+    public static void write(WritableByteChannel outputChannel,
+                             MessageBuilder message) throws IOException {
+        writeSegments(outputChannel, message.getSegmentsForOutput());
+    }
+
+    /**
+     * Serializes a MessageReader to a WritableByteChannel. See the MessageBuilder overload.
      */
     public static void write(WritableByteChannel outputChannel,
                              MessageReader message) throws IOException {
@@ -297,12 +591,6 @@ public final class Serialize {
             segments[ii] = message.arena.segments.get(ii).buffer.duplicate();
         }
 
-        writeSegmentTable(outputChannel, segments);
-
-        for (ByteBuffer buffer : segments) {
-            while(buffer.hasRemaining()) {
-                outputChannel.write(buffer);
-            }
-        }
+        writeSegments(outputChannel, segments);
     }
 }
@@ -21,7 +21,10 @@
 
 package org.capnproto;
 
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Serialization using the packed encoding: https://capnproto.org/encoding.html#packing
@@ -60,6 +63,27 @@ public final class SerializePacked {
         return Serialize.read(packedInput, options);
     }
 
+    /**
+     * Reads a message from the provided ByteBuffer with default options.
+     */
+    public static MessageReader read(ByteBuffer input) {
+        return read(input, ReaderOptions.DEFAULT_READER_OPTIONS);
+    }
+
+    /**
+     * Reads a message from the provided ByteBuffer with the provided options. The message is
+     * unpacked straight into a single allocation sized from its segment table. Upon return,
+     * `input.position()` will be at the end of the message.
+     */
+    public static MessageReader read(ByteBuffer input, ReaderOptions options) {
+        MessageStreamDecoder decoder = MessageStreamDecoder.packed(options);
+        MessageReader message = decoder.decode(input);
+        if (message == null) {
+            throw new DecodeException("premature EOF");
+        }
+        return message;
+    }
+
     /**
      * Wraps the provided ReadableByteChannel in a BufferedInputStream and attempts to read a message from it with
      * default options. Returns an empty optional if the channel reached end-of-stream on first read.
@@ -95,6 +119,74 @@ public final class SerializePacked {
         return Serialize.read(packedInput, options);
     }
 
+    /**
+     * Reads a message from an asynchronous channel with default options, without blocking.
+     */
+    public static CompletableFuture<MessageReader> readAsync(AsynchronousByteChannel input) {
+        return readAsync(input, ReaderOptions.DEFAULT_READER_OPTIONS);
+    }
+
+    /**
+     * Reads a message from an asynchronous channel with the provided options, without blocking.
+     *
+     * Like readFromUnbuffered(), this reads ahead in chunks and may consume bytes past the end of
+     * the message, which are then lost. To read a sequence of packed messages from one channel,
+     * use the overload that takes a MessageStreamDecoder and a buffer instead.
+     */
+    public static CompletableFuture<MessageReader> readAsync(AsynchronousByteChannel input,
+                                                             ReaderOptions options) {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        buffer.limit(0);
+        return readAsync(input, MessageStreamDecoder.packed(options), buffer);
+    }
+
+    /**
+     * Reads the next message of a stream from an asynchronous channel, without blocking.
+     * `decoder` (see MessageStreamDecoder.packed()) and `buffer` carry the state of the stream
+     * from one call to the next: input is read into `buffer` in chunks of up to its capacity,
+     * and once the returned future completes, the bytes read past the end of the message are
+     * left in `buffer`, between its position and limit, for the next call. Start with a buffer
+     * that has nothing remaining, and do not start another read until the previous one
+     * has completed.
+     */
+    public static CompletableFuture<MessageReader> readAsync(AsynchronousByteChannel input,
+                                                             MessageStreamDecoder decoder,
+                                                             ByteBuffer buffer) {
+        return AsyncHelpers.decode(AsyncHelpers.input(input), decoder, buffer);
+    }
+
+    /**
+     * Serializes a MessageBuilder to an asynchronous channel without blocking. The segments of
+     * the message must not be modified until the returned future completes.
+     */
+    public static CompletableFuture<java.lang.Void> writeAsync(AsynchronousByteChannel output,
+                                                     MessageBuilder message) {
+        return AsyncHelpers.write(AsyncHelpers.output(output), MessageStreamEncoder.packed(message));
+    }
+
+    /**
+     * Serializes a MessageReader to an asynchronous channel without blocking.
+     */
+    public static CompletableFuture<java.lang.Void> writeAsync(AsynchronousByteChannel output,
+                                                     MessageReader message) {
+        return AsyncHelpers.write(AsyncHelpers.output(output), MessageStreamEncoder.packed(message));
+    }
+
+    /**
+     * Returns the exact number of bytes that write() produces for `message`, so that an output
+     * buffer can be sized before packing.
+     */
+    public static long computePackedSizeInBytes(MessageBuilder message) {
+        ByteBuffer[] segments = message.getSegmentsForOutput();
+        // Serialize.write() hands the segment table and each segment to the packer separately,
+        // and runs never span separate writes.
+        long size = PackedOutputStream.packedSizeInBytes(Serialize.makeSegmentTable(segments));
+        for (ByteBuffer segment : segments) {
+            size += PackedOutputStream.packedSizeInBytes(segment);
+        }
+        return size;
+    }
+
     /**
      * Serializes a MessageBuilder to a BufferedOutputStream.
      */
@@ -113,6 +205,26 @@ public final class SerializePacked {
         Serialize.write(packedOutputStream, message);
     }
 
+    /**
+     * Serializes a MessageBuilder into the provided ByteBuffer, starting at its position, and
+     * advances the position past the packed message. Throws an IOException if the buffer is too
+     * small; computePackedSizeInBytes() gives the exact size needed.
+     */
+    public static void write(ByteBuffer output, MessageBuilder message) throws java.io.IOException {
+        ArrayOutputStream arrayOutput = new ArrayOutputStream(output);
+        write(arrayOutput, message);
+        output.position(arrayOutput.buf.position());
+    }
+
+    /**
+     * Serializes a MessageReader into the provided ByteBuffer. See the MessageBuilder overload.
+     */
+    public static void write(ByteBuffer output, MessageReader message) throws java.io.IOException {
+        ArrayOutputStream arrayOutput = new ArrayOutputStream(output);
+        write(arrayOutput, message);
+        output.position(arrayOutput.buf.position());
+    }
+
     /**
      * Serializes a MessageBuilder to an unbuffered output stream.
      */
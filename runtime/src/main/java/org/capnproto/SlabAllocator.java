@@ -0,0 +1,153 @@
+// Copyright (c) 2013-2014 Sandstorm Development Group, Inc. and contributors
+// Licensed under the MIT License:
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.capnproto;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * An Allocator that carves segments out of large direct ByteBuffers ("slabs"), for
+ * building messages in native memory that can be written to a channel without the
+ * JDK first copying them into a temporary direct buffer.
+ *
+ * Segments are never freed one at a time. Instead, reset() makes the whole of every
+ * slab available again, and close() drops the slabs. Either way, every segment that
+ * was handed out, and every MessageBuilder using them, must no longer be used.
+ *
+ * Each message's first segment is `firstSegmentBytes` long, and its later segments grow
+ * as with BuilderArena.AllocationStrategy.GROW_HEURISTICALLY, up to the slab size, so
+ * many small messages share a slab. Segments larger than a slab get a direct buffer of
+ * their own, released along with the slabs.
+ *
+ * A SlabAllocator is not thread-safe.
+ */
+public final class SlabAllocator implements Allocator, AutoCloseable {
+
+    public static final int DEFAULT_SLAB_BYTES = 1 << 20;
+
+    public final int slabBytes;
+    public final int firstSegmentBytes;
+
+    private final ArrayList<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+
+    // how many bytes of each slab have been handed out
+    private int[] slabUsed = new int[4];
+
+    // index of the slab currently being carved up
+    private int currentSlab = 0;
+
+    private final ArrayList<ByteBuffer> largeSegments = new ArrayList<ByteBuffer>();
+
+    private boolean closed = false;
+
+    public SlabAllocator() {
+        this(DEFAULT_SLAB_BYTES, BuilderArena.SUGGESTED_FIRST_SEGMENT_WORDS * Constants.BYTES_PER_WORD);
+    }
+
+    public SlabAllocator(int slabBytes, int firstSegmentBytes) {
+        if (slabBytes <= 0 || slabBytes % Constants.BYTES_PER_WORD != 0) {
+            throw new IllegalArgumentException("slabBytes must be a positive multiple of 8");
+        }
+        if (firstSegmentBytes <= 0 || firstSegmentBytes > slabBytes) {
+            throw new IllegalArgumentException("firstSegmentBytes must be in (0, slabBytes]");
+        }
+        this.slabBytes = slabBytes;
+        this.firstSegmentBytes = roundUpToWord(firstSegmentBytes);
+    }
+
+    private static int roundUpToWord(int bytes) {
+        return (bytes + Constants.BYTES_PER_WORD - 1) & ~(Constants.BYTES_PER_WORD - 1);
+    }
+
+    /**
+     * Allocates the first segment of a message.
+     */
+    @Override
+    public ByteBuffer allocateSegment(int minimumSize) {
+        return allocateSegment(minimumSize, 0);
+    }
+
+    @Override
+    public ByteBuffer allocateSegment(int minimumSize, int messageBytes) {
+        if (this.closed) {
+            throw new IllegalStateException("SlabAllocator has been closed");
+        }
+        int nextSize = messageBytes == 0 ? this.firstSegmentBytes : Math.min(messageBytes, this.slabBytes);
+        int size = roundUpToWord(Math.max(minimumSize, nextSize));
+
+        if (size > this.slabBytes) {
+            ByteBuffer result = ByteBuffer.allocateDirect(size);
+            this.largeSegments.add(result);
+            return result;
+        }
+
+        if (this.currentSlab < this.slabs.size() &&
+            this.slabBytes - this.slabUsed[this.currentSlab] < size) {
+            ++this.currentSlab;
+        }
+        if (this.currentSlab == this.slabs.size()) {
+            this.slabs.add(ByteBuffer.allocateDirect(this.slabBytes));
+            if (this.currentSlab == this.slabUsed.length) {
+                this.slabUsed = java.util.Arrays.copyOf(this.slabUsed, this.slabUsed.length * 2);
+            }
+            this.slabUsed[this.currentSlab] = 0;
+        }
+
+        ByteBuffer slab = this.slabs.get(this.currentSlab).duplicate();
+        int start = this.slabUsed[this.currentSlab];
+        slab.limit(start + size);
+        slab.position(start);
+        this.slabUsed[this.currentSlab] = start + size;
+        return slab.slice();
+    }
+
+    /**
+     * Zeroes what has been handed out of every slab and makes it available again,
+     * keeping the slabs themselves. Segments larger than a slab are dropped.
+     */
+    public void reset() {
+        for (int ii = 0; ii < this.slabs.size(); ++ii) {
+            SegmentBuilder.zero(this.slabs.get(ii), 0, this.slabUsed[ii]);
+            this.slabUsed[ii] = 0;
+        }
+        this.currentSlab = 0;
+        this.largeSegments.clear();
+    }
+
+    /**
+     * Drops every slab. The memory is reclaimed once the garbage collector notices
+     * that the buffers are unreachable.
+     */
+    @Override
+    public void close() {
+        this.slabs.clear();
+        this.largeSegments.clear();
+        this.closed = true;
+    }
+
+    /**
+     * Returns the number of slabs currently held, not counting segments larger than a slab.
+     */
+    public int slabCount() {
+        return this.slabs.size();
+    }
+}
@@ -198,6 +198,14 @@ public class StructBuilder {
         factory.setPointerBuilder(this.segment, this.pointers + index, value);
     }
 
+    protected final <T> Orphan<T> _disownPointerField(FromPointerBuilder<T> factory, int index) {
+        return Orphan.disown(factory, this.segment, this.pointers + index);
+    }
+
+    protected final void _adoptPointerField(int index, Orphan<?> orphan) {
+        orphan.adoptInto(this.segment, this.pointers + index);
+    }
+
     protected final void _copyContentFrom(StructReader other) {
         // Determine the amount of data the builders have in common.
         int sharedDataSize = java.lang.Math.min(this.dataSize, other.dataSize);
@@ -121,6 +121,91 @@ public final class StructList {
         public java.util.Iterator<T> iterator() {
             return new Iterator(this);
         }
+
+        /**
+         * A single element reader that moves along the list. Unlike get() and iterator(),
+         * which construct a new reader for each element, a cursor constructs its reader once
+         * and then only changes which element it reads, so it can visit any number of elements
+         * without allocating.
+         *
+         * The reader returned by moveTo() is the same object each time: a reader kept from an
+         * earlier call reads whatever element the cursor is at now.
+         */
+        public final class Cursor {
+            private final T element;
+            private int index;
+
+            Cursor() {
+                // A cursor over an empty list has no element to be at.
+                if (elementCount > 0) {
+                    this.element = _getStructElement(factory, 0);
+                    this.index = 0;
+                } else {
+                    this.element = null;
+                    this.index = -1;
+                }
+            }
+
+            /**
+             * Moves the cursor to the element at `index`, and returns the cursor's reader.
+             */
+            public T moveTo(int index) {
+                if (index < 0 || index >= elementCount) {
+                    throw new IndexOutOfBoundsException("index " + index + " in a list of " + elementCount);
+                }
+                moveStructElement((StructReader)this.element, index);
+                this.index = index;
+                return this.element;
+            }
+
+            /**
+             * Returns the cursor's reader, which reads the element at index().
+             *
+             * @throws IllegalStateException if the list is empty.
+             */
+            public T get() {
+                if (this.index < 0) {
+                    throw new IllegalStateException("a cursor over an empty list has no element");
+                }
+                return this.element;
+            }
+
+            /**
+             * Returns the index of the cursor's element, or -1 if the list is empty.
+             */
+            public int index() {
+                return this.index;
+            }
+        }
+
+        /**
+         * Returns a cursor at the first element, if there is one.
+         */
+        public Cursor cursor() {
+            return new Cursor();
+        }
+
+        /**
+         * Like forEach(), but passes the same reader, moved along the list with a Cursor,
+         * for every element. `action` must not keep the reader beyond the call.
+         */
+        public void forEachWithCursor(java.util.function.Consumer<? super T> action) {
+            forEachWithCursor(0, this.elementCount, action);
+        }
+
+        /**
+         * Like forEachWithCursor(Consumer), for the elements from `start` up to but not
+         * including `end`.
+         */
+        public void forEachWithCursor(int start, int end, java.util.function.Consumer<? super T> action) {
+            if (start >= end) {
+                return;
+            }
+            Cursor cursor = new Cursor();
+            for (int ii = start; ii < end; ++ii) {
+                action.accept(cursor.moveTo(ii));
+            }
+        }
     }
 
     public static final class Builder<T extends StructBuilder> extends ListBuilder implements Iterable<T> {
@@ -29,8 +29,9 @@ public class StructReader {
     }
 
     protected final SegmentReader segment;
-    protected final int data; //byte offset to data section
-    protected final int pointers; // word offset of pointer section
+    // Not final, so that a StructList.Reader.Cursor can move this reader along its list.
+    protected int data; //byte offset to data section
+    protected int pointers; // word offset of pointer section
     protected final int dataSize; // in bits
     protected final short pointerCount;
     protected final int nestingLimit;
@@ -55,6 +56,11 @@ public class StructReader {
         this.nestingLimit = nestingLimit;
     }
 
+    final void moveTo(int data, int pointers) {
+        this.data = data;
+        this.pointers = pointers;
+    }
+
     protected final boolean _getBooleanField(int offset) {
         // XXX should use unsigned operations
         if (offset < this.dataSize) {
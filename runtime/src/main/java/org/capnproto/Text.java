@@ -70,11 +70,26 @@ public final class Text {
     }
     public static final Factory factory = new Factory();
 
-    public static final class Reader {
+    /**
+     * A UTF-8 string in a message. Comparing it with contentEquals(), startsWith(),
+     * compareTo(), equals() and hashCode() works on the encoded bytes and does not decode
+     * the text or allocate.
+     *
+     * As a CharSequence, it reads ASCII text in place; other text is decoded once, on first
+     * use of length(), charAt() or subSequence(). Note that size() is in bytes, while length()
+     * is in chars.
+     */
+    public static final class Reader implements CharSequence, Comparable<Reader> {
         public final ByteBuffer buffer;
         public final int offset; // in bytes
         public final int size; // in bytes, not including NUL terminator
 
+        // 1 if every byte is ASCII, so that bytes and chars are the same, -1 if not, 0 if not
+        // yet known.
+        private byte ascii;
+        // The decoded text, for the CharSequence methods on non-ASCII text.
+        private String decoded;
+
         public Reader() {
             // TODO what about the null terminator?
             this.buffer = ByteBuffer.allocate(0);
@@ -118,6 +133,176 @@ public final class Text {
             return new String(bytes, StandardCharsets.UTF_8);
         }
 
+        private boolean isAscii() {
+            if (this.ascii == 0) {
+                byte result = 1;
+                for (int ii = 0; ii < this.size; ++ii) {
+                    if (this.buffer.get(this.offset + ii) < 0) {
+                        result = -1;
+                        break;
+                    }
+                }
+                this.ascii = result;
+            }
+            return this.ascii > 0;
+        }
+
+        private String decoded() {
+            if (this.decoded == null) {
+                this.decoded = toString();
+            }
+            return this.decoded;
+        }
+
+        @Override
+        public final int length() {
+            return isAscii() ? this.size : decoded().length();
+        }
+
+        @Override
+        public final char charAt(int index) {
+            if (!isAscii()) {
+                return decoded().charAt(index);
+            }
+            if (index < 0 || index >= this.size) {
+                throw new IndexOutOfBoundsException("index " + index + " in a text of length " + this.size);
+            }
+            return (char)this.buffer.get(this.offset + index);
+        }
+
+        @Override
+        public final CharSequence subSequence(int start, int end) {
+            if (!isAscii()) {
+                return decoded().subSequence(start, end);
+            }
+            if (start < 0 || end > this.size || start > end) {
+                throw new IndexOutOfBoundsException("range " + start + " to " + end + " in a text of length " + this.size);
+            }
+            ByteBuffer dup = this.buffer.duplicate();
+            dup.position(this.offset + start);
+            return new Reader(dup.slice(), 0, end - start);
+        }
+
+        /**
+         * Whether this text is `value`, that is, whether its bytes are the UTF-8 encoding of
+         * `value`, as given by value.getBytes(StandardCharsets.UTF_8).
+         */
+        public final boolean contentEquals(String value) {
+            return matchUtf8(value) == this.size;
+        }
+
+        /**
+         * Whether this text starts with the UTF-8 encoding of `prefix`.
+         */
+        public final boolean startsWith(String prefix) {
+            return matchUtf8(prefix) >= 0;
+        }
+
+        public final boolean startsWith(Reader prefix) {
+            return prefix.size <= this.size && compareBytes(prefix, prefix.size) == 0;
+        }
+
+        // Encodes `value` to UTF-8 as String.getBytes() does, comparing as it goes. Returns the
+        // number of bytes the encoding takes if this text starts with it, and -1 otherwise.
+        private int matchUtf8(String value) {
+            int position = 0;
+            int length = value.length();
+            for (int ii = 0; ii < length; ++ii) {
+                int c = value.charAt(ii);
+                if (c < 0x80) {
+                    if (position >= this.size || this.buffer.get(this.offset + position) != c) {
+                        return -1;
+                    }
+                    ++position;
+                    continue;
+                }
+
+                int bytes;
+                if (c < 0x800) {
+                    bytes = 2;
+                } else if (!Character.isSurrogate((char)c)) {
+                    bytes = 3;
+                } else if (Character.isHighSurrogate((char)c) && ii + 1 < length &&
+                           Character.isLowSurrogate(value.charAt(ii + 1))) {
+                    c = Character.toCodePoint((char)c, value.charAt(++ii));
+                    bytes = 4;
+                } else {
+                    // Unpaired surrogates are encoded as '?'.
+                    c = '?';
+                    bytes = 1;
+                }
+                if (position + bytes > this.size) {
+                    return -1;
+                }
+                for (int jj = bytes - 1; jj >= 0; --jj) {
+                    int expected;
+                    if (bytes == 1) {
+                        expected = c;
+                    } else if (jj == 0) {
+                        // The lead byte: `bytes` one bits, a zero, then the top bits of c.
+                        expected = (0xff00 >> bytes) & 0xff | (c >> (6 * (bytes - 1)));
+                    } else {
+                        expected = 0x80 | ((c >> (6 * (bytes - 1 - jj))) & 0x3f);
+                    }
+                    if ((this.buffer.get(this.offset + position + jj) & 0xff) != expected) {
+                        return -1;
+                    }
+                }
+                position += bytes;
+            }
+            return position;
+        }
+
+        // Compares the first `count` bytes of this text and `other` as unsigned bytes.
+        private int compareBytes(Reader other, int count) {
+            for (int ii = 0; ii < count; ++ii) {
+                int a = this.buffer.get(this.offset + ii) & 0xff;
+                int b = other.buffer.get(other.offset + ii) & 0xff;
+                if (a != b) {
+                    return a - b;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Compares the UTF-8 bytes of the two texts, as unsigned bytes. This orders texts
+         * by code point, which is the order of String.compareTo() except that characters
+         * above U+FFFF sort after all others.
+         */
+        @Override
+        public final int compareTo(Reader other) {
+            int result = compareBytes(other, java.lang.Math.min(this.size, other.size));
+            return result != 0 ? result : java.lang.Integer.compare(this.size, other.size);
+        }
+
+        /**
+         * Whether `other` is a Text.Reader with the same bytes. A Text.Reader is never equal
+         * to a String; use contentEquals() for that.
+         */
+        @Override
+        public final boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Reader)) {
+                return false;
+            }
+            Reader that = (Reader)other;
+            return this.size == that.size && compareBytes(that, this.size) == 0;
+        }
+
+        /**
+         * Hashes the UTF-8 bytes as java.util.Arrays.hashCode(byte[]) would.
+         */
+        @Override
+        public final int hashCode() {
+            int result = 1;
+            for (int ii = 0; ii < this.size; ++ii) {
+                result = 31 * result + this.buffer.get(this.offset + ii);
+            }
+            return result;
+        }
     }
 
     public static final class Builder {
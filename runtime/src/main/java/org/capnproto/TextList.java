@@ -93,6 +93,14 @@ public final class TextList {
             _setPointerElement(Text.factory, index, value);
         }
 
+        public final Orphan<Text.Builder> disown(int index) {
+            return _disownPointerElement(Text.factory, index);
+        }
+
+        public final void adopt(int index, Orphan<Text.Builder> value) {
+            _adoptPointerElement(index, value);
+        }
+
         public final Reader asReader() {
             return new Reader(this.segment, this.ptr, this.elementCount, this.step,
                               this.structDataSize, this.structPointerCount,
@@ -43,22 +43,19 @@ final class WireHelpers {
     static boolean bounds_check(SegmentReader segment,
                                 int start,
                                 int size) {
-        return segment == null || segment.isInBounds(start, size);
+        return segment == null || !segment.boundsChecked || segment.isInBounds(start, size);
     }
 
-    static class AllocateResult {
-        public final int ptr;
-        public final int refOffset;
-        public final SegmentBuilder segment;
-        AllocateResult(int ptr, int refOffset, SegmentBuilder segment) {
-            this.ptr = ptr; this.refOffset = refOffset; this.segment = segment;
-        }
-    }
-
-    static AllocateResult allocate(int refOffset,
-                                   SegmentBuilder segment,
-                                   int amount, // in words
-                                   byte kind) {
+    /**
+     * Allocates `amount` words for a new object and points the reference at `refOffset`
+     * at it, returning the word offset of the object. If the object had to go in another
+     * segment, the reference becomes a far pointer; allocatedSegment() and
+     * allocatedRefOffset() then find the segment holding the object and its landing pad.
+     */
+    static int allocate(int refOffset,
+                        SegmentBuilder segment,
+                        int amount, // in words
+                        byte kind) {
 
         long ref = segment.get(refOffset);
         if (!WirePointer.isNull(ref)) {
@@ -67,7 +64,7 @@ final class WireHelpers {
 
         if (amount == 0 && kind == WirePointer.STRUCT) {
             WirePointer.setKindAndTargetForEmptyStruct(segment.buffer, refOffset);
-            return new AllocateResult(refOffset, refOffset, segment);
+            return refOffset;
         }
 
         int ptr = segment.allocate(amount);
@@ -77,108 +74,112 @@ final class WireHelpers {
             //# the landing pad for a far pointer.
 
             int amountPlusRef = amount + Constants.POINTER_SIZE_IN_WORDS;
-            BuilderArena.AllocateResult allocation = segment.getArena().allocate(amountPlusRef);
+            BuilderArena arena = segment.getArena();
+            int padOffset = arena.allocateInLastSegment(amountPlusRef);
+            SegmentBuilder padSegment = arena.lastSegment();
 
             //# Set up the original pointer to be a far pointer to
             //# the new segment.
-            FarPointer.set(segment.buffer, refOffset, false, allocation.offset);
-            FarPointer.setSegmentId(segment.buffer, refOffset, allocation.segment.id);
+            FarPointer.set(segment.buffer, refOffset, false, padOffset);
+            FarPointer.setSegmentId(segment.buffer, refOffset, padSegment.id);
 
             //# Initialize the landing pad to indicate that the
             //# data immediately follows the pad.
-            int resultRefOffset = allocation.offset;
-            int ptr1 = allocation.offset + Constants.POINTER_SIZE_IN_WORDS;
+            int ptr1 = padOffset + Constants.POINTER_SIZE_IN_WORDS;
 
-            WirePointer.setKindAndTarget(allocation.segment.buffer, resultRefOffset, kind,
-                                         ptr1);
+            WirePointer.setKindAndTarget(padSegment.buffer, padOffset, kind, ptr1);
 
-            return new AllocateResult(ptr1, resultRefOffset, allocation.segment);
+            return ptr1;
         } else {
             WirePointer.setKindAndTarget(segment.buffer, refOffset, kind, ptr);
-            return new AllocateResult(ptr, refOffset, segment);
+            return ptr;
         }
     }
 
-    static class FollowBuilderFarsResult {
-        public final int ptr;
-        public final long ref;
-        public final SegmentBuilder segment;
-        FollowBuilderFarsResult(int ptr, long ref, SegmentBuilder segment) {
-            this.ptr = ptr; this.ref = ref; this.segment = segment;
-        }
+    // The segment holding the object that allocate() just set up for the reference at `refOffset`.
+    static SegmentBuilder allocatedSegment(int refOffset, SegmentBuilder segment) {
+        return followBuilderFarsSegment(segment.get(refOffset), segment);
     }
 
-    static FollowBuilderFarsResult followBuilderFars(long ref, int refTarget,
-                                                     SegmentBuilder segment) {
-        //# If `ref` is a far pointer, follow it. On return, `ref` will
-        //# have been updated to point at a WirePointer that contains
-        //# the type information about the target object, and a pointer
-        //# to the object contents is returned. The caller must NOT use
-        //# `ref->target()` as this may or may not actually return a
-        //# valid pointer. `segment` is also updated to point at the
-        //# segment which actually contains the object.
-        //#
-        //# If `ref` is not a far pointer, this simply returns
-        //# `refTarget`. Usually, `refTarget` should be the same as
-        //# `ref->target()`, but may not be in cases where `ref` is
-        //# only a tag.
-
-        if (WirePointer.kind(ref) == WirePointer.FAR) {
-            SegmentBuilder resultSegment = segment.getArena().getSegment(FarPointer.getSegmentId(ref));
+    // Where the tag of the object that allocate() just set up for the reference at `refOffset`
+    // belongs: the reference itself, or the landing pad in allocatedSegment().
+    static int allocatedRefOffset(int refOffset, SegmentBuilder segment) {
+        long ref = segment.get(refOffset);
+        return WirePointer.kind(ref) == WirePointer.FAR ? FarPointer.positionInSegment(ref) : refOffset;
+    }
 
-            int padOffset = FarPointer.positionInSegment(ref);
-            long pad = resultSegment.get(padOffset);
-            if (! FarPointer.isDoubleFar(ref)) {
-                return new FollowBuilderFarsResult(WirePointer.target(padOffset, pad), pad, resultSegment);
+    //# If `ref` is a far pointer, follow it. On return, `ref` will
+    //# have been updated to point at a WirePointer that contains
+    //# the type information about the target object, and a pointer
+    //# to the object contents is returned. The caller must NOT use
+    //# `ref->target()` as this may or may not actually return a
+    //# valid pointer. `segment` is also updated to point at the
+    //# segment which actually contains the object.
+    //#
+    //# If `ref` is not a far pointer, this simply returns
+    //# `refTarget`. Usually, `refTarget` should be the same as
+    //# `ref->target()`, but may not be in cases where `ref` is
+    //# only a tag.
+    //
+    // Java has no out-parameters, so that is split into three functions, which return the
+    // segment, the tag and the target respectively. Each of them is trivial for a near pointer,
+    // and for a far pointer it costs little more than reading the landing pad again, so
+    // following a pointer allocates nothing.
+
+    static SegmentReader followFarsSegment(long ref, SegmentReader segment) {
+        //# If the segment is null, this is an unchecked message,
+        //# so there are no FAR pointers.
+        if (segment != null && WirePointer.kind(ref) == WirePointer.FAR) {
+            SegmentReader padSegment = segment.arena.tryGetSegment(FarPointer.getSegmentId(ref));
+            if (!FarPointer.isDoubleFar(ref)) {
+                return padSegment;
             }
-
-            //# Landing pad is another far pointer. It is followed by a
-            //# tag describing the pointed-to object.
-            int refOffset = padOffset + 1;
-            ref = resultSegment.get(refOffset);
-
-            resultSegment = resultSegment.getArena().getSegment(FarPointer.getSegmentId(pad));
-            return new FollowBuilderFarsResult(FarPointer.positionInSegment(pad), ref, resultSegment);
+            //# Landing pad is another far pointer. It is
+            //# followed by a tag describing the pointed-to
+            //# object.
+            long pad = padSegment.get(FarPointer.positionInSegment(ref));
+            return padSegment.arena.tryGetSegment(FarPointer.getSegmentId(pad));
         } else {
-            return new FollowBuilderFarsResult(refTarget, ref, segment);
+            return segment;
         }
     }
 
-    static class FollowFarsResult {
-        public final int ptr;
-        public final long ref;
-        public final SegmentReader segment;
-        FollowFarsResult(int ptr, long ref, SegmentReader segment) {
-            this.ptr = ptr; this.ref = ref; this.segment = segment;
+    static SegmentBuilder followBuilderFarsSegment(long ref, SegmentBuilder segment) {
+        if (WirePointer.kind(ref) == WirePointer.FAR) {
+            SegmentBuilder padSegment = segment.getArena().getSegment(FarPointer.getSegmentId(ref));
+            if (!FarPointer.isDoubleFar(ref)) {
+                return padSegment;
+            }
+            long pad = padSegment.get(FarPointer.positionInSegment(ref));
+            return padSegment.getArena().getSegment(FarPointer.getSegmentId(pad));
+        } else {
+            return segment;
         }
     }
 
-    static FollowFarsResult followFars(long ref, int refTarget, SegmentReader segment) {
-        //# If the segment is null, this is an unchecked message,
-        //# so there are no FAR pointers.
+    static long followFarsRef(long ref, SegmentReader segment) {
         if (segment != null && WirePointer.kind(ref) == WirePointer.FAR) {
-            SegmentReader resultSegment = segment.arena.tryGetSegment(FarPointer.getSegmentId(ref));
+            SegmentReader padSegment = segment.arena.tryGetSegment(FarPointer.getSegmentId(ref));
             int padOffset = FarPointer.positionInSegment(ref);
-            long pad = resultSegment.get(padOffset);
-
-            int padWords = FarPointer.isDoubleFar(ref) ? 2 : 1;
             // TODO read limiting
+            return padSegment.get(FarPointer.isDoubleFar(ref) ? padOffset + 1 : padOffset);
+        } else {
+            return ref;
+        }
+    }
 
+    static int followFarsPtr(long ref, int refTarget, SegmentReader segment) {
+        if (segment != null && WirePointer.kind(ref) == WirePointer.FAR) {
+            SegmentReader padSegment = segment.arena.tryGetSegment(FarPointer.getSegmentId(ref));
+            int padOffset = FarPointer.positionInSegment(ref);
+            long pad = padSegment.get(padOffset);
             if (!FarPointer.isDoubleFar(ref)) {
-
-                return new FollowFarsResult(WirePointer.target(padOffset, pad),
-                                            pad, resultSegment);
+                return WirePointer.target(padOffset, pad);
             } else {
-                //# Landing pad is another far pointer. It is
-                //# followed by a tag describing the pointed-to
-                //# object.
-
-                long tag = resultSegment.get(padOffset + 1);
-                resultSegment = resultSegment.arena.tryGetSegment(FarPointer.getSegmentId(pad));
-                return new FollowFarsResult(FarPointer.positionInSegment(pad), tag, resultSegment);
+                return FarPointer.positionInSegment(pad);
             }
         } else {
-            return new FollowFarsResult(refTarget, ref, segment);
+            return refTarget;
         }
     }
 
@@ -272,7 +273,7 @@ final class WireHelpers {
 
                 int pos = ptr + Constants.POINTER_SIZE_IN_WORDS;
                 int count = WirePointer.inlineCompositeListElementCount(elementTag);
-                for (int ii = 0; ii < count; ++ii) {
+                for (int ii = 0; ii < count && pointerCount > 0; ++ii) {
                     pos += dataSize;
                     for (int jj = 0; jj < pointerCount; ++jj) {
                         zeroObject(segment, pos);
@@ -361,24 +362,7 @@ final class WireHelpers {
             int landingPadOffset = srcSegment.allocate(1);
             if (landingPadOffset == SegmentBuilder.FAILED_ALLOCATION) {
                 //# Darn, need a double-far.
-
-                BuilderArena.AllocateResult allocation = srcSegment.getArena().allocate(2);
-                SegmentBuilder farSegment = allocation.segment;
-                landingPadOffset = allocation.offset;
-
-                FarPointer.set(farSegment.buffer, landingPadOffset, false, srcTargetOffset);
-                FarPointer.setSegmentId(farSegment.buffer, landingPadOffset, srcSegment.id);
-
-                WirePointer.setKindWithZeroOffset(farSegment.buffer, landingPadOffset + 1,
-                                                  WirePointer.kind(src));
-
-                farSegment.buffer.putInt((landingPadOffset + 1) * Constants.BYTES_PER_WORD + 4,
-                                         srcSegment.buffer.getInt(srcOffset * Constants.BYTES_PER_WORD + 4));
-
-                FarPointer.set(dstSegment.buffer, dstOffset,
-                               true, landingPadOffset);
-                FarPointer.setSegmentId(dstSegment.buffer, dstOffset,
-                                        farSegment.id);
+                setDoubleFarPointer(dstSegment, dstOffset, src, srcSegment, srcTargetOffset);
             } else {
                 //# Simple landing pad is just a pointer.
                 WirePointer.setKindAndTarget(srcSegment.buffer, landingPadOffset,
@@ -395,14 +379,166 @@ final class WireHelpers {
 
     }
 
+    // Points the pointer at `dstOffset` to the object at `targetOffset` in `targetSegment`
+    // through a double-far pointer, whose landing pad is allocated in the last segment.
+    // `tag` gives the kind and size of the object.
+    static void setDoubleFarPointer(SegmentBuilder dstSegment, int dstOffset, long tag,
+                                    SegmentBuilder targetSegment, int targetOffset) {
+        BuilderArena arena = dstSegment.getArena();
+        int landingPadOffset = arena.allocateInLastSegment(2);
+        SegmentBuilder farSegment = arena.lastSegment();
+
+        FarPointer.set(farSegment.buffer, landingPadOffset, false, targetOffset);
+        FarPointer.setSegmentId(farSegment.buffer, landingPadOffset, targetSegment.id);
+
+        WirePointer.setKindWithZeroOffset(farSegment.buffer, landingPadOffset + 1,
+                                          WirePointer.kind(tag));
+
+        farSegment.buffer.putInt((landingPadOffset + 1) * Constants.BYTES_PER_WORD + 4,
+                                 (int)(tag >>> 32));
+
+        FarPointer.set(dstSegment.buffer, dstOffset,
+                       true, landingPadOffset);
+        FarPointer.setSegmentId(dstSegment.buffer, dstOffset,
+                                farSegment.id);
+    }
+
+    // Points the pointer at `dstOffset` to the object that the pointer at `srcOffset`, in a
+    // segment of a MessageReader, points to. If the object is self-contained (see
+    // selfContainedBudget()), the segment holding it is attached to the destination arena as
+    // a read-only external segment and referenced through a double-far pointer, without
+    // copying anything. Otherwise the object is copied.
+    static void referenceExternalPointer(SegmentBuilder dstSegment, int dstOffset,
+                                         SegmentReader srcSegment, int srcOffset, int nestingLimit) {
+        long srcRef = srcSegment.get(srcOffset);
+        if (WirePointer.isNull(srcRef)) {
+            dstSegment.put(dstOffset, 0L);
+            return;
+        }
+
+        int srcTarget = WirePointer.target(srcOffset, srcRef);
+        SegmentReader resolvedSegment = followFarsSegment(srcRef, srcSegment);
+        long resolvedRef = followFarsRef(srcRef, srcSegment);
+        int resolvedPtr = followFarsPtr(srcRef, srcTarget, srcSegment);
+
+        BuilderArena arena = dstSegment.getArena();
+        if (resolvedSegment.arena instanceof ReaderArena &&
+            selfContainedBudget(resolvedSegment, resolvedRef, resolvedPtr, nestingLimit,
+                                resolvedSegment.buffer.capacity() / Constants.BYTES_PER_WORD) >= 0) {
+            SegmentBuilder external = arena.attachExternalSegment(resolvedSegment);
+            setDoubleFarPointer(dstSegment, dstOffset, resolvedRef, external, resolvedPtr);
+        } else {
+            copyPointer(dstSegment, dstOffset, srcSegment, srcOffset, nestingLimit);
+        }
+    }
+
+    // Checks that the object with tag `ref` at `target`, and everything reachable from it,
+    // lies within `segment` and is reached through near pointers only, so that it can be
+    // referenced from another message without rewriting any pointers. Returns what is left
+    // of `budget`, which bounds the number of words visited, or -1 if the object is not
+    // self-contained, is nested deeper than `nestingLimit`, or exceeds the budget.
+    static long selfContainedBudget(SegmentReader segment, long ref, int target,
+                                    int nestingLimit, long budget) {
+        if (WirePointer.isNull(ref)) {
+            return budget;
+        }
+        if (nestingLimit <= 0) {
+            return -1;
+        }
+
+        switch (WirePointer.kind(ref)) {
+        case WirePointer.STRUCT : {
+            int dataSize = StructPointer.dataSize(ref);
+            int ptrCount = StructPointer.ptrCount(ref);
+            budget -= Math.max(dataSize + ptrCount, 1);
+            if (budget < 0 || !segment.isInBounds(target, dataSize + ptrCount)) {
+                return -1;
+            }
+            return pointersSelfContainedBudget(segment, target + dataSize, ptrCount,
+                                               nestingLimit - 1, budget);
+        }
+        case WirePointer.LIST : {
+            byte elementSize = ListPointer.elementSize(ref);
+            if (elementSize == ElementSize.INLINE_COMPOSITE) {
+                int wordCount = ListPointer.inlineCompositeWordCount(ref);
+                if (!segment.isInBounds(target, wordCount + 1)) {
+                    return -1;
+                }
+                long tag = segment.get(target);
+                if (WirePointer.kind(tag) != WirePointer.STRUCT) {
+                    return -1;
+                }
+                int elementCount = WirePointer.inlineCompositeListElementCount(tag);
+                int dataSize = StructPointer.dataSize(tag);
+                int ptrCount = StructPointer.ptrCount(tag);
+                int wordsPerElement = dataSize + ptrCount;
+                if ((long)wordsPerElement * elementCount > wordCount) {
+                    return -1;
+                }
+                budget -= Math.max(wordCount + 1, elementCount);
+                int element = target + 1;
+                for (int ii = 0; ii < elementCount && budget >= 0; ++ii) {
+                    budget = pointersSelfContainedBudget(segment, element + dataSize, ptrCount,
+                                                         nestingLimit - 1, budget);
+                    element += wordsPerElement;
+                }
+                return budget;
+            } else {
+                int elementCount = ListPointer.elementCount(ref);
+                int step = ElementSize.dataBitsPerElement(elementSize) +
+                    ElementSize.pointersPerElement(elementSize) * Constants.BITS_PER_POINTER;
+                int wordCount = roundBitsUpToWords((long)elementCount * step);
+                budget -= Math.max(wordCount, elementCount / Constants.BITS_PER_WORD);
+                if (budget < 0 || !segment.isInBounds(target, wordCount)) {
+                    return -1;
+                }
+                if (elementSize == ElementSize.POINTER) {
+                    return pointersSelfContainedBudget(segment, target, elementCount,
+                                                       nestingLimit - 1, budget);
+                }
+                return budget;
+            }
+        }
+        default :
+            // Far pointers lead out of the segment, and capabilities belong to the other
+            // message's capability table.
+            return -1;
+        }
+    }
+
+    private static long pointersSelfContainedBudget(SegmentReader segment, int offset, int count,
+                                                    int nestingLimit, long budget) {
+        for (int ii = 0; ii < count && budget >= 0; ++ii) {
+            long ref = segment.get(offset + ii);
+            budget = selfContainedBudget(segment, ref, WirePointer.target(offset + ii, ref),
+                                         nestingLimit, budget);
+        }
+        return budget;
+    }
+
+    // Builders never point into external segments: before one is constructed for an
+    // object there, the object is replaced with a private, writable copy. Returns whether
+    // the pointer at `refOffset` had to be rewritten.
+    static boolean copyOnWrite(SegmentBuilder segment, int refOffset) {
+        long ref = segment.get(refOffset);
+        if (WirePointer.kind(ref) != WirePointer.FAR ||
+            followBuilderFarsSegment(ref, segment).isWritable()) {
+            return false;
+        }
+        copyPointer(segment, refOffset, segment, refOffset, java.lang.Integer.MAX_VALUE);
+        return true;
+    }
+
     static <T> T initStructPointer(StructBuilder.Factory<T> factory,
                                    int refOffset,
                                    SegmentBuilder segment,
                                    StructSize size) {
-        AllocateResult allocation = allocate(refOffset, segment, size.total(), WirePointer.STRUCT);
-        StructPointer.setFromStructSize(allocation.segment.buffer, allocation.refOffset, size);
-        return factory.constructBuilder(allocation.segment, allocation.ptr * Constants.BYTES_PER_WORD,
-                                         allocation.ptr + size.data,
+        int allocationPtr = allocate(refOffset, segment, size.total(), WirePointer.STRUCT);
+        SegmentBuilder allocationSegment = allocatedSegment(refOffset, segment);
+        int allocationRefOffset = allocatedRefOffset(refOffset, segment);
+        StructPointer.setFromStructSize(allocationSegment.buffer, allocationRefOffset, size);
+        return factory.constructBuilder(allocationSegment, allocationPtr * Constants.BYTES_PER_WORD,
+                                         allocationPtr + size.data,
                                          size.data * 64, size.pointers);
     }
 
@@ -421,11 +557,17 @@ final class WireHelpers {
                 throw new RuntimeException("unimplemented");
             }
         }
-        FollowBuilderFarsResult resolved = followBuilderFars(ref, target, segment);
+        if (copyOnWrite(segment, refOffset)) {
+            ref = segment.get(refOffset);
+            target = WirePointer.target(refOffset, ref);
+        }
+        SegmentBuilder resolvedSegment = followBuilderFarsSegment(ref, segment);
+        long resolvedRef = followFarsRef(ref, segment);
+        int resolvedPtr = followFarsPtr(ref, target, segment);
 
-        int oldDataSize = StructPointer.dataSize(resolved.ref);
-        int oldPointerCount = StructPointer.ptrCount(resolved.ref);
-        int oldPointerSection = resolved.ptr + oldDataSize;
+        int oldDataSize = StructPointer.dataSize(resolvedRef);
+        int oldPointerCount = StructPointer.ptrCount(resolvedRef);
+        int oldPointerSection = resolvedPtr + oldDataSize;
 
         if (oldDataSize < size.data || oldPointerCount < size.pointers) {
             //# The space allocated for this struct is too small. Unlike with readers, we can't just
@@ -439,22 +581,24 @@ final class WireHelpers {
             //# Don't let allocate() zero out the object just yet.
             zeroPointerAndFars(segment, refOffset);
 
-            AllocateResult allocation = allocate(refOffset, segment,
-                                                 totalSize, WirePointer.STRUCT);
+            int allocationPtr = allocate(refOffset, segment,
+                                         totalSize, WirePointer.STRUCT);
+            SegmentBuilder allocationSegment = allocatedSegment(refOffset, segment);
+            int allocationRefOffset = allocatedRefOffset(refOffset, segment);
 
-            StructPointer.set(allocation.segment.buffer, allocation.refOffset,
+            StructPointer.set(allocationSegment.buffer, allocationRefOffset,
                               newDataSize, newPointerCount);
 
             //# Copy data section.
-            memcpy(allocation.segment.buffer, allocation.ptr * Constants.BYTES_PER_WORD,
-                   resolved.segment.buffer, resolved.ptr * Constants.BYTES_PER_WORD,
+            memcpy(allocationSegment.buffer, allocationPtr * Constants.BYTES_PER_WORD,
+                   resolvedSegment.buffer, resolvedPtr * Constants.BYTES_PER_WORD,
                    oldDataSize * Constants.BYTES_PER_WORD);
 
             //# Copy pointer section.
-            int newPointerSection = allocation.ptr + newDataSize;
+            int newPointerSection = allocationPtr + newDataSize;
             for (int ii = 0; ii < oldPointerCount; ++ii) {
-                transferPointer(allocation.segment, newPointerSection + ii,
-                                resolved.segment, oldPointerSection + ii);
+                transferPointer(allocationSegment, newPointerSection + ii,
+                                resolvedSegment, oldPointerSection + ii);
             }
 
             //# Zero out old location.  This has two purposes:
@@ -462,14 +606,14 @@ final class WireHelpers {
             //#    out as it may contain secrets that the caller intends to remove from the new copy.
             //# 2) Zeros will be deflated by packing, making this dead memory almost-free if it ever
             //#    hits the wire.
-            memset(resolved.segment.buffer, resolved.ptr * Constants.BYTES_PER_WORD, (byte)0,
+            memset(resolvedSegment.buffer, resolvedPtr * Constants.BYTES_PER_WORD, (byte)0,
                    (oldDataSize + oldPointerCount * Constants.WORDS_PER_POINTER) * Constants.BYTES_PER_WORD);
 
-            return factory.constructBuilder(allocation.segment, allocation.ptr * Constants.BYTES_PER_WORD,
+            return factory.constructBuilder(allocationSegment, allocationPtr * Constants.BYTES_PER_WORD,
                                             newPointerSection, newDataSize * Constants.BITS_PER_WORD,
                                             newPointerCount);
         } else {
-            return factory.constructBuilder(resolved.segment, resolved.ptr * Constants.BYTES_PER_WORD,
+            return factory.constructBuilder(resolvedSegment, resolvedPtr * Constants.BYTES_PER_WORD,
                                             oldPointerSection, oldDataSize * Constants.BITS_PER_WORD,
                                             (short)oldPointerCount);
         }
@@ -487,12 +631,14 @@ final class WireHelpers {
         int pointerCount = ElementSize.pointersPerElement(elementSize);
         int step = dataSize + pointerCount * Constants.BITS_PER_POINTER;
         int wordCount = roundBitsUpToWords((long)elementCount * (long)step);
-        AllocateResult allocation = allocate(refOffset, segment, wordCount, WirePointer.LIST);
+        int allocationPtr = allocate(refOffset, segment, wordCount, WirePointer.LIST);
+        SegmentBuilder allocationSegment = allocatedSegment(refOffset, segment);
+        int allocationRefOffset = allocatedRefOffset(refOffset, segment);
 
-        ListPointer.set(allocation.segment.buffer, allocation.refOffset, elementSize, elementCount);
+        ListPointer.set(allocationSegment.buffer, allocationRefOffset, elementSize, elementCount);
 
-        return factory.constructBuilder(allocation.segment,
-                                        allocation.ptr * Constants.BYTES_PER_WORD,
+        return factory.constructBuilder(allocationSegment,
+                                        allocationPtr * Constants.BYTES_PER_WORD,
                                         elementCount, step, dataSize, (short)pointerCount);
     }
 
@@ -505,17 +651,19 @@ final class WireHelpers {
 
         //# Allocate the list, prefixed by a single WirePointer.
         int wordCount = elementCount * wordsPerElement;
-        AllocateResult allocation = allocate(refOffset, segment, Constants.POINTER_SIZE_IN_WORDS + wordCount,
-                                             WirePointer.LIST);
+        int allocationPtr = allocate(refOffset, segment, Constants.POINTER_SIZE_IN_WORDS + wordCount,
+                                     WirePointer.LIST);
+        SegmentBuilder allocationSegment = allocatedSegment(refOffset, segment);
+        int allocationRefOffset = allocatedRefOffset(refOffset, segment);
 
         //# Initialize the pointer.
-        ListPointer.setInlineComposite(allocation.segment.buffer, allocation.refOffset, wordCount);
-        WirePointer.setKindAndInlineCompositeListElementCount(allocation.segment.buffer, allocation.ptr,
+        ListPointer.setInlineComposite(allocationSegment.buffer, allocationRefOffset, wordCount);
+        WirePointer.setKindAndInlineCompositeListElementCount(allocationSegment.buffer, allocationPtr,
                                                               WirePointer.STRUCT, elementCount);
-        StructPointer.setFromStructSize(allocation.segment.buffer, allocation.ptr, elementSize);
+        StructPointer.setFromStructSize(allocationSegment.buffer, allocationPtr, elementSize);
 
-        return factory.constructBuilder(allocation.segment,
-                                        (allocation.ptr + 1) * Constants.BYTES_PER_WORD,
+        return factory.constructBuilder(allocationSegment,
+                                        (allocationPtr + 1) * Constants.BYTES_PER_WORD,
                                         elementCount, wordsPerElement * Constants.BITS_PER_WORD,
                                         elementSize.data * Constants.BITS_PER_WORD, elementSize.pointers);
     }
@@ -534,6 +682,10 @@ final class WireHelpers {
         if (WirePointer.isNull(origRef)) {
             throw new RuntimeException("unimplemented");
         }
+        if (copyOnWrite(origSegment, origRefOffset)) {
+            origRef = origSegment.get(origRefOffset);
+            origRefTarget = WirePointer.target(origRefOffset, origRef);
+        }
 
         //# We must verify that the pointer has the right size. Unlike
         //# in getWritableStructListPointer(), we never need to
@@ -541,13 +693,15 @@ final class WireHelpers {
         //# non-struct lists, and there is no allowed upgrade path *to*
         //# a non-struct list, only *from* them.
 
-        FollowBuilderFarsResult resolved = followBuilderFars(origRef, origRefTarget, origSegment);
+        SegmentBuilder resolvedSegment = followBuilderFarsSegment(origRef, origSegment);
+        long resolvedRef = followFarsRef(origRef, origSegment);
+        int resolvedPtr = followFarsPtr(origRef, origRefTarget, origSegment);
 
-        if (WirePointer.kind(resolved.ref) != WirePointer.LIST) {
+        if (WirePointer.kind(resolvedRef) != WirePointer.LIST) {
             throw new DecodeException("Called getList{Field,Element}() but existing pointer is not a list");
         }
 
-        byte oldSize = ListPointer.elementSize(resolved.ref);
+        byte oldSize = ListPointer.elementSize(resolvedRef);
 
         if (oldSize == ElementSize.INLINE_COMPOSITE) {
             //# The existing element size is InlineComposite, which
@@ -572,8 +726,8 @@ final class WireHelpers {
 
             int step = dataSize + pointerCount * Constants.BITS_PER_POINTER;
 
-            return factory.constructBuilder(resolved.segment, resolved.ptr * Constants.BYTES_PER_WORD,
-                                            ListPointer.elementCount(resolved.ref),
+            return factory.constructBuilder(resolvedSegment, resolvedPtr * Constants.BYTES_PER_WORD,
+                                            ListPointer.elementCount(resolvedRef),
                                             step, dataSize, (short) pointerCount);
         }
     }
@@ -590,20 +744,26 @@ final class WireHelpers {
         if (WirePointer.isNull(origRef)) {
             throw new RuntimeException("unimplemented");
         }
+        if (copyOnWrite(origSegment, origRefOffset)) {
+            origRef = origSegment.get(origRefOffset);
+            origRefTarget = WirePointer.target(origRefOffset, origRef);
+        }
 
         //# We must verify that the pointer has the right size and potentially upgrade it if not.
 
-        FollowBuilderFarsResult resolved = followBuilderFars(origRef, origRefTarget, origSegment);
-        if (WirePointer.kind(resolved.ref) != WirePointer.LIST) {
+        SegmentBuilder resolvedSegment = followBuilderFarsSegment(origRef, origSegment);
+        long resolvedRef = followFarsRef(origRef, origSegment);
+        int resolvedPtr = followFarsPtr(origRef, origRefTarget, origSegment);
+        if (WirePointer.kind(resolvedRef) != WirePointer.LIST) {
             throw new DecodeException("Called getList{Field,Element}() but existing pointer is not a list");
         }
 
-        byte oldSize = ListPointer.elementSize(resolved.ref);
+        byte oldSize = ListPointer.elementSize(resolvedRef);
 
         if (oldSize == ElementSize.INLINE_COMPOSITE) {
             //# Existing list is INLINE_COMPOSITE, but we need to verify that the sizes match.
-            long oldTag = resolved.segment.get(resolved.ptr);
-            int oldPtr = resolved.ptr + Constants.POINTER_SIZE_IN_WORDS;
+            long oldTag = resolvedSegment.get(resolvedPtr);
+            int oldPtr = resolvedPtr + Constants.POINTER_SIZE_IN_WORDS;
             if (WirePointer.kind(oldTag) != WirePointer.STRUCT) {
                 throw new DecodeException("INLINE_COMPOSITE list with non-STRUCT elements not supported.");
             }
@@ -614,7 +774,7 @@ final class WireHelpers {
 
             if (oldDataSize >= elementSize.data && oldPointerCount >= elementSize.pointers) {
                 //# Old size is at least as large as we need. Ship it.
-                return factory.constructBuilder(resolved.segment, oldPtr * Constants.BYTES_PER_WORD,
+                return factory.constructBuilder(resolvedSegment, oldPtr * Constants.BYTES_PER_WORD,
                                                 elementCount,
                                                 oldStep * Constants.BITS_PER_WORD,
                                                 oldDataSize * Constants.BITS_PER_WORD,
@@ -632,34 +792,36 @@ final class WireHelpers {
             //# Don't let allocate() zero out the object just yet.
             zeroPointerAndFars(origSegment, origRefOffset);
 
-            AllocateResult allocation = allocate(origRefOffset, origSegment,
-                                                 totalSize + Constants.POINTER_SIZE_IN_WORDS,
-                                                 WirePointer.LIST);
+            int allocationPtr = allocate(origRefOffset, origSegment,
+                                         totalSize + Constants.POINTER_SIZE_IN_WORDS,
+                                         WirePointer.LIST);
+            SegmentBuilder allocationSegment = allocatedSegment(origRefOffset, origSegment);
+            int allocationRefOffset = allocatedRefOffset(origRefOffset, origSegment);
 
-            ListPointer.setInlineComposite(allocation.segment.buffer, allocation.refOffset, totalSize);
+            ListPointer.setInlineComposite(allocationSegment.buffer, allocationRefOffset, totalSize);
 
-            long tag = allocation.segment.get(allocation.ptr);
+            long tag = allocationSegment.get(allocationPtr);
             WirePointer.setKindAndInlineCompositeListElementCount(
-                allocation.segment.buffer, allocation.ptr,
+                allocationSegment.buffer, allocationPtr,
                 WirePointer.STRUCT, elementCount);
-            StructPointer.set(allocation.segment.buffer, allocation.ptr,
+            StructPointer.set(allocationSegment.buffer, allocationPtr,
                               newDataSize, newPointerCount);
-            int newPtr = allocation.ptr + Constants.POINTER_SIZE_IN_WORDS;
+            int newPtr = allocationPtr + Constants.POINTER_SIZE_IN_WORDS;
 
             int src = oldPtr;
             int dst = newPtr;
             for (int ii = 0; ii < elementCount; ++ii) {
                 //# Copy data section.
-                memcpy(allocation.segment.buffer, dst * Constants.BYTES_PER_WORD,
-                       resolved.segment.buffer, src * Constants.BYTES_PER_WORD,
+                memcpy(allocationSegment.buffer, dst * Constants.BYTES_PER_WORD,
+                       resolvedSegment.buffer, src * Constants.BYTES_PER_WORD,
                        oldDataSize * Constants.BYTES_PER_WORD);
 
                 //# Copy pointer section.
                 int newPointerSection = dst + newDataSize;
                 int oldPointerSection = src + oldDataSize;
                 for (int jj = 0; jj < oldPointerCount; ++jj) {
-                    transferPointer(allocation.segment, newPointerSection + jj,
-                                    resolved.segment, oldPointerSection + jj);
+                    transferPointer(allocationSegment, newPointerSection + jj,
+                                    resolvedSegment, oldPointerSection + jj);
                 }
 
                 dst += newStep;
@@ -668,10 +830,10 @@ final class WireHelpers {
 
             //# Zero out old location. See explanation in getWritableStructPointer().
             //# Make sure to include the tag word.
-            memset(resolved.segment.buffer, resolved.ptr * Constants.BYTES_PER_WORD,
+            memset(resolvedSegment.buffer, resolvedPtr * Constants.BYTES_PER_WORD,
                    (byte)0, (1 + oldStep * elementCount) * Constants.BYTES_PER_WORD);
 
-            return factory.constructBuilder(allocation.segment, newPtr * Constants.BYTES_PER_WORD,
+            return factory.constructBuilder(allocationSegment, newPtr * Constants.BYTES_PER_WORD,
                                             elementCount,
                                             newStep * Constants.BITS_PER_WORD,
                                             newDataSize * Constants.BITS_PER_WORD,
@@ -712,45 +874,47 @@ final class WireHelpers {
                 //# Don't let allocate() zero out the object just yet.
                 zeroPointerAndFars(origSegment, origRefOffset);
 
-                AllocateResult allocation = allocate(origRefOffset, origSegment,
-                                                     totalWords + Constants.POINTER_SIZE_IN_WORDS,
-                                                     WirePointer.LIST);
+                int allocationPtr = allocate(origRefOffset, origSegment,
+                                             totalWords + Constants.POINTER_SIZE_IN_WORDS,
+                                             WirePointer.LIST);
+                SegmentBuilder allocationSegment = allocatedSegment(origRefOffset, origSegment);
+                int allocationRefOffset = allocatedRefOffset(origRefOffset, origSegment);
 
-                ListPointer.setInlineComposite(allocation.segment.buffer, allocation.refOffset, totalWords);
+                ListPointer.setInlineComposite(allocationSegment.buffer, allocationRefOffset, totalWords);
 
-                long tag = allocation.segment.get(allocation.ptr);
+                long tag = allocationSegment.get(allocationPtr);
                 WirePointer.setKindAndInlineCompositeListElementCount(
-                    allocation.segment.buffer, allocation.ptr,
+                    allocationSegment.buffer, allocationPtr,
                     WirePointer.STRUCT, elementCount);
-                StructPointer.set(allocation.segment.buffer, allocation.ptr,
+                StructPointer.set(allocationSegment.buffer, allocationPtr,
                                   newDataSize, newPointerCount);
-                int newPtr = allocation.ptr + Constants.POINTER_SIZE_IN_WORDS;
+                int newPtr = allocationPtr + Constants.POINTER_SIZE_IN_WORDS;
 
                 if (oldSize == ElementSize.POINTER) {
                     int dst = newPtr + newDataSize;
-                    int src = resolved.ptr;
+                    int src = resolvedPtr;
                     for (int ii = 0; ii < elementCount; ++ii) {
-                        transferPointer(origSegment, dst, resolved.segment, src);
+                        transferPointer(origSegment, dst, resolvedSegment, src);
                         dst += newStep / Constants.WORDS_PER_POINTER;
                         src += 1;
                     }
                 } else {
                     int dst = newPtr;
-                    int srcByteOffset = resolved.ptr * Constants.BYTES_PER_WORD;
+                    int srcByteOffset = resolvedPtr * Constants.BYTES_PER_WORD;
                     int oldByteStep = oldDataSize / Constants.BITS_PER_BYTE;
                     for (int ii = 0; ii < elementCount; ++ii) {
-                        memcpy(allocation.segment.buffer, dst * Constants.BYTES_PER_WORD,
-                               resolved.segment.buffer, srcByteOffset, oldByteStep);
+                        memcpy(allocationSegment.buffer, dst * Constants.BYTES_PER_WORD,
+                               resolvedSegment.buffer, srcByteOffset, oldByteStep);
                         srcByteOffset += oldByteStep;
                         dst += newStep;
                     }
                 }
 
                 //# Zero out old location. See explanation in getWritableStructPointer().
-                memset(resolved.segment.buffer, resolved.ptr * Constants.BYTES_PER_WORD,
+                memset(resolvedSegment.buffer, resolvedPtr * Constants.BYTES_PER_WORD,
                        (byte)0, roundBitsUpToBytes(oldStep * elementCount));
 
-                return factory.constructBuilder(allocation.segment, newPtr * Constants.BYTES_PER_WORD,
+                return factory.constructBuilder(allocationSegment, newPtr * Constants.BYTES_PER_WORD,
                                                 elementCount,
                                                 newStep * Constants.BITS_PER_WORD,
                                                 newDataSize * Constants.BITS_PER_WORD,
@@ -767,13 +931,15 @@ final class WireHelpers {
         int byteSize = size + 1;
 
         //# Allocate the space.
-        AllocateResult allocation = allocate(refOffset, segment, roundBytesUpToWords(byteSize),
-                                             WirePointer.LIST);
+        int allocationPtr = allocate(refOffset, segment, roundBytesUpToWords(byteSize),
+                                     WirePointer.LIST);
+        SegmentBuilder allocationSegment = allocatedSegment(refOffset, segment);
+        int allocationRefOffset = allocatedRefOffset(refOffset, segment);
 
         //# Initialize the pointer.
-        ListPointer.set(allocation.segment.buffer, allocation.refOffset, ElementSize.BYTE, byteSize);
+        ListPointer.set(allocationSegment.buffer, allocationRefOffset, ElementSize.BYTE, byteSize);
 
-        return new Text.Builder(allocation.segment.buffer, allocation.ptr * Constants.BYTES_PER_WORD, size);
+        return new Text.Builder(allocationSegment.buffer, allocationPtr * Constants.BYTES_PER_WORD, size);
     }
 
     static Text.Builder setTextPointer(int refOffset,
@@ -811,24 +977,29 @@ final class WireHelpers {
             }
         }
 
+        if (copyOnWrite(segment, refOffset)) {
+            ref = segment.get(refOffset);
+        }
         int refTarget = WirePointer.target(refOffset, ref);
-        FollowBuilderFarsResult resolved = followBuilderFars(ref, refTarget, segment);
+        SegmentBuilder resolvedSegment = followBuilderFarsSegment(ref, segment);
+        long resolvedRef = followFarsRef(ref, segment);
+        int resolvedPtr = followFarsPtr(ref, refTarget, segment);
 
-        if (WirePointer.kind(resolved.ref) != WirePointer.LIST) {
+        if (WirePointer.kind(resolvedRef) != WirePointer.LIST) {
             throw new DecodeException("Called getText{Field,Element} but existing pointer is not a list.");
         }
-        if (ListPointer.elementSize(resolved.ref) != ElementSize.BYTE) {
+        if (ListPointer.elementSize(resolvedRef) != ElementSize.BYTE) {
             throw new DecodeException(
                 "Called getText{Field,Element} but existing list pointer is not byte-sized.");
         }
 
 
-        int size = ListPointer.elementCount(resolved.ref);
+        int size = ListPointer.elementCount(resolvedRef);
         if (size == 0 ||
-            resolved.segment.buffer.get(resolved.ptr * Constants.BYTES_PER_WORD + size - 1) != 0) {
+            resolvedSegment.buffer.get(resolvedPtr * Constants.BYTES_PER_WORD + size - 1) != 0) {
             throw new DecodeException("Text blob missing NUL terminator.");
         }
-        return new Text.Builder(resolved.segment.buffer, resolved.ptr * Constants.BYTES_PER_WORD,
+        return new Text.Builder(resolvedSegment.buffer, resolvedPtr * Constants.BYTES_PER_WORD,
                                 size - 1);
 
     }
@@ -838,13 +1009,15 @@ final class WireHelpers {
                                         SegmentBuilder segment,
                                         int size) {
         //# Allocate the space.
-        AllocateResult allocation = allocate(refOffset, segment, roundBytesUpToWords(size),
-                                             WirePointer.LIST);
+        int allocationPtr = allocate(refOffset, segment, roundBytesUpToWords(size),
+                                     WirePointer.LIST);
+        SegmentBuilder allocationSegment = allocatedSegment(refOffset, segment);
+        int allocationRefOffset = allocatedRefOffset(refOffset, segment);
 
         //# Initialize the pointer.
-        ListPointer.set(allocation.segment.buffer, allocation.refOffset, ElementSize.BYTE, size);
+        ListPointer.set(allocationSegment.buffer, allocationRefOffset, ElementSize.BYTE, size);
 
-        return new Data.Builder(allocation.segment.buffer, allocation.ptr * Constants.BYTES_PER_WORD, size);
+        return new Data.Builder(allocationSegment.buffer, allocationPtr * Constants.BYTES_PER_WORD, size);
     }
 
     static Data.Builder setDataPointer(int refOffset,
@@ -883,19 +1056,24 @@ final class WireHelpers {
             }
         }
 
+        if (copyOnWrite(segment, refOffset)) {
+            ref = segment.get(refOffset);
+        }
         int refTarget = WirePointer.target(refOffset, ref);
-        FollowBuilderFarsResult resolved = followBuilderFars(ref, refTarget, segment);
+        SegmentBuilder resolvedSegment = followBuilderFarsSegment(ref, segment);
+        long resolvedRef = followFarsRef(ref, segment);
+        int resolvedPtr = followFarsPtr(ref, refTarget, segment);
 
-        if (WirePointer.kind(resolved.ref) != WirePointer.LIST) {
+        if (WirePointer.kind(resolvedRef) != WirePointer.LIST) {
             throw new DecodeException("Called getData{Field,Element} but existing pointer is not a list.");
         }
-        if (ListPointer.elementSize(resolved.ref) != ElementSize.BYTE) {
+        if (ListPointer.elementSize(resolvedRef) != ElementSize.BYTE) {
             throw new DecodeException(
                 "Called getData{Field,Element} but existing list pointer is not byte-sized.");
         }
 
-        return new Data.Builder(resolved.segment.buffer, resolved.ptr * Constants.BYTES_PER_WORD,
-                                ListPointer.elementCount(resolved.ref));
+        return new Data.Builder(resolvedSegment.buffer, resolvedPtr * Constants.BYTES_PER_WORD,
+                                ListPointer.elementCount(resolvedRef));
 
     }
 
@@ -921,24 +1099,26 @@ final class WireHelpers {
         }
 
         int refTarget = WirePointer.target(refOffset, ref);
-        FollowFarsResult resolved = followFars(ref, refTarget, segment);
+        SegmentReader resolvedSegment = followFarsSegment(ref, segment);
+        long resolvedRef = followFarsRef(ref, segment);
+        int resolvedPtr = followFarsPtr(ref, refTarget, segment);
 
-        if (WirePointer.kind(resolved.ref) != WirePointer.STRUCT) {
+        if (WirePointer.kind(resolvedRef) != WirePointer.STRUCT) {
             throw new DecodeException("Message contains non-struct pointer where struct pointer was expected.");
         }
 
-        int dataSizeWords = StructPointer.dataSize(resolved.ref);
-        int ptrCount = StructPointer.ptrCount(resolved.ref);
+        int dataSizeWords = StructPointer.dataSize(resolvedRef);
+        int ptrCount = StructPointer.ptrCount(resolvedRef);
         int wordSize = dataSizeWords + ptrCount;
 
-        resolved.segment.arena.checkReadLimit(wordSize);
-        if (!bounds_check(resolved.segment, resolved.ptr, wordSize)) {
+        resolvedSegment.arena.checkReadLimit(wordSize);
+        if (!bounds_check(resolvedSegment, resolvedPtr, wordSize)) {
             throw new DecodeException("Message contains out-of-bounds struct pointer");
         }
 
-        return factory.constructReader(resolved.segment,
-                                       resolved.ptr * Constants.BYTES_PER_WORD,
-                                       (resolved.ptr + dataSizeWords),
+        return factory.constructReader(resolvedSegment,
+                                       resolvedPtr * Constants.BYTES_PER_WORD,
+                                       (resolvedPtr + dataSizeWords),
                                        dataSizeWords * Constants.BITS_PER_WORD,
                                        (short) ptrCount,
                                        nestingLimit - 1);
@@ -946,46 +1126,77 @@ final class WireHelpers {
     }
 
     static SegmentBuilder setStructPointer(SegmentBuilder segment, int refOffset, StructReader value) {
-        int dataSize = roundBitsUpToWords(value.dataSize);
-        int totalSize = dataSize + value.pointerCount * Constants.POINTER_SIZE_IN_WORDS;
+        PointerRuns<SegmentBuilder> stack = new PointerRuns<>();
+        SegmentBuilder result = copyStruct(stack, segment, refOffset, value.segment, value.data,
+                                           value.pointers, value.dataSize, value.pointerCount,
+                                           value.nestingLimit);
+        stack.run(COPY_POINTER);
+        return result;
+    };
 
-        AllocateResult allocation = allocate(refOffset, segment, totalSize, WirePointer.STRUCT);
-        StructPointer.set(allocation.segment.buffer, allocation.refOffset,
-                          (short)dataSize, value.pointerCount);
+    static SegmentBuilder setListPointer(SegmentBuilder segment, int refOffset, ListReader value) {
+        PointerRuns<SegmentBuilder> stack = new PointerRuns<>();
+        SegmentBuilder result = copyList(stack, segment, refOffset, value.segment, value.ptr,
+                                         value.elementCount, value.step, value.structDataSize,
+                                         value.structPointerCount, value.nestingLimit);
+        stack.run(COPY_POINTER);
+        return result;
+    }
 
-        if (value.dataSize == 1) {
+    // Deep copies keep the pointers still to be copied in PointerRuns rather than recursing.
+    private static final PointerRuns.Visitor<SegmentBuilder> COPY_POINTER =
+        (runs, dstSegment, dstOffset, srcSegment, srcOffset, nestingLimit) ->
+            copyPointer(runs, dstSegment, dstOffset, srcSegment, srcOffset, nestingLimit);
+
+    // Copies the struct at `srcData` (in bytes) and `srcPointers` (in words) to a new object
+    // for the reference at `refOffset`, leaving its pointers on `stack`.
+    private static SegmentBuilder copyStruct(PointerRuns<SegmentBuilder> stack, SegmentBuilder segment, int refOffset,
+                                             SegmentReader srcSegment, int srcData, int srcPointers,
+                                             int dataSize, short pointerCount, int nestingLimit) {
+        int dataWords = roundBitsUpToWords(dataSize);
+        int totalSize = dataWords + pointerCount * Constants.POINTER_SIZE_IN_WORDS;
+
+        int allocationPtr = allocate(refOffset, segment, totalSize, WirePointer.STRUCT);
+        SegmentBuilder allocationSegment = allocatedSegment(refOffset, segment);
+        int allocationRefOffset = allocatedRefOffset(refOffset, segment);
+        StructPointer.set(allocationSegment.buffer, allocationRefOffset,
+                          (short)dataWords, pointerCount);
+
+        if (dataSize == 1) {
             throw new RuntimeException("single bit case not handled");
         } else {
-            memcpy(allocation.segment.buffer, allocation.ptr * Constants.BYTES_PER_WORD,
-                   value.segment.buffer, value.data, value.dataSize / Constants.BITS_PER_BYTE);
+            memcpy(allocationSegment.buffer, allocationPtr * Constants.BYTES_PER_WORD,
+                   srcSegment.buffer, srcData, dataSize / Constants.BITS_PER_BYTE);
         }
 
-        int pointerSection = allocation.ptr + dataSize;
-        for (int i = 0; i < value.pointerCount; ++i) {
-            copyPointer(allocation.segment, pointerSection + i, value.segment, value.pointers + i,
-                        value.nestingLimit);
-        }
-        return allocation.segment;
-    };
+        stack.push(allocationSegment, allocationPtr + dataWords, 0, srcSegment, srcPointers, 0,
+                   1, pointerCount, nestingLimit);
+        return allocationSegment;
+    }
 
-    static SegmentBuilder setListPointer(SegmentBuilder segment, int refOffset, ListReader value) {
-        int totalSize = roundBitsUpToWords((long) value.elementCount * value.step);
+    // Copies the list at `srcPtr` (in bytes) to a new object for the reference at `refOffset`,
+    // leaving any pointers in it on `stack`.
+    private static SegmentBuilder copyList(PointerRuns<SegmentBuilder> stack, SegmentBuilder segment, int refOffset,
+                                           SegmentReader srcSegment, int srcPtr, int elementCount,
+                                           int step, int structDataSize, short structPointerCount,
+                                           int nestingLimit) {
+        int totalSize = roundBitsUpToWords((long) elementCount * step);
 
-        if (value.step <= Constants.BITS_PER_WORD) {
+        if (step <= Constants.BITS_PER_WORD) {
             //# List of non-structs.
-            AllocateResult allocation = allocate(refOffset, segment, totalSize, WirePointer.LIST);
+            int allocationPtr = allocate(refOffset, segment, totalSize, WirePointer.LIST);
+            SegmentBuilder allocationSegment = allocatedSegment(refOffset, segment);
+            int allocationRefOffset = allocatedRefOffset(refOffset, segment);
 
-            if (value.structPointerCount == 1) {
+            if (structPointerCount == 1) {
                 //# List of pointers.
-                ListPointer.set(allocation.segment.buffer, allocation.refOffset, ElementSize.POINTER, value.elementCount);
-                for (int i = 0; i < value.elementCount; ++i) {
-                    copyPointer(allocation.segment, allocation.ptr + i,
-                                value.segment, value.ptr / Constants.BYTES_PER_WORD + i, value.nestingLimit);
-                }
+                ListPointer.set(allocationSegment.buffer, allocationRefOffset, ElementSize.POINTER, elementCount);
+                stack.push(allocationSegment, allocationPtr, 1, srcSegment, srcPtr / Constants.BYTES_PER_WORD, 1,
+                           elementCount, 1, nestingLimit);
             } else {
                 //# List of data.
                 byte elementSize = ElementSize.VOID;
-                switch (value.step) {
+                switch (step) {
                 case 0: elementSize = ElementSize.VOID; break;
                 case 1: elementSize = ElementSize.BIT; break;
                 case 8: elementSize = ElementSize.BYTE; break;
@@ -993,65 +1204,104 @@ final class WireHelpers {
                 case 32: elementSize = ElementSize.FOUR_BYTES; break;
                 case 64: elementSize = ElementSize.EIGHT_BYTES; break;
                 default:
-                    throw new RuntimeException("invalid list step size: " + value.step);
+                    throw new RuntimeException("invalid list step size: " + step);
                 }
 
-                ListPointer.set(allocation.segment.buffer, allocation.refOffset, elementSize, value.elementCount);
-                memcpy(allocation.segment.buffer, allocation.ptr * Constants.BYTES_PER_WORD,
-                       value.segment.buffer, value.ptr, totalSize * Constants.BYTES_PER_WORD);
+                ListPointer.set(allocationSegment.buffer, allocationRefOffset, elementSize, elementCount);
+                memcpy(allocationSegment.buffer, allocationPtr * Constants.BYTES_PER_WORD,
+                       srcSegment.buffer, srcPtr, totalSize * Constants.BYTES_PER_WORD);
             }
-            return allocation.segment;
+            return allocationSegment;
         } else {
             //# List of structs.
-            AllocateResult allocation = allocate(refOffset, segment, totalSize + Constants.POINTER_SIZE_IN_WORDS, WirePointer.LIST);
-            ListPointer.setInlineComposite(allocation.segment.buffer, allocation.refOffset, totalSize);
-            short dataSize = (short)roundBitsUpToWords(value.structDataSize);
-            short pointerCount = value.structPointerCount;
-
-            WirePointer.setKindAndInlineCompositeListElementCount(allocation.segment.buffer, allocation.ptr,
-                                                                  WirePointer.STRUCT, value.elementCount);
-            StructPointer.set(allocation.segment.buffer, allocation.ptr,
+            int allocationPtr = allocate(refOffset, segment, totalSize + Constants.POINTER_SIZE_IN_WORDS, WirePointer.LIST);
+            SegmentBuilder allocationSegment = allocatedSegment(refOffset, segment);
+            int allocationRefOffset = allocatedRefOffset(refOffset, segment);
+            ListPointer.setInlineComposite(allocationSegment.buffer, allocationRefOffset, totalSize);
+            short dataSize = (short)roundBitsUpToWords(structDataSize);
+            short pointerCount = structPointerCount;
+
+            WirePointer.setKindAndInlineCompositeListElementCount(allocationSegment.buffer, allocationPtr,
+                                                                  WirePointer.STRUCT, elementCount);
+            StructPointer.set(allocationSegment.buffer, allocationPtr,
                               dataSize, pointerCount);
 
-            int dstOffset = allocation.ptr + Constants.POINTER_SIZE_IN_WORDS;
-            int srcOffset = value.ptr / Constants.BYTES_PER_WORD;
+            int dstOffset = allocationPtr + Constants.POINTER_SIZE_IN_WORDS;
+            int srcOffset = srcPtr / Constants.BYTES_PER_WORD;
 
-            for (int i = 0; i < value.elementCount; ++i) {
-                memcpy(allocation.segment.buffer, dstOffset * Constants.BYTES_PER_WORD,
-                       value.segment.buffer, srcOffset * Constants.BYTES_PER_WORD,
-                       value.structDataSize / Constants.BITS_PER_BYTE);
-                dstOffset += dataSize;
-                srcOffset += dataSize;
+            if (pointerCount == 0) {
+                // Nothing but data, so the elements can be copied in one go.
+                memcpy(allocationSegment.buffer, dstOffset * Constants.BYTES_PER_WORD,
+                       srcSegment.buffer, srcOffset * Constants.BYTES_PER_WORD,
+                       totalSize * Constants.BYTES_PER_WORD);
+                return allocationSegment;
+            }
 
-                for (int j = 0; j < pointerCount; ++j) {
-                    copyPointer(allocation.segment, dstOffset, value.segment, srcOffset, value.nestingLimit);
-                    dstOffset += Constants.POINTER_SIZE_IN_WORDS;
-                    srcOffset += Constants.POINTER_SIZE_IN_WORDS;
-                }
+            int stride = dataSize + pointerCount * Constants.POINTER_SIZE_IN_WORDS;
+            for (int i = 0; i < elementCount; ++i) {
+                memcpy(allocationSegment.buffer, (dstOffset + i * stride) * Constants.BYTES_PER_WORD,
+                       srcSegment.buffer, (srcOffset + i * stride) * Constants.BYTES_PER_WORD,
+                       structDataSize / Constants.BITS_PER_BYTE);
             }
-            return allocation.segment;
+            stack.push(allocationSegment, dstOffset + dataSize, stride, srcSegment, srcOffset + dataSize, stride,
+                       elementCount, pointerCount, nestingLimit);
+            return allocationSegment;
         }
     }
 
     static void memset(ByteBuffer dstBuffer, int dstByteOffset, byte value, int length) {
-        // TODO we can probably do this faster
-        for (int ii = dstByteOffset; ii < dstByteOffset + length; ++ii) {
-            dstBuffer.put(ii, value);
+        if (value == 0) {
+            SegmentBuilder.zero(dstBuffer, dstByteOffset, length);
+        } else if (dstBuffer.hasArray()) {
+            int offset = dstBuffer.arrayOffset() + dstByteOffset;
+            java.util.Arrays.fill(dstBuffer.array(), offset, offset + length, value);
+        } else {
+            for (int ii = dstByteOffset; ii < dstByteOffset + length; ++ii) {
+                dstBuffer.put(ii, value);
+            }
         }
     }
 
+    // Below this many bytes, copying word by word is cheaper than setting up a bulk copy.
+    private static final int SMALL_COPY_BYTES = 64;
+
     static void memcpy(ByteBuffer dstBuffer, int dstByteOffset, ByteBuffer srcBuffer, int srcByteOffset, int length) {
-        ByteBuffer dstDup = dstBuffer.duplicate();
-        dstDup.position(dstByteOffset);
-        dstDup.limit(dstByteOffset + length);
-        ByteBuffer srcDup = srcBuffer.duplicate();
-        srcDup.position(srcByteOffset);
-        srcDup.limit(srcByteOffset + length);
-        dstDup.put(srcDup);
+        // System.arraycopy() only checks against the backing arrays, so the fast path is only
+        // taken for ranges that ByteBuffer would accept as well.
+        if (dstBuffer.hasArray() && srcBuffer.hasArray() &&
+            dstByteOffset >= 0 && length <= dstBuffer.limit() - dstByteOffset &&
+            srcByteOffset >= 0 && length <= srcBuffer.limit() - srcByteOffset) {
+            System.arraycopy(srcBuffer.array(), srcBuffer.arrayOffset() + srcByteOffset,
+                             dstBuffer.array(), dstBuffer.arrayOffset() + dstByteOffset, length);
+        } else if (length <= SMALL_COPY_BYTES && dstBuffer.order() == srcBuffer.order()) {
+            int ii = 0;
+            for (; ii + Constants.BYTES_PER_WORD <= length; ii += Constants.BYTES_PER_WORD) {
+                dstBuffer.putLong(dstByteOffset + ii, srcBuffer.getLong(srcByteOffset + ii));
+            }
+            for (; ii < length; ++ii) {
+                dstBuffer.put(dstByteOffset + ii, srcBuffer.get(srcByteOffset + ii));
+            }
+        } else {
+            ByteBuffer dstDup = dstBuffer.duplicate();
+            dstDup.position(dstByteOffset);
+            dstDup.limit(dstByteOffset + length);
+            ByteBuffer srcDup = srcBuffer.duplicate();
+            srcDup.position(srcByteOffset);
+            srcDup.limit(srcByteOffset + length);
+            dstDup.put(srcDup);
+        }
     }
 
     static SegmentBuilder copyPointer(SegmentBuilder dstSegment, int dstOffset,
                                       SegmentReader srcSegment, int srcOffset, int nestingLimit) {
+        PointerRuns<SegmentBuilder> stack = new PointerRuns<>();
+        SegmentBuilder result = copyPointer(stack, dstSegment, dstOffset, srcSegment, srcOffset, nestingLimit);
+        stack.run(COPY_POINTER);
+        return result;
+    }
+
+    private static SegmentBuilder copyPointer(PointerRuns<SegmentBuilder> stack, SegmentBuilder dstSegment, int dstOffset,
+                                              SegmentReader srcSegment, int srcOffset, int nestingLimit) {
         // Deep-copy the object pointed to by src into dst.  It turns out we can't reuse
         // readStructPointer(), etc. because they do type checking whereas here we want to accept any
         // valid pointer.
@@ -1064,32 +1314,39 @@ final class WireHelpers {
         }
 
         int srcTarget = WirePointer.target(srcOffset, srcRef);
-        FollowFarsResult resolved = followFars(srcRef, srcTarget, srcSegment);
+        SegmentReader resolvedSegment = followFarsSegment(srcRef, srcSegment);
+        long resolvedRef = followFarsRef(srcRef, srcSegment);
+        int resolvedPtr = followFarsPtr(srcRef, srcTarget, srcSegment);
 
-        switch (WirePointer.kind(resolved.ref)) {
+        switch (WirePointer.kind(resolvedRef)) {
         case WirePointer.STRUCT :
             if (nestingLimit <= 0) {
                 throw new DecodeException("Message is too deeply nested or contains cycles. See org.capnproto.ReaderOptions.");
             }
-            resolved.segment.arena.checkReadLimit(StructPointer.wordSize(resolved.ref));
-            return setStructPointer(dstSegment, dstOffset,
-                                    new StructReader(resolved.segment,
-                                                     resolved.ptr * Constants.BYTES_PER_WORD,
-                                                     resolved.ptr + StructPointer.dataSize(resolved.ref),
-                                                     StructPointer.dataSize(resolved.ref) * Constants.BITS_PER_WORD,
-                                                     (short)StructPointer.ptrCount(resolved.ref),
-                                                     nestingLimit - 1));
+            if (!bounds_check(resolvedSegment, resolvedPtr, StructPointer.wordSize(resolvedRef))) {
+                throw new DecodeException("Message contains out-of-bounds struct pointer");
+            }
+            resolvedSegment.arena.checkReadLimit(StructPointer.wordSize(resolvedRef));
+            return copyStruct(stack, dstSegment, dstOffset, resolvedSegment,
+                              resolvedPtr * Constants.BYTES_PER_WORD,
+                              resolvedPtr + StructPointer.dataSize(resolvedRef),
+                              StructPointer.dataSize(resolvedRef) * Constants.BITS_PER_WORD,
+                              (short)StructPointer.ptrCount(resolvedRef),
+                              nestingLimit - 1);
         case WirePointer.LIST :
-            byte elementSize = ListPointer.elementSize(resolved.ref);
+            byte elementSize = ListPointer.elementSize(resolvedRef);
             if (nestingLimit <= 0) {
                 throw new DecodeException("Message is too deeply nested or contains cycles. See org.capnproto.ReaderOptions.");
             }
             if (elementSize == ElementSize.INLINE_COMPOSITE) {
-                int wordCount = ListPointer.inlineCompositeWordCount(resolved.ref);
-                long tag = resolved.segment.get(resolved.ptr);
-                int ptr = resolved.ptr + 1;
+                int wordCount = ListPointer.inlineCompositeWordCount(resolvedRef);
+                if (!bounds_check(resolvedSegment, resolvedPtr, wordCount + 1)) {
+                    throw new DecodeException("Message contains out-of-bounds list pointer");
+                }
+                long tag = resolvedSegment.get(resolvedPtr);
+                int ptr = resolvedPtr + 1;
 
-                resolved.segment.arena.checkReadLimit(wordCount + 1);
+                resolvedSegment.arena.checkReadLimit(wordCount + 1);
 
                 if (WirePointer.kind(tag) != WirePointer.STRUCT) {
                     throw new DecodeException("INLINE_COMPOSITE lists of non-STRUCT type are not supported.");
@@ -1104,40 +1361,41 @@ final class WireHelpers {
                 if (wordsPerElement == 0) {
                     // Watch out for lists of zero-sized structs, which can claim to be arbitrarily
                     // large without having sent actual data.
-                    resolved.segment.arena.checkReadLimit(elementCount);
+                    resolvedSegment.arena.checkReadLimit(elementCount);
                 }
 
-                return setListPointer(dstSegment, dstOffset,
-                                      new ListReader(resolved.segment,
-                                                     ptr * Constants.BYTES_PER_WORD,
-                                                     elementCount,
-                                                     wordsPerElement * Constants.BITS_PER_WORD,
-                                                     StructPointer.dataSize(tag) * Constants.BITS_PER_WORD,
-                                                     (short)StructPointer.ptrCount(tag),
-                                                     nestingLimit - 1));
+                return copyList(stack, dstSegment, dstOffset, resolvedSegment,
+                                ptr * Constants.BYTES_PER_WORD,
+                                elementCount,
+                                wordsPerElement * Constants.BITS_PER_WORD,
+                                StructPointer.dataSize(tag) * Constants.BITS_PER_WORD,
+                                (short)StructPointer.ptrCount(tag),
+                                nestingLimit - 1);
             } else {
                 int dataSize = ElementSize.dataBitsPerElement(elementSize);
                 short pointerCount = ElementSize.pointersPerElement(elementSize);
                 int step = dataSize + pointerCount * Constants.BITS_PER_POINTER;
-                int elementCount = ListPointer.elementCount(resolved.ref);
+                int elementCount = ListPointer.elementCount(resolvedRef);
                 int wordCount = roundBitsUpToWords((long) elementCount * step);
+                if (!bounds_check(resolvedSegment, resolvedPtr, wordCount)) {
+                    throw new DecodeException("Message contains out-of-bounds list pointer");
+                }
 
-                resolved.segment.arena.checkReadLimit(wordCount);
+                resolvedSegment.arena.checkReadLimit(wordCount);
 
                 if (elementSize == ElementSize.VOID) {
                     // Watch out for lists of void, which can claim to be arbitrarily large without
                     // having sent actual data.
-                    resolved.segment.arena.checkReadLimit(elementCount);
+                    resolvedSegment.arena.checkReadLimit(elementCount);
                 }
 
-                return setListPointer(dstSegment, dstOffset,
-                                      new ListReader(resolved.segment,
-                                                     resolved.ptr * Constants.BYTES_PER_WORD,
-                                                     elementCount,
-                                                     step,
-                                                     dataSize,
-                                                     pointerCount,
-                                                     nestingLimit - 1));
+                return copyList(stack, dstSegment, dstOffset, resolvedSegment,
+                                resolvedPtr * Constants.BYTES_PER_WORD,
+                                elementCount,
+                                step,
+                                dataSize,
+                                pointerCount,
+                                nestingLimit - 1);
             }
 
         case WirePointer.FAR :
@@ -1148,6 +1406,91 @@ final class WireHelpers {
         throw new RuntimeException("unreachable");
     }
 
+    // Returns the number of words that copyPointer() would allocate for the object at
+    // `refOffset` and everything it points to, not counting the pointer itself.
+    static long totalSize(SegmentReader segment, int refOffset, int nestingLimit) {
+        TotalSize visitor = new TotalSize();
+        PointerRuns<Object> stack = new PointerRuns<>();
+        visitor.visit(stack, null, 0, segment, refOffset, nestingLimit);
+        stack.run(visitor);
+        return visitor.words;
+    }
+
+    // Like COPY_POINTER, but only counts the words that each object would take up in the copy.
+    private static final class TotalSize implements PointerRuns.Visitor<Object> {
+        long words = 0;
+
+        @Override
+        public void visit(PointerRuns<Object> stack, Object dstSegment, int dstOffset,
+                          SegmentReader segment, int refOffset, int nestingLimit) {
+            long ref = segment.get(refOffset);
+            if (WirePointer.isNull(ref)) {
+                return;
+            }
+
+            int target = WirePointer.target(refOffset, ref);
+            SegmentReader resolvedSegment = followFarsSegment(ref, segment);
+            long resolvedRef = followFarsRef(ref, segment);
+            int resolvedPtr = followFarsPtr(ref, target, segment);
+
+            switch (WirePointer.kind(resolvedRef)) {
+            case WirePointer.STRUCT : {
+                if (nestingLimit <= 0) {
+                    throw new DecodeException("Message is too deeply nested or contains cycles. See org.capnproto.ReaderOptions.");
+                }
+                int dataSize = StructPointer.dataSize(resolvedRef);
+                int pointerCount = StructPointer.ptrCount(resolvedRef);
+                if (!bounds_check(resolvedSegment, resolvedPtr, dataSize + pointerCount)) {
+                    throw new DecodeException("Message contains out-of-bounds struct pointer");
+                }
+                this.words += dataSize + pointerCount;
+                stack.push(null, 0, 0, resolvedSegment, resolvedPtr + dataSize, 0,
+                           1, pointerCount, nestingLimit - 1);
+                break;
+            }
+            case WirePointer.LIST : {
+                if (nestingLimit <= 0) {
+                    throw new DecodeException("Message is too deeply nested or contains cycles. See org.capnproto.ReaderOptions.");
+                }
+                byte elementSize = ListPointer.elementSize(resolvedRef);
+                if (elementSize == ElementSize.INLINE_COMPOSITE) {
+                    int wordCount = ListPointer.inlineCompositeWordCount(resolvedRef);
+                    if (!bounds_check(resolvedSegment, resolvedPtr, wordCount + 1)) {
+                        throw new DecodeException("Message contains out-of-bounds list pointer");
+                    }
+                    long tag = resolvedSegment.get(resolvedPtr);
+                    int elementCount = WirePointer.inlineCompositeListElementCount(tag);
+                    int dataSize = StructPointer.dataSize(tag);
+                    int wordsPerElement = StructPointer.wordSize(tag);
+                    // The copy holds exactly the elements, even if the list's word count
+                    // leaves room for more.
+                    this.words += Constants.POINTER_SIZE_IN_WORDS + (long)wordsPerElement * elementCount;
+                    stack.push(null, 0, 0, resolvedSegment,
+                               resolvedPtr + Constants.POINTER_SIZE_IN_WORDS + dataSize, wordsPerElement,
+                               elementCount, StructPointer.ptrCount(tag), nestingLimit - 1);
+                } else {
+                    int elementCount = ListPointer.elementCount(resolvedRef);
+                    int step = ElementSize.dataBitsPerElement(elementSize) +
+                        ElementSize.pointersPerElement(elementSize) * Constants.BITS_PER_POINTER;
+                    int wordCount = roundBitsUpToWords((long)elementCount * step);
+                    if (!bounds_check(resolvedSegment, resolvedPtr, wordCount)) {
+                        throw new DecodeException("Message contains out-of-bounds list pointer");
+                    }
+                    this.words += wordCount;
+                    if (elementSize == ElementSize.POINTER) {
+                        stack.push(null, 0, 0, resolvedSegment, resolvedPtr, 1,
+                                   elementCount, 1, nestingLimit - 1);
+                    }
+                }
+                break;
+            }
+            default :
+                // Far pointers have been followed, and capabilities take no space.
+                break;
+            }
+        }
+    }
+
     static <T> T readListPointer(ListReader.Factory<T> factory,
                                  SegmentReader segment,
                                  int refOffset,
@@ -1174,22 +1517,24 @@ final class WireHelpers {
 
         int refTarget = WirePointer.target(refOffset, ref);
 
-        FollowFarsResult resolved = followFars(ref, refTarget, segment);
+        SegmentReader resolvedSegment = followFarsSegment(ref, segment);
+        long resolvedRef = followFarsRef(ref, segment);
+        int resolvedPtr = followFarsPtr(ref, refTarget, segment);
 
-        if (WirePointer.kind(resolved.ref) != WirePointer.LIST) {
+        if (WirePointer.kind(resolvedRef) != WirePointer.LIST) {
             throw new DecodeException("Message contains non-list pointer where list was expected.");
         }
 
-        byte oldSize = ListPointer.elementSize(resolved.ref);
+        byte oldSize = ListPointer.elementSize(resolvedRef);
         switch (oldSize) {
         case ElementSize.INLINE_COMPOSITE : {
-            int wordCount = ListPointer.inlineCompositeWordCount(resolved.ref);
+            int wordCount = ListPointer.inlineCompositeWordCount(resolvedRef);
 
-            long tag = resolved.segment.get(resolved.ptr);
-            int ptr = resolved.ptr + 1;
+            long tag = resolvedSegment.get(resolvedPtr);
+            int ptr = resolvedPtr + 1;
 
-            resolved.segment.arena.checkReadLimit(wordCount + 1);
-            if (!bounds_check(resolved.segment, resolved.ptr, wordCount + 1)) {
+            resolvedSegment.arena.checkReadLimit(wordCount + 1);
+            if (!bounds_check(resolvedSegment, resolvedPtr, wordCount + 1)) {
                 throw new DecodeException("Message contains out-of-bounds list pointer");
             }
 
@@ -1205,7 +1550,7 @@ final class WireHelpers {
             if (wordsPerElement == 0) {
                 // Watch out for lists of zero-sized structs, which can claim to be arbitrarily
                 // large without having sent actual data.
-                resolved.segment.arena.checkReadLimit(size);
+                resolvedSegment.arena.checkReadLimit(size);
             }
 
             switch (expectedElementSize) {
@@ -1221,15 +1566,17 @@ final class WireHelpers {
                   throw new DecodeException(
                     "Expected a primitive list, but got a list of pointer-only structs");
                 }
+                break;
               case ElementSize.POINTER:
                 if (ptrCount == 0) {
                   throw new DecodeException(
                     "Expected a pointer list, but got a list of data-only structs");
                 }
+                break;
               default: break;
             }
 
-            return factory.constructReader(resolved.segment,
+            return factory.constructReader(resolvedSegment,
                                        ptr * Constants.BYTES_PER_WORD,
                                        size,
                                        wordsPerElement * Constants.BITS_PER_WORD,
@@ -1244,20 +1591,20 @@ final class WireHelpers {
             //# such structs.
             int dataSize = ElementSize.dataBitsPerElement(oldSize);
             int pointerCount = ElementSize.pointersPerElement(oldSize);
-            int elementCount = ListPointer.elementCount(resolved.ref);
+            int elementCount = ListPointer.elementCount(resolvedRef);
             int step = dataSize + pointerCount * Constants.BITS_PER_POINTER;
 
             int wordCount = roundBitsUpToWords((long)elementCount * step);
-            resolved.segment.arena.checkReadLimit(wordCount);
+            resolvedSegment.arena.checkReadLimit(wordCount);
 
-            if (!bounds_check(resolved.segment, resolved.ptr, wordCount)) {
+            if (!bounds_check(resolvedSegment, resolvedPtr, wordCount)) {
                 throw new DecodeException("Message contains out-of-bounds list pointer");
             }
 
             if (oldSize == ElementSize.VOID) {
                 // Watch out for lists of void, which can claim to be arbitrarily large without
                 // having sent actual data.
-                resolved.segment.arena.checkReadLimit(elementCount);
+                resolvedSegment.arena.checkReadLimit(elementCount);
             }
 
             //# Verify that the elements are at least as large as
@@ -1279,8 +1626,8 @@ final class WireHelpers {
                 throw new DecodeException("Message contains list with incompatible element type.");
             }
 
-            return factory.constructReader(resolved.segment,
-                                             resolved.ptr * Constants.BYTES_PER_WORD,
+            return factory.constructReader(resolvedSegment,
+                                             resolvedPtr * Constants.BYTES_PER_WORD,
                                              elementCount,
                                              step,
                                              dataSize,
@@ -1307,25 +1654,27 @@ final class WireHelpers {
 
         int refTarget = WirePointer.target(refOffset, ref);
 
-        FollowFarsResult resolved = followFars(ref, refTarget, segment);
+        SegmentReader resolvedSegment = followFarsSegment(ref, segment);
+        long resolvedRef = followFarsRef(ref, segment);
+        int resolvedPtr = followFarsPtr(ref, refTarget, segment);
 
-        int size = ListPointer.elementCount(resolved.ref);
+        int size = ListPointer.elementCount(resolvedRef);
 
-        if (WirePointer.kind(resolved.ref) != WirePointer.LIST) {
+        if (WirePointer.kind(resolvedRef) != WirePointer.LIST) {
             throw new DecodeException("Message contains non-list pointer where text was expected.");
         }
 
-        if (ListPointer.elementSize(resolved.ref) != ElementSize.BYTE) {
+        if (ListPointer.elementSize(resolvedRef) != ElementSize.BYTE) {
             throw new DecodeException("Message contains list pointer of non-bytes where text was expected.");
         }
 
-        resolved.segment.arena.checkReadLimit(roundBytesUpToWords(size));
+        resolvedSegment.arena.checkReadLimit(roundBytesUpToWords(size));
 
-        if (size == 0 || resolved.segment.buffer.get(8 * resolved.ptr + size - 1) != 0) {
+        if (size == 0 || resolvedSegment.buffer.get(8 * resolvedPtr + size - 1) != 0) {
             throw new DecodeException("Message contains text that is not NUL-terminated.");
         }
 
-        return new Text.Reader(resolved.segment.buffer, resolved.ptr, size - 1);
+        return new Text.Reader(resolvedSegment.buffer, resolvedPtr, size - 1);
     }
 
     static Data.Reader readDataPointer(SegmentReader segment,
@@ -1345,21 +1694,23 @@ final class WireHelpers {
 
         int refTarget = WirePointer.target(refOffset, ref);
 
-        FollowFarsResult resolved = followFars(ref, refTarget, segment);
+        SegmentReader resolvedSegment = followFarsSegment(ref, segment);
+        long resolvedRef = followFarsRef(ref, segment);
+        int resolvedPtr = followFarsPtr(ref, refTarget, segment);
 
-        int size = ListPointer.elementCount(resolved.ref);
+        int size = ListPointer.elementCount(resolvedRef);
 
-        if (WirePointer.kind(resolved.ref) != WirePointer.LIST) {
+        if (WirePointer.kind(resolvedRef) != WirePointer.LIST) {
             throw new DecodeException("Message contains non-list pointer where data was expected.");
         }
 
-        if (ListPointer.elementSize(resolved.ref) != ElementSize.BYTE) {
+        if (ListPointer.elementSize(resolvedRef) != ElementSize.BYTE) {
             throw new DecodeException("Message contains list pointer of non-bytes where data was expected.");
         }
 
-        resolved.segment.arena.checkReadLimit(roundBytesUpToWords(size));
+        resolvedSegment.arena.checkReadLimit(roundBytesUpToWords(size));
 
-        return new Data.Reader(resolved.segment.buffer, resolved.ptr, size);
+        return new Data.Reader(resolvedSegment.buffer, resolvedPtr, size);
     }
 
 }
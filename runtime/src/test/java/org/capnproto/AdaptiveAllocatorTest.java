@@ -0,0 +1,69 @@
+package org.capnproto;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveAllocatorTest {
+
+    private static MessageBuilder build(AdaptiveAllocator allocator, Object key, int bytes) {
+        MessageBuilder message = allocator.newMessageBuilder(key);
+        message.initRoot(AnyPointer.factory).initAs(Data.factory, bytes);
+        allocator.record(key, message);
+        return message;
+    }
+
+    @Test
+    public void testLearnsQuantilePerKey() {
+        AdaptiveAllocator allocator = new AdaptiveAllocator(0.9, 1024, 8, 1 << 20);
+        assertEquals(1024, allocator.stats("small").firstSegmentWords);
+
+        for (int ii = 0; ii < 100; ++ii) {
+            // 95 messages of 11 words, 5 messages of 1001 words.
+            build(allocator, "small", ii % 20 == 0 ? 8000 : 80);
+        }
+        AdaptiveAllocator.Stats small = allocator.stats("small");
+        assertEquals(100, small.messages);
+        // Messages that spill into a second segment also use a few words for far pointers.
+        assertTrue(small.usedWords >= 95 * 11 + 5 * 1001, small.toString());
+        assertTrue(small.firstSegmentWords >= 11 && small.firstSegmentWords <= 14, small.toString());
+
+        // Other keys are unaffected.
+        assertEquals(1024, allocator.stats("other").firstSegmentWords);
+
+        MessageBuilder next = build(allocator, "small", 80);
+        assertEquals(1, next.getSegmentsForOutput().length);
+        assertEquals(small.firstSegmentWords * 8,
+                     next.arena.segments.get(0).buffer.capacity());
+    }
+
+    @Test
+    public void testStatsForUnknownKey() {
+        AdaptiveAllocator allocator = new AdaptiveAllocator(0.9, 512, 8, 1 << 20);
+        AdaptiveAllocator.Stats stats = allocator.stats("unseen");
+        assertEquals(0, stats.messages);
+        assertEquals(0, stats.singleSegmentMessages);
+        assertEquals(0, stats.usedWords);
+        assertEquals(0, stats.allocatedWords);
+        assertEquals(512, stats.firstSegmentWords);
+    }
+
+    @Test
+    public void testLargeMessagesFitInOneSegment() {
+        AdaptiveAllocator allocator = new AdaptiveAllocator();
+        Object key = AdaptiveAllocatorTest.class;
+
+        // The default first segment is too small for the first message.
+        build(allocator, key, 100000);
+        AdaptiveAllocator.Stats first = allocator.stats(key);
+        assertEquals(0, first.singleSegmentMessages);
+
+        for (int ii = 0; ii < 9; ++ii) {
+            build(allocator, key, 100000);
+        }
+        AdaptiveAllocator.Stats after = allocator.stats(key);
+        assertEquals(9, after.singleSegmentMessages);
+        assertTrue(after.allocatedWords - first.allocatedWords < 9 * 12501 * 5 / 4, after.toString());
+    }
+}
@@ -0,0 +1,178 @@
+package org.capnproto;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncHelpersTest {
+
+    /**
+     * An in-memory AsynchronousByteChannel that transfers at most `maxBytes` bytes per
+     * operation and completes handlers on the calling thread.
+     */
+    private static final class TrickleChannel implements AsynchronousByteChannel {
+        final ByteBuffer input;
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final int maxBytes;
+
+        TrickleChannel(byte[] input, int maxBytes) {
+            this.input = ByteBuffer.wrap(input);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public <A> void read(ByteBuffer dst, A attachment, CompletionHandler<Integer, ? super A> handler) {
+            if (!input.hasRemaining()) {
+                handler.completed(-1, attachment);
+                return;
+            }
+            int n = Math.min(maxBytes, Math.min(dst.remaining(), input.remaining()));
+            for (int ii = 0; ii < n; ++ii) {
+                dst.put(input.get());
+            }
+            handler.completed(n, attachment);
+        }
+
+        @Override
+        public <A> void write(ByteBuffer src, A attachment, CompletionHandler<Integer, ? super A> handler) {
+            int n = Math.min(maxBytes, src.remaining());
+            for (int ii = 0; ii < n; ++ii) {
+                output.write(src.get());
+            }
+            handler.completed(n, attachment);
+        }
+
+        @Override
+        public Future<Integer> read(ByteBuffer dst) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Future<Integer> write(ByteBuffer src) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    private static MessageReader exampleMessage() {
+        ByteBuffer[] segments = new ByteBuffer[3];
+        for (int i = 0; i < 3; ++i) {
+            segments[i] = ByteBuffer.allocate(8 * i).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            for (int j = 0; j < i; ++j) {
+                segments[i].putLong(8 * j, i);
+            }
+        }
+        return new MessageReader(segments, ReaderOptions.DEFAULT_READER_OPTIONS);
+    }
+
+    private static void checkExampleMessage(MessageReader message) {
+        assertEquals(3, message.arena.segments.size());
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(8 * i, message.arena.segments.get(i).buffer.limit());
+            for (int j = 0; j < i; ++j) {
+                assertEquals(i, message.arena.segments.get(i).get(j));
+            }
+        }
+    }
+
+    @Test
+    public void unpackedRoundTrip() throws Exception {
+        TrickleChannel out = new TrickleChannel(new byte[0], 5);
+        Serialize.writeAsync(out, exampleMessage()).get();
+        Serialize.writeAsync(out, exampleMessage()).get();
+        byte[] bytes = out.output.toByteArray();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Serialize.write(java.nio.channels.Channels.newChannel(expected), exampleMessage());
+        Serialize.write(java.nio.channels.Channels.newChannel(expected), exampleMessage());
+        assertArrayEquals(expected.toByteArray(), bytes);
+
+        TrickleChannel in = new TrickleChannel(bytes, 5);
+        checkExampleMessage(Serialize.readAsync(in).get());
+        checkExampleMessage(Serialize.readAsync(in).get());
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> Serialize.readAsync(in).get());
+        assertTrue(e.getCause() instanceof java.io.IOException);
+    }
+
+    @Test
+    public void packedRoundTrip() throws Exception {
+        TrickleChannel out = new TrickleChannel(new byte[0], 3);
+        SerializePacked.writeAsync(out, exampleMessage()).get();
+        byte[] bytes = out.output.toByteArray();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        SerializePacked.writeToUnbuffered(java.nio.channels.Channels.newChannel(expected), exampleMessage());
+        assertArrayEquals(expected.toByteArray(), bytes);
+
+        checkExampleMessage(SerializePacked.readAsync(new TrickleChannel(bytes, 3)).get());
+    }
+
+    @Test
+    public void packedStreamKeepsReadAhead() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        SerializePacked.writeToUnbuffered(java.nio.channels.Channels.newChannel(stream), exampleMessage());
+        SerializePacked.writeToUnbuffered(java.nio.channels.Channels.newChannel(stream), exampleMessage());
+        byte[] bytes = stream.toByteArray();
+
+        // Both messages arrive in the first read.
+        TrickleChannel in = new TrickleChannel(bytes, bytes.length);
+        MessageStreamDecoder decoder = MessageStreamDecoder.packed();
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        buffer.limit(0);
+        checkExampleMessage(SerializePacked.readAsync(in, decoder, buffer).get());
+        assertTrue(buffer.hasRemaining());
+        checkExampleMessage(SerializePacked.readAsync(in, decoder, buffer).get());
+        assertTrue(decoder.isAtMessageBoundary());
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                                            () -> SerializePacked.readAsync(in, decoder, buffer).get());
+        assertTrue(e.getCause() instanceof java.io.IOException);
+    }
+
+    @Test
+    public void decodeErrorsCompleteExceptionally() {
+        byte[] tooLarge = new byte[]{0, 0, 0, 0, 100, 0, 0, 0};
+        CompletableFuture<MessageReader> future =
+            Serialize.readAsync(new TrickleChannel(tooLarge, 8), new ReaderOptions(10, 64));
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertTrue(e.getCause() instanceof DecodeException);
+    }
+
+    @Test
+    public void fileRoundTrip(@TempDir Path tempDir) throws Exception {
+        Path path = tempDir.resolve("messages.bin");
+        try (AsynchronousFileChannel channel = AsynchronousFileChannel.open(
+                 path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = Serialize.computeSerializedSizeInWords(
+                MessageBuilder.unsafeConstructFromMessageReader(exampleMessage())) * 8;
+            MessageBuilder builder = MessageBuilder.unsafeConstructFromMessageReader(exampleMessage());
+            Serialize.writeAsync(channel, 3, builder).get();
+            Serialize.writeAsync(channel, 3 + size, builder).get();
+
+            checkExampleMessage(Serialize.readAsync(channel, 3 + size, ReaderOptions.DEFAULT_READER_OPTIONS).get());
+        }
+    }
+}
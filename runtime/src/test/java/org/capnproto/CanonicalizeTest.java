@@ -0,0 +1,86 @@
+package org.capnproto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.capnproto.TestFactories.BareListBuilder;
+import org.capnproto.TestFactories.BareStructBuilder;
+import org.capnproto.TestFactories.BareStructReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CanonicalizeTest {
+
+    private static final BareStructReader STRUCT = new BareStructReader();
+    private static final BareStructBuilder ELEMENT = new BareStructBuilder(null);
+
+    // Builds a message over segments of two words each, so that most pointers are far.
+    private static BuilderArena build(long first) {
+        BuilderArena arena = new BuilderArena(2, BuilderArena.AllocationStrategy.FIXED_SIZE);
+        arena.allocateInLastSegment(1);
+        StructBuilder root = WireHelpers.initStructPointer(ELEMENT, 0, arena.getSegment(0),
+                                                           new StructSize((short) 2, (short) 3));
+        root._setLongField(0, 5);
+        WireHelpers.setTextPointer(root.pointers, root.segment, new Text.Reader("hi"));
+        ListBuilder list = WireHelpers.initStructListPointer(new BareListBuilder(), root.pointers + 1, root.segment,
+                                                             2, new StructSize((short) 2, (short) 1));
+        list._getStructElement(ELEMENT, 0)._setLongField(0, first);
+        list._getStructElement(ELEMENT, 1)._setLongField(0, 2);
+        return arena;
+    }
+
+    private static MessageReader read(ByteBuffer... segments) {
+        return new MessageReader(segments, ReaderOptions.DEFAULT_READER_OPTIONS);
+    }
+
+    @Test
+    public void testWrite() {
+        MessageReader message = read(build(1).getSegmentsForOutput());
+        ByteBuffer canonical = Canonicalize.write(message.getRoot(STRUCT));
+
+        long[] expected = {
+            (1L | 2L << 16) << 32, // root: one data word and two pointers
+            5L,
+            5L | 26L << 32,        // "hi", one word ahead
+            5L | 23L << 32,        // the list, one word ahead
+            0x6968L,
+            8L | 1L << 32,         // two elements of one data word and no pointers
+            1L,
+            2L,
+        };
+        assertEquals(expected.length * 8, canonical.remaining());
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals(expected[i], canonical.getLong(i * 8));
+        }
+
+        assertFalse(Canonicalize.isCanonical(message));
+        assertTrue(Canonicalize.isCanonical(read(canonical)));
+    }
+
+    @Test
+    public void testIsCanonicalChecksPadding() {
+        ByteBuffer canonical = Canonicalize.write(read(build(1).getSegmentsForOutput()).getRoot(STRUCT));
+        ByteBuffer corrupt = ByteBuffer.allocate(canonical.remaining()).order(ByteOrder.LITTLE_ENDIAN);
+        corrupt.put(canonical.duplicate());
+        corrupt.flip();
+        // The byte after the text's NUL terminator.
+        corrupt.put(4 * 8 + 3, (byte) 1);
+        assertFalse(Canonicalize.isCanonical(read(corrupt)));
+    }
+
+    @Test
+    public void testHash() {
+        MessageReader message = read(build(1).getSegmentsForOutput());
+        ByteBuffer canonical = Canonicalize.write(message.getRoot(STRUCT));
+        long hash = Canonicalize.hash(message.getRoot(STRUCT));
+
+        assertEquals(hash, Canonicalize.hash(canonical));
+        assertEquals(hash, Canonicalize.hash(read(canonical).getRoot(STRUCT)));
+        assertNotEquals(hash, Canonicalize.hash(read(build(3).getSegmentsForOutput()).getRoot(STRUCT)));
+    }
+}
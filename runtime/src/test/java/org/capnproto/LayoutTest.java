@@ -6,6 +6,11 @@ import org.junit.jupiter.api.Test;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
+import org.capnproto.TestFactories.BareListBuilder;
+import org.capnproto.TestFactories.BareListReader;
+import org.capnproto.TestFactories.BareStructBuilder;
+import org.capnproto.TestFactories.BareStructReader;
+
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -14,13 +19,6 @@ public class LayoutTest {
 
     private static final int MAX_NESTING_LIMIT = 0x7fffffff;
 
-    private class BareStructReader implements StructReader.Factory<StructReader> {
-        @Override
-        public StructReader constructReader(SegmentReader segment, int data, int pointers, int dataSize, short pointerCount, int nestingLimit) {
-            return new StructReader(segment, data, pointers, dataSize, pointerCount, nestingLimit);
-        }
-    }
-
     @Test
     public void testSimpleRawDataStruct() {
         byte[] data = new byte[] {
@@ -94,16 +92,6 @@ public class LayoutTest {
     }
 
 
-    private static class BareListReader implements ListReader.Factory<ListReader> {
-        BareListReader() {
-        }
-
-        @Override
-        public ListReader constructReader(SegmentReader segment, int ptr, int elementCount, int step, int structDataSize, short structPointerCount, int nestingLimit) {
-            return new ListReader(segment, ptr, elementCount, step, structDataSize, structPointerCount, nestingLimit);
-        }
-    }
-
     @Test
     public void readListPointerShouldThrowDecodeExceptionOnOutOfBoundsCompositeListPointer() {
         byte[] brokenMSG = {
@@ -121,24 +109,6 @@ public class LayoutTest {
         assertThrows(DecodeException.class, () -> WireHelpers.readListPointer(new BareListReader(), arena.tryGetSegment(0), 0, null, 0, (byte) 0, MAX_NESTING_LIMIT));
     }
 
-    private class BareStructBuilder implements StructBuilder.Factory<StructBuilder> {
-        private StructSize structSize;
-
-        public BareStructBuilder(StructSize structSize) {
-            this.structSize = structSize;
-        }
-
-        @Override
-        public StructBuilder constructBuilder(SegmentBuilder segment, int data, int pointers, int dataSize, short pointerCount) {
-            return new StructBuilder(segment, data, pointers, dataSize, pointerCount);
-        }
-
-        @Override
-        public StructSize structSize() {
-            return this.structSize;
-        }
-    }
-
     @Test
     public void testStructRoundTripOneSegment() {
         ByteBuffer buffer = ByteBuffer.allocate(1024*8);
@@ -183,6 +153,51 @@ public class LayoutTest {
         assertEquals(false, builder._getBooleanField(127));
     }
 
+    @Test
+    public void testFollowSingleAndDoubleFarPointers() {
+        byte ffff = (byte)0xff;
+        byte[][] segments = new byte[][] {
+            {
+                // Far pointer, offset = 1, segment id = 1.
+                0x0a, 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00,
+                // Double-far pointer, offset = 2, segment id = 1.
+                0x16, 0x00, 0x00, 0x00, 0x01, 0x00, 0x00, 0x00,
+            },
+            {
+                ffff, ffff, ffff, ffff, ffff, ffff, ffff, ffff,
+                // Landing pad, offset = 3, list of 3 bytes.
+                0x0d, 0x00, 0x00, 0x00, 0x1a, 0x00, 0x00, 0x00,
+                // Landing pad far pointer, offset = 0, segment id = 2.
+                0x02, 0x00, 0x00, 0x00, 0x02, 0x00, 0x00, 0x00,
+                // Landing pad tag, list of 2 bytes.
+                0x01, 0x00, 0x00, 0x00, 0x12, 0x00, 0x00, 0x00,
+                ffff, ffff, ffff, ffff, ffff, ffff, ffff, ffff,
+                // Data of the first list.
+                0x01, 0x02, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00,
+            },
+            {
+                // Data of the second list.
+                0x04, 0x05, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+            },
+        };
+        ByteBuffer[] buffers = new ByteBuffer[segments.length];
+        for (int i = 0; i < segments.length; ++i) {
+            buffers[i] = ByteBuffer.wrap(segments[i]).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        ReaderArena readerArena = new ReaderArena(buffers, 0x7fffffffffffffffL);
+        SegmentReader root = readerArena.tryGetSegment(0);
+        assertArrayEquals(new byte[] {1, 2, 3}, WireHelpers.readDataPointer(root, 0, null, 0, 0).toArray());
+        assertArrayEquals(new byte[] {4, 5}, WireHelpers.readDataPointer(root, 1, null, 0, 0).toArray());
+
+        BuilderArena builderArena = new BuilderArena(readerArena);
+        SegmentBuilder rootBuilder = builderArena.getSegment(0);
+        assertArrayEquals(new byte[] {1, 2, 3},
+                          WireHelpers.getWritableDataPointer(0, rootBuilder, null, 0, 0).toArray());
+        assertArrayEquals(new byte[] {4, 5},
+                          WireHelpers.getWritableDataPointer(1, rootBuilder, null, 0, 0).toArray());
+    }
+
     @Test
     public void testWireHelpersZeroObjectFarPointer() {
         byte ffff = (byte)0xff;
@@ -275,4 +290,84 @@ public class LayoutTest {
         WireHelpers.zeroObject(arena.getSegment(0), 0);
         assertArrayEquals(expect, segments);
     }
+
+    private static byte[][] output(BuilderArena arena) {
+        ByteBuffer[] segments = arena.getSegmentsForOutput();
+        byte[][] result = new byte[segments.length][];
+        for (int i = 0; i < segments.length; ++i) {
+            result[i] = new byte[segments[i].remaining()];
+            segments[i].get(result[i]);
+        }
+        return result;
+    }
+
+    @Test
+    public void testCopyLongPointerChain() {
+        // Every struct points to the next one through its first pointer, so copying the chain
+        // recursively would need a stack frame per link.
+        final int links = 100000;
+        BuilderArena arena = new BuilderArena(BuilderArena.SUGGESTED_FIRST_SEGMENT_WORDS,
+                                              BuilderArena.SUGGESTED_ALLOCATION_STRATEGY);
+        TestFactories.buildChain(arena, links);
+
+        BuilderArena copy = new BuilderArena(BuilderArena.SUGGESTED_FIRST_SEGMENT_WORDS,
+                                             BuilderArena.SUGGESTED_ALLOCATION_STRATEGY);
+        copy.allocateInLastSegment(1);
+        WireHelpers.copyPointer(copy.getSegment(0), 0, arena.getSegment(0), 0, MAX_NESTING_LIMIT);
+
+        TestFactories.checkChain(WireHelpers.readStructPointer(new BareStructReader(), copy.getSegment(0), 0,
+                                                               null, 0, MAX_NESTING_LIMIT), links);
+    }
+
+    @Test
+    public void testCopyStructLists() {
+        BareListBuilder factory = new BareListBuilder();
+        BareStructBuilder element = new BareStructBuilder(null);
+        BuilderArena arena = new BuilderArena(BuilderArena.SUGGESTED_FIRST_SEGMENT_WORDS,
+                                              BuilderArena.SUGGESTED_ALLOCATION_STRATEGY);
+        arena.allocateInLastSegment(2);
+        SegmentBuilder segment = arena.getSegment(0);
+
+        ListBuilder plain = WireHelpers.initStructListPointer(factory, 0, segment, 100,
+                                                               new StructSize((short) 2, (short) 0));
+        ListBuilder withPointers = WireHelpers.initStructListPointer(factory, 1, segment, 100,
+                                                                      new StructSize((short) 1, (short) 2));
+        for (int i = 0; i < 100; ++i) {
+            StructBuilder builder = plain._getStructElement(element, i);
+            builder._setLongField(0, i);
+            builder._setLongField(1, -i);
+            builder = withPointers._getStructElement(element, i);
+            builder._setIntField(1, i);
+            WireHelpers.setTextPointer(builder.pointers + 1, builder.segment, new Text.Reader("element " + i));
+        }
+
+        // Copied the same way they were built, the lists come out byte for byte the same.
+        BuilderArena copy = new BuilderArena(BuilderArena.SUGGESTED_FIRST_SEGMENT_WORDS,
+                                             BuilderArena.SUGGESTED_ALLOCATION_STRATEGY);
+        copy.allocateInLastSegment(2);
+        WireHelpers.copyPointer(copy.getSegment(0), 0, segment, 0, MAX_NESTING_LIMIT);
+        WireHelpers.copyPointer(copy.getSegment(0), 1, segment, 1, MAX_NESTING_LIMIT);
+        assertArrayEquals(output(arena), output(copy));
+    }
+
+    @Test
+    public void testCopyOutOfBoundsPointers() {
+        // Each segment is a one-word slice of a larger array, so that reading past the end of
+        // the segment would not fail on its own.
+        byte[] array = new byte[8 + 64];
+        java.util.Arrays.fill(array, (byte) 'x');
+        ByteBuffer list = ByteBuffer.wrap(array, 0, 8).slice().order(ByteOrder.LITTLE_ENDIAN);
+        list.putLong(0, 1L | (ElementSize.BYTE | 64L << 3) << 32);
+        ByteBuffer struct = ByteBuffer.wrap(array.clone(), 0, 8).slice().order(ByteOrder.LITTLE_ENDIAN);
+        struct.putLong(0, 2L << 32);
+        ByteBuffer structList = ByteBuffer.wrap(array.clone(), 0, 8).slice().order(ByteOrder.LITTLE_ENDIAN);
+        structList.putLong(0, 1L | (ElementSize.INLINE_COMPOSITE | 4L << 3) << 32);
+
+        for (ByteBuffer segment : new ByteBuffer[] { list, struct, structList }) {
+            MessageReader reader = new MessageReader(new ByteBuffer[]{ segment }, ReaderOptions.DEFAULT_READER_OPTIONS);
+            MessageBuilder builder = new MessageBuilder();
+            assertThrows(DecodeException.class,
+                         () -> builder.setRoot(AnyPointer.factory, reader.getRoot(AnyPointer.factory)));
+        }
+    }
 }
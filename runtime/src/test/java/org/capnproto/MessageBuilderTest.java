@@ -0,0 +1,135 @@
+package org.capnproto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MessageBuilderTest {
+
+    private static final class CountingAllocator implements Allocator {
+        private final DefaultAllocator allocator =
+            new DefaultAllocator(BuilderArena.AllocationStrategy.FIXED_SIZE);
+        int allocations = 0;
+
+        CountingAllocator(int segmentBytes) {
+            this.allocator.setNextAllocationSizeBytes(segmentBytes);
+        }
+
+        @Override
+        public ByteBuffer allocateSegment(int minimumSize) {
+            ++this.allocations;
+            return this.allocator.allocateSegment(minimumSize);
+        }
+    }
+
+    private static void build(MessageBuilder message, int count) {
+        TextList.Builder texts = message.initRoot(AnyPointer.factory).initAs(TextList.factory, count);
+        for (int ii = 0; ii < count; ++ii) {
+            texts.set(ii, new Text.Reader("text number " + ii + " is long enough to fill a few words"));
+        }
+    }
+
+    private static byte[] serialize(MessageBuilder message) throws java.io.IOException {
+        ByteBuffer out = ByteBuffer.allocate((int)Serialize.computeSerializedSizeInWords(message) * 8);
+        Serialize.write(new ArrayOutputStream(out), message);
+        return out.array();
+    }
+
+    @Test
+    public void testResetReusesAllSegments() throws java.io.IOException {
+        CountingAllocator allocator = new CountingAllocator(256);
+        MessageBuilder message = new MessageBuilder(allocator);
+        build(message, 20);
+        int segmentCount = message.getSegmentsForOutput().length;
+        assertEquals(segmentCount, allocator.allocations);
+        assertTrue(segmentCount >= 3);
+        byte[] expected = serialize(message);
+
+        message.reset();
+        assertEquals(1, message.getSegmentsForOutput().length);
+        assertEquals(0, message.getSegmentsForOutput()[0].limit());
+
+        build(message, 20);
+        assertEquals(segmentCount, allocator.allocations);
+        assertArrayEquals(expected, serialize(message));
+
+        message.reset();
+        build(message, 2);
+        assertEquals(segmentCount, allocator.allocations);
+        MessageReader reader = new MessageReader(message.getSegmentsForOutput(), ReaderOptions.DEFAULT_READER_OPTIONS);
+        TextList.Reader texts = reader.getRoot(AnyPointer.factory).getAs(TextList.factory);
+        assertEquals(2, texts.size());
+        assertEquals("text number 1 is long enough to fill a few words", texts.get(1).toString());
+    }
+
+    @Test
+    public void testResetDropsReaderSegments() throws java.io.IOException {
+        MessageBuilder original = new MessageBuilder();
+        build(original, 3);
+        byte[] bytes = serialize(original);
+
+        byte[] copy = bytes.clone();
+
+        MessageReader reader = Serialize.read(ByteBuffer.wrap(bytes));
+        MessageBuilder message = MessageBuilder.unsafeConstructFromMessageReader(reader);
+        message.reset();
+        build(message, 1);
+
+        assertArrayEquals(copy, bytes);
+        assertEquals(3, reader.getRoot(AnyPointer.factory).getAs(TextList.factory).size());
+        assertEquals(1, message.getRoot(AnyPointer.factory).getAs(TextList.factory).size());
+    }
+
+    @Test
+    public void testToSingleSegment() {
+        MessageBuilder message = new MessageBuilder(16);
+        build(message, 20);
+        TextList.Builder texts = message.getRoot(AnyPointer.factory).getAs(TextList.factory);
+        texts.set(3, new Text.Reader("replaced"));
+        assertTrue(message.getSegmentsForOutput().length > 1);
+
+        MessageBuilder compacted = message.toSingleSegment();
+        ByteBuffer[] segments = compacted.getSegmentsForOutput();
+        assertEquals(1, segments.length);
+
+        // Root pointer, list of pointers, then the texts with their NUL terminators.
+        int expectedWords = 1 + texts.size();
+        for (int ii = 0; ii < texts.size(); ++ii) {
+            expectedWords += (texts.get(ii).toString().length() + 1 + 7) / 8;
+        }
+        assertEquals(expectedWords * 8, segments[0].remaining());
+
+        TextList.Reader reader = compacted.getRoot(AnyPointer.factory).asReader().getAs(TextList.factory);
+        assertEquals(20, reader.size());
+        assertEquals("replaced", reader.get(3).toString());
+        assertEquals("text number 19 is long enough to fill a few words", reader.get(19).toString());
+
+        MessageBuilder empty = new MessageBuilder();
+        assertEquals(0, empty.toSingleSegment().getSegmentsForOutput().length);
+        assertEquals(0, empty.getSegmentsForOutput().length);
+    }
+
+    @Test
+    public void testToSingleSegmentSkipsUnreachableWords() throws java.io.IOException {
+        MessageBuilder payload = new MessageBuilder();
+        build(payload, 20);
+        MessageReader reader = Serialize.read(ByteBuffer.wrap(serialize(payload)));
+
+        MessageBuilder message = new MessageBuilder();
+        message.getRoot(AnyPointer.factory).adopt(message.getOrphanage().referenceExternal(
+            TextList.factory, reader.getRoot(AnyPointer.factory)));
+        // Never adopted, so not part of the message.
+        message.getOrphanage().newOrphan(Data.factory, 4096);
+
+        MessageBuilder compacted = message.toSingleSegment();
+        ByteBuffer[] segments = compacted.getSegmentsForOutput();
+        assertEquals(1, segments.length);
+        assertEquals(compacted.arena.segments.get(0).capacity() * 8, segments[0].remaining());
+        TextList.Reader texts = compacted.getRoot(AnyPointer.factory).asReader().getAs(TextList.factory);
+        assertEquals("text number 19 is long enough to fill a few words", texts.get(19).toString());
+    }
+}
@@ -0,0 +1,71 @@
+package org.capnproto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MessageReaderTest {
+
+    private static ByteBuffer[] longs(int count) {
+        MessageBuilder builder = new MessageBuilder();
+        PrimitiveList.Long.Builder list = builder.getRoot(AnyPointer.factory)
+            .initAs(PrimitiveList.Long.factory, count);
+        for (int i = 0; i < count; ++i) {
+            list.set(i, i);
+        }
+        return builder.getSegmentsForOutput();
+    }
+
+    @Test
+    public void testSessionsHaveTheirOwnTraversalLimit() {
+        MessageReader message = new MessageReader(longs(1000), new ReaderOptions(1500, 64));
+        message.getRoot(PrimitiveList.Long.factory);
+        assertThrows(DecodeException.class, () -> message.getRoot(PrimitiveList.Long.factory));
+
+        MessageReader session = message.newSession();
+        assertEquals(999, session.getRoot(PrimitiveList.Long.factory).get(999));
+        assertThrows(DecodeException.class, () -> session.getRoot(PrimitiveList.Long.factory));
+        assertEquals(999, message.newSession().getRoot(PrimitiveList.Long.factory).get(999));
+    }
+
+    @Test
+    public void testSessionsOnSeveralThreads() throws Exception {
+        final int count = 100000;
+        final int threads = 4;
+        MessageReader message = new MessageReader(longs(count), ReaderOptions.DEFAULT_READER_OPTIONS);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> sums = new ArrayList<>();
+            for (int t = 0; t < threads; ++t) {
+                final int first = t * count / threads;
+                final int end = (t + 1) * count / threads;
+                final MessageReader session = message.newSession();
+                sums.add(executor.submit(() -> {
+                    long sum = 0;
+                    for (int round = 0; round < 10; ++round) {
+                        PrimitiveList.Long.Reader list = session.getRoot(PrimitiveList.Long.factory);
+                        for (int i = first; i < end; ++i) {
+                            sum += list.get(i);
+                        }
+                    }
+                    return sum;
+                }));
+            }
+            long total = 0;
+            for (Future<Long> sum : sums) {
+                total += sum.get();
+            }
+            assertEquals(10L * count * (count - 1) / 2, total);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.capnproto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MessageSpliteratorTest {
+
+    /**
+     * Returns `count` back-to-back two-segment messages. Segment 1 of message `i` holds
+     * the single word `i`.
+     */
+    private static byte[] concatenatedMessages(int count) {
+        ByteBuffer buf = ByteBuffer.allocate(count * 24).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < count; ++i) {
+            buf.putInt(1); // 2 segments
+            buf.putInt(0); // segment 0 is empty
+            buf.putInt(1); // segment 1 has one word
+            buf.putInt(0); // padding
+            buf.putLong(i);
+        }
+        return buf.array();
+    }
+
+    private static long messageId(MessageSpliterator.Frame frame) {
+        return frame.message.arena.segments.get(1).get(0);
+    }
+
+    @Test
+    public void iteratesAllFramesWithOffsets() {
+        ByteBuffer bb = ByteBuffer.wrap(concatenatedMessages(5));
+        List<MessageSpliterator.Frame> frames =
+            Serialize.stream(bb, ReaderOptions.DEFAULT_READER_OPTIONS).collect(Collectors.toList());
+        assertEquals(5, frames.size());
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(i * 24, frames.get(i).offset);
+            assertEquals(24, frames.get(i).sizeInBytes);
+            assertEquals(i, messageId(frames.get(i)));
+            assertEquals(8, frames.get(i).message.arena.segments.get(1).buffer.capacity());
+        }
+        assertEquals(0, bb.position());
+    }
+
+    @Test
+    public void resumesFromOffset() {
+        ByteBuffer bb = ByteBuffer.wrap(concatenatedMessages(5));
+        bb.position(3 * 24);
+        List<Long> ids = Serialize.stream(bb, ReaderOptions.DEFAULT_READER_OPTIONS)
+            .map(MessageSpliteratorTest::messageId).collect(Collectors.toList());
+        assertEquals(java.util.Arrays.asList(3L, 4L), ids);
+    }
+
+    @Test
+    public void splitsOnFrameBoundaries() {
+        ByteBuffer bb = ByteBuffer.wrap(concatenatedMessages(9));
+        MessageSpliterator suffix = new MessageSpliterator(bb, ReaderOptions.DEFAULT_READER_OPTIONS);
+        Spliterator<MessageSpliterator.Frame> prefix = suffix.trySplit();
+        assertNotNull(prefix);
+
+        List<Long> ids = new ArrayList<>();
+        prefix.forEachRemaining(f -> ids.add(messageId(f)));
+        suffix.forEachRemaining(f -> ids.add(messageId(f)));
+        assertEquals(9, ids.size());
+        for (int i = 0; i < 9; ++i) {
+            assertEquals(i, (long) ids.get(i));
+        }
+
+        long sum = Serialize.stream(ByteBuffer.wrap(concatenatedMessages(1000)), ReaderOptions.DEFAULT_READER_OPTIONS)
+            .parallel().mapToLong(MessageSpliteratorTest::messageId).sum();
+        assertEquals(999L * 1000 / 2, sum);
+    }
+
+    @Test
+    public void truncatedFrameThrows() {
+        byte[] bytes = concatenatedMessages(2);
+        ByteBuffer bb = ByteBuffer.wrap(bytes, 0, bytes.length - 8);
+        MessageSpliterator spliterator = new MessageSpliterator(bb, ReaderOptions.DEFAULT_READER_OPTIONS);
+        spliterator.tryAdvance(f -> {});
+        assertThrows(DecodeException.class, () -> spliterator.tryAdvance(f -> {}));
+    }
+}
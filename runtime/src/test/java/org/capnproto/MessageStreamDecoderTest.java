@@ -0,0 +1,135 @@
+package org.capnproto;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MessageStreamDecoderTest {
+
+    /**
+     * Returns a message with `segmentCount` segments, where segment `i` contains `i` words
+     * each set to `i * multiplier`.
+     */
+    private static MessageReader exampleMessage(int segmentCount, long multiplier) {
+        ByteBuffer[] segments = new ByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; ++i) {
+            segments[i] = ByteBuffer.allocate(8 * i).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            for (int j = 0; j < i; ++j) {
+                segments[i].putLong(8 * j, i * multiplier);
+            }
+        }
+        return new MessageReader(segments, ReaderOptions.DEFAULT_READER_OPTIONS);
+    }
+
+    private static void checkMessage(MessageReader message, int segmentCount, long multiplier) {
+        assertEquals(segmentCount, message.arena.segments.size());
+        for (int i = 0; i < segmentCount; ++i) {
+            SegmentReader segment = message.arena.segments.get(i);
+            assertEquals(8 * i, segment.buffer.limit());
+            for (int j = 0; j < i; ++j) {
+                assertEquals(i * multiplier, segment.get(j));
+            }
+        }
+    }
+
+    private static byte[] encode(boolean packed, MessageReader... messages) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(4096);
+        ArrayOutputStream stream = new ArrayOutputStream(out);
+        for (MessageReader message : messages) {
+            if (packed) {
+                SerializePacked.write(stream, message);
+            } else {
+                Serialize.write(stream, message);
+            }
+        }
+        byte[] result = new byte[stream.buf.position()];
+        stream.buf.flip();
+        stream.buf.get(result);
+        return result;
+    }
+
+    private static List<MessageReader> decodeInChunks(MessageStreamDecoder decoder, byte[] bytes, int chunkSize) {
+        List<MessageReader> result = new ArrayList<>();
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            ByteBuffer chunk = ByteBuffer.wrap(bytes, offset, Math.min(chunkSize, bytes.length - offset));
+            MessageReader message;
+            while ((message = decoder.decode(chunk)) != null) {
+                result.add(message);
+            }
+            assertFalse(chunk.hasRemaining());
+        }
+        return result;
+    }
+
+    private void checkRoundTrip(boolean packed) throws IOException {
+        byte[] bytes = encode(packed, exampleMessage(1, 0), exampleMessage(4, 0x0101010101010101L),
+                              exampleMessage(3, 5), exampleMessage(1, 0));
+        for (int chunkSize : new int[]{1, 3, 7, 8, 13, bytes.length}) {
+            MessageStreamDecoder decoder = packed
+                ? MessageStreamDecoder.packed()
+                : new MessageStreamDecoder();
+            List<MessageReader> messages = decodeInChunks(decoder, bytes, chunkSize);
+            assertEquals(4, messages.size());
+            checkMessage(messages.get(0), 1, 0);
+            checkMessage(messages.get(1), 4, 0x0101010101010101L);
+            checkMessage(messages.get(2), 3, 5);
+            checkMessage(messages.get(3), 1, 0);
+            assertTrue(decoder.isAtMessageBoundary());
+        }
+    }
+
+    @Test
+    public void decodesUnpackedChunks() throws IOException {
+        checkRoundTrip(false);
+    }
+
+    @Test
+    public void decodesPackedChunks() throws IOException {
+        checkRoundTrip(true);
+    }
+
+    @Test
+    public void reportsPartialMessage() throws IOException {
+        byte[] bytes = encode(false, exampleMessage(3, 1));
+        MessageStreamDecoder decoder = new MessageStreamDecoder();
+        assertNull(decoder.decode(ByteBuffer.wrap(bytes, 0, bytes.length - 1)));
+        assertFalse(decoder.isAtMessageBoundary());
+    }
+
+    @Test
+    public void enforcesTraversalLimitFromHeader() {
+        byte[] header = new byte[]{0, 0, 0, 0, 100, 0, 0, 0};
+        MessageStreamDecoder decoder = new MessageStreamDecoder(new ReaderOptions(10, 64));
+        assertThrows(DecodeException.class, () -> decoder.decode(ByteBuffer.wrap(header)));
+    }
+
+    @Test
+    public void rejectsPackedRunPastMessageEnd() {
+        // One segment holding one zero word: the segment table packs to a tag and a byte,
+        // and the zero word to a zero tag followed by a count of further zero words.
+        byte[] clean = new byte[]{0x10, 1, 0, 0};
+        MessageStreamDecoder decoder = MessageStreamDecoder.packed();
+        ByteBuffer input = ByteBuffer.wrap(clean);
+        assertEquals(0L, decoder.decode(input).arena.segments.get(0).get(0));
+        assertTrue(decoder.isAtMessageBoundary());
+
+        // The run count arrives in a later chunk.
+        decoder = MessageStreamDecoder.packed();
+        assertNull(decoder.decode(ByteBuffer.wrap(clean, 0, 3)));
+        assertEquals(1, decoder.decode(ByteBuffer.wrap(clean, 3, 1)).arena.segments.size());
+
+        // A count of one more zero word would spill into the next message.
+        byte[] spilling = new byte[]{0x10, 1, 0, 1};
+        MessageStreamDecoder spillingDecoder = MessageStreamDecoder.packed();
+        assertThrows(DecodeException.class, () -> spillingDecoder.decode(ByteBuffer.wrap(spilling)));
+    }
+}
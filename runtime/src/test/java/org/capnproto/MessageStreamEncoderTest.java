@@ -0,0 +1,111 @@
+package org.capnproto;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MessageStreamEncoderTest {
+
+    /**
+     * A non-blocking channel that accepts at most `maxBytesPerWrite` bytes per call and
+     * then reports that it is full on the following call.
+     */
+    private static final class ChokingChannel implements WritableByteChannel {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final int maxBytesPerWrite;
+        boolean full = false;
+
+        ChokingChannel(int maxBytesPerWrite) {
+            this.maxBytesPerWrite = maxBytesPerWrite;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            if (full) {
+                full = false;
+                return 0;
+            }
+            full = true;
+            int n = Math.min(src.remaining(), maxBytesPerWrite);
+            for (int ii = 0; ii < n; ++ii) {
+                out.write(src.get());
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {}
+    }
+
+    /**
+     * Returns a message with `segmentCount` segments of `wordsPerSegment` words holding a
+     * mix of zero, sparse and dense words.
+     */
+    private static MessageReader exampleMessage(int segmentCount, int wordsPerSegment) {
+        ByteBuffer[] segments = new ByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; ++i) {
+            segments[i] = ByteBuffer.allocate(8 * wordsPerSegment).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            for (int j = 0; j < wordsPerSegment; ++j) {
+                long word = (j % 3 == 0) ? 0 : (j % 3 == 1) ? j : 0x0102030405060708L * (i + 1);
+                segments[i].putLong(8 * j, word);
+            }
+        }
+        return new MessageReader(segments, ReaderOptions.DEFAULT_READER_OPTIONS);
+    }
+
+    private static byte[] drain(MessageStreamEncoder encoder, ChokingChannel channel) throws IOException {
+        int calls = 0;
+        while (!encoder.write(channel)) {
+            assertFalse(encoder.isFinished());
+            ++calls;
+        }
+        assertTrue(encoder.isFinished());
+        assertTrue(calls > 0);
+        return channel.out.toByteArray();
+    }
+
+    @Test
+    public void resumesUnpackedWrites() throws IOException {
+        MessageReader message = exampleMessage(3, 5);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Serialize.write(java.nio.channels.Channels.newChannel(expected), message);
+
+        byte[] actual = drain(new MessageStreamEncoder(message), new ChokingChannel(7));
+        assertArrayEquals(expected.toByteArray(), actual);
+    }
+
+    @Test
+    public void resumesPackedWrites() throws IOException {
+        MessageReader message = exampleMessage(3, 5);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        SerializePacked.writeToUnbuffered(java.nio.channels.Channels.newChannel(expected), message);
+
+        byte[] actual = drain(MessageStreamEncoder.packed(message), new ChokingChannel(3));
+        assertArrayEquals(expected.toByteArray(), actual);
+    }
+
+    @Test
+    public void packsLargeMessagesAcrossRefills() throws IOException {
+        MessageReader message = exampleMessage(2, 5000);
+        byte[] packed = drain(MessageStreamEncoder.packed(message), new ChokingChannel(1000));
+
+        MessageReader decoded = SerializePacked.read(new ArrayInputStream(ByteBuffer.wrap(packed)));
+        assertEquals(2, decoded.arena.segments.size());
+        for (int i = 0; i < 2; ++i) {
+            assertEquals(message.arena.segments.get(i).buffer, decoded.arena.segments.get(i).buffer);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.capnproto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.capnproto.TestFactories.BareStructReader;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MessageValidatorTest {
+
+    private static final BareStructReader STRUCT = new BareStructReader();
+
+    // A chain of `links` structs over small segments, so that most pointers are far.
+    private static ByteBuffer[] chain(int links) {
+        BuilderArena arena = new BuilderArena(4, BuilderArena.AllocationStrategy.FIXED_SIZE);
+        TestFactories.buildChain(arena, links);
+        return arena.getSegmentsForOutput();
+    }
+
+    private static void readChain(MessageReader message, int links) {
+        TestFactories.checkChain(message.getRoot(STRUCT), links);
+    }
+
+    @Test
+    public void testValidatedReaderHasNoTraversalLimit() {
+        ReaderOptions options = new ReaderOptions(1000, 64);
+        ByteBuffer[] segments = chain(50);
+
+        MessageReader message = new MessageReader(segments, options);
+        readChain(message, 50);
+        // The traversal limit only allows the message to be read once or twice.
+        assertThrows(DecodeException.class, () -> {
+            for (int i = 0; i < 10; ++i) {
+                readChain(message, 50);
+            }
+        });
+
+        MessageReader validated = MessageValidator.validate(new MessageReader(segments, options), options);
+        for (int i = 0; i < 10; ++i) {
+            readChain(validated, 50);
+        }
+    }
+
+    @Test
+    public void testValidateChecksLimits() {
+        ByteBuffer[] segments = chain(50);
+        MessageReader message = new MessageReader(segments, ReaderOptions.DEFAULT_READER_OPTIONS);
+        assertThrows(DecodeException.class, () -> MessageValidator.validate(message, new ReaderOptions(100, 64)));
+        assertThrows(DecodeException.class, () -> MessageValidator.validate(message, new ReaderOptions(1000, 40)));
+        MessageValidator.validate(message, new ReaderOptions(1000, 51));
+    }
+
+    @Test
+    public void testValidateRejectsOutOfBoundsPointers() {
+        ByteBuffer struct = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        struct.putLong(0, 1L << 48); // a struct with one pointer, right after the root pointer
+        struct.putLong(8, 1L << 32); // ... pointing to a struct with one data word, past the end
+        assertThrows(DecodeException.class, () -> MessageValidator.validate(
+            new MessageReader(new ByteBuffer[]{ struct }, ReaderOptions.DEFAULT_READER_OPTIONS),
+            ReaderOptions.DEFAULT_READER_OPTIONS));
+
+        ByteBuffer far = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        far.putLong(0, WirePointer.FAR | 1L << 32); // a far pointer into segment 1, which doesn't exist
+        assertThrows(DecodeException.class, () -> MessageValidator.validate(
+            new MessageReader(new ByteBuffer[]{ far }, ReaderOptions.DEFAULT_READER_OPTIONS),
+            ReaderOptions.DEFAULT_READER_OPTIONS));
+
+        assertThrows(DecodeException.class, () -> MessageValidator.validate(
+            new MessageReader(new ByteBuffer[0], ReaderOptions.DEFAULT_READER_OPTIONS),
+            ReaderOptions.DEFAULT_READER_OPTIONS));
+    }
+}
@@ -0,0 +1,178 @@
+package org.capnproto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OrphanTest {
+
+    @Test
+    public void testNewOrphanAndAdopt() {
+        MessageBuilder message = new MessageBuilder();
+        Orphan<PrimitiveList.Int.Builder> orphan =
+            message.getOrphanage().newOrphan(PrimitiveList.Int.factory, 3);
+        PrimitiveList.Int.Builder ints = orphan.get();
+        ints.set(0, 10);
+        ints.set(1, 20);
+        ints.set(2, 30);
+
+        AnyPointer.Builder root = message.initRoot(AnyPointer.factory);
+        assertTrue(root.isNull());
+        root.adopt(orphan);
+        assertTrue(orphan.isNull());
+        assertThrows(IllegalStateException.class, () -> orphan.get());
+        assertThrows(IllegalStateException.class, () -> root.adopt(orphan));
+
+        PrimitiveList.Int.Reader reader = root.asReader().getAs(PrimitiveList.Int.factory);
+        assertEquals(3, reader.size());
+        assertEquals(20, reader.get(1));
+    }
+
+    @Test
+    public void testMoveBetweenListElements() {
+        MessageBuilder message = new MessageBuilder();
+        TextList.Builder texts = message.initRoot(AnyPointer.factory).initAs(TextList.factory, 3);
+        texts.set(0, new Text.Reader("first"));
+        texts.set(1, new Text.Reader("second"));
+        long words = Serialize.computeSerializedSizeInWords(message);
+
+        Orphan<Text.Builder> orphan = texts.disown(0);
+        assertFalse(orphan.isNull());
+        assertEquals("first", orphan.get().toString());
+        assertEquals("", texts.get(0).toString());
+
+        // Adopting replaces what was there before.
+        texts.adopt(1, orphan);
+        texts.adopt(2, texts.disown(1));
+
+        TextList.Reader reader = message.getRoot(AnyPointer.factory).asReader().getAs(TextList.factory);
+        assertEquals("", reader.get(0).toString());
+        assertEquals("", reader.get(1).toString());
+        assertEquals("first", reader.get(2).toString());
+
+        // Nothing was copied: only the orphans' pointer words were added.
+        assertEquals(words + 2, Serialize.computeSerializedSizeInWords(message));
+    }
+
+    @Test
+    public void testAdoptAcrossSegments() {
+        MessageBuilder message = new MessageBuilder(1, BuilderArena.AllocationStrategy.FIXED_SIZE);
+        ListList.Builder<TextList.Builder> lists =
+            message.initRoot(AnyPointer.factory).initAs(new ListList.Factory<>(TextList.factory), 2);
+        TextList.Builder first = lists.init(0, 2);
+        first.set(0, new Text.Reader("alpha"));
+        first.set(1, new Text.Reader("beta"));
+
+        Orphan<TextList.Builder> orphan = lists.disown(0);
+        Orphan<Text.Builder> copy = message.getOrphanage().newOrphanCopy(Text.factory, new Text.Reader("gamma"));
+        orphan.get().adopt(0, copy);
+        lists.adopt(1, orphan);
+        assertTrue(message.getSegmentsForOutput().length > 1);
+
+        ListList.Reader<TextList.Reader> reader = message.getRoot(AnyPointer.factory).asReader()
+            .getAs(new ListList.Factory<>(TextList.factory));
+        assertEquals(0, reader.get(0).size());
+        assertEquals("gamma", reader.get(1).get(0).toString());
+        assertEquals("beta", reader.get(1).get(1).toString());
+    }
+
+    @Test
+    public void testCannotAdoptIntoAnotherMessage() {
+        MessageBuilder message = new MessageBuilder();
+        MessageBuilder other = new MessageBuilder();
+        Orphan<Text.Builder> orphan = message.getOrphanage().newOrphan(Text.factory, 4);
+        AnyPointer.Builder root = other.initRoot(AnyPointer.factory);
+        assertThrows(IllegalArgumentException.class, () -> root.adopt(orphan));
+    }
+
+    private static byte[] serialize(MessageBuilder message) throws java.io.IOException {
+        ByteBuffer out = ByteBuffer.allocate((int)Serialize.computeSerializedSizeInWords(message) * 8);
+        Serialize.write(new ArrayOutputStream(out), message);
+        return out.array();
+    }
+
+    private static byte[] payload(MessageBuilder message) throws java.io.IOException {
+        TextList.Builder texts = message.initRoot(AnyPointer.factory).initAs(TextList.factory, 20);
+        for (int ii = 0; ii < texts.size(); ++ii) {
+            texts.set(ii, new Text.Reader("payload text number " + ii));
+        }
+        return serialize(message);
+    }
+
+    private static ListList.Builder<TextList.Builder> envelope(MessageBuilder message) {
+        ListList.Builder<TextList.Builder> lists =
+            message.initRoot(AnyPointer.factory).initAs(new ListList.Factory<>(TextList.factory), 2);
+        lists.init(0, 1).set(0, new Text.Reader("header"));
+        return lists;
+    }
+
+    @Test
+    public void testReferenceExternal() throws java.io.IOException {
+        byte[] bytes = payload(new MessageBuilder());
+        MessageReader reader = Serialize.read(ByteBuffer.wrap(bytes));
+
+        MessageBuilder message = new MessageBuilder();
+        ListList.Builder<TextList.Builder> lists = envelope(message);
+        lists.adopt(1, message.getOrphanage().referenceExternal(
+            TextList.factory, reader.getRoot(AnyPointer.factory)));
+        assertEquals(2, message.getSegmentsForOutput().length);
+
+        // The payload is referenced, not copied.
+        int index = new String(bytes, "ISO-8859-1").indexOf("number 7");
+        bytes[index] = 'N';
+        ListList.Reader<TextList.Reader> lists2 = Serialize.read(ByteBuffer.wrap(serialize(message)))
+            .getRoot(AnyPointer.factory).getAs(new ListList.Factory<>(TextList.factory));
+        assertEquals("header", lists2.get(0).get(0).toString());
+        assertEquals(20, lists2.get(1).size());
+        assertEquals("payload text number 6", lists2.get(1).get(6).toString());
+        assertEquals("payload text Number 7", lists2.get(1).get(7).toString());
+
+        message.reset();
+        envelope(message);
+        assertEquals(1, message.getSegmentsForOutput().length);
+    }
+
+    @Test
+    public void testReferenceExternalCopiesOnWrite() throws java.io.IOException {
+        byte[] bytes = payload(new MessageBuilder());
+        byte[] copy = bytes.clone();
+        MessageReader reader = Serialize.read(ByteBuffer.wrap(bytes));
+
+        MessageBuilder message = new MessageBuilder();
+        ListList.Builder<TextList.Builder> lists = envelope(message);
+        lists.adopt(1, message.getOrphanage().referenceExternal(
+            TextList.factory, reader.getRoot(AnyPointer.factory)));
+
+        TextList.Builder texts = lists.get(1);
+        texts.set(0, new Text.Reader("changed"));
+        assertEquals("changed", texts.get(0).toString());
+        assertEquals("payload text number 19", texts.get(19).toString());
+        assertArrayEquals(copy, bytes);
+
+        TextList.Reader reread = Serialize.read(ByteBuffer.wrap(serialize(message)))
+            .getRoot(AnyPointer.factory).getAs(new ListList.Factory<>(TextList.factory)).get(1);
+        assertEquals("changed", reread.get(0).toString());
+        assertEquals("payload text number 1", reread.get(1).toString());
+    }
+
+    @Test
+    public void testReferenceExternalCopiesAcrossSegments() throws java.io.IOException {
+        byte[] bytes = payload(new MessageBuilder(16, BuilderArena.AllocationStrategy.FIXED_SIZE));
+        MessageReader reader = Serialize.read(ByteBuffer.wrap(bytes));
+
+        MessageBuilder message = new MessageBuilder();
+        ListList.Builder<TextList.Builder> lists = envelope(message);
+        lists.adopt(1, message.getOrphanage().referenceExternal(
+            TextList.factory, reader.getRoot(AnyPointer.factory)));
+
+        // The payload's far pointers would be wrong in this message, so it was copied.
+        assertEquals(1, message.getSegmentsForOutput().length);
+        assertEquals("payload text number 12", lists.asReader(TextList.factory).get(1).get(12).toString());
+    }
+}
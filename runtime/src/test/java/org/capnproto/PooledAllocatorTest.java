@@ -0,0 +1,106 @@
+package org.capnproto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PooledAllocatorTest {
+    @Test
+    public void testSizeClasses() {
+        PooledAllocator allocator = new PooledAllocator(
+            DefaultAllocator.ByteBufferAllocationStyle.REGULAR, 64, 1024, 4);
+        assertEquals(64, allocator.allocateSegment(8).capacity());
+        assertEquals(64, allocator.allocateSegment(64).capacity());
+        assertEquals(128, allocator.allocateSegment(72).capacity());
+        assertEquals(1024, allocator.allocateSegment(1000).capacity());
+        assertEquals(1032, allocator.allocateSegment(1032).capacity());
+    }
+
+    @Test
+    public void testSegmentsGrowWithinMessage() {
+        PooledAllocator allocator = new PooledAllocator();
+        MessageBuilder message = new MessageBuilder(allocator);
+        TextList.Builder texts =
+            message.initRoot(AnyPointer.factory).initAs(TextList.factory, 1024);
+        for (int ii = 0; ii < texts.size(); ++ii) {
+            texts.set(ii, new Text.Reader(new String(new char[1016]).replace('\0', 'x')));
+        }
+        // Over a megabyte, which without growth would take more than a hundred segments.
+        assertTrue(message.getSegmentsForOutput().length <= 10);
+        message.release();
+
+        // The next message starts small again.
+        MessageBuilder next = new MessageBuilder(allocator);
+        next.initRoot(AnyPointer.factory).initAs(Text.factory, 8);
+        assertEquals(PooledAllocator.DEFAULT_MIN_SEGMENT_BYTES,
+                     next.getSegmentsForOutput()[0].capacity());
+    }
+
+    @Test
+    public void testReleaseRecyclesZeroedSegments() {
+        PooledAllocator allocator = new PooledAllocator(
+            DefaultAllocator.ByteBufferAllocationStyle.DIRECT, 64, 1024, 4);
+
+        MessageBuilder message = new MessageBuilder(allocator);
+        PrimitiveList.Long.Builder longs =
+            message.initRoot(AnyPointer.factory).initAs(PrimitiveList.Long.factory, 40);
+        for (int ii = 0; ii < longs.size(); ++ii) {
+            longs.set(ii, -1L);
+        }
+        ByteBuffer[] segments = message.getSegmentsForOutput();
+        assertEquals(2, segments.length);
+        ByteBuffer second = segments[1];
+
+        message.close();
+        assertEquals(2, allocator.pooledSegmentCount());
+
+        MessageBuilder next = new MessageBuilder(allocator);
+        PrimitiveList.Long.Builder reusedLongs =
+            next.initRoot(AnyPointer.factory).initAs(PrimitiveList.Long.factory, 40);
+        assertEquals(0, allocator.pooledSegmentCount());
+        ByteBuffer reused = next.getSegmentsForOutput()[1];
+        assertTrue(reused.isDirect());
+        assertEquals(second.capacity(), reused.capacity());
+        for (int ii = 0; ii < reusedLongs.size(); ++ii) {
+            assertEquals(0L, reusedLongs.get(ii));
+        }
+    }
+
+    @Test
+    public void testReleaseKeepsCallerFirstSegment() {
+        PooledAllocator allocator = new PooledAllocator();
+        ByteBuffer first = ByteBuffer.allocate(64);
+        MessageBuilder message = new MessageBuilder(allocator, first);
+        message.initRoot(AnyPointer.factory).initAs(Text.factory, 200);
+        message.release();
+
+        assertEquals(1, allocator.pooledSegmentCount());
+        for (int ii = 0; ii < first.capacity(); ++ii) {
+            assertEquals(0, first.get(ii));
+        }
+        ByteBuffer[] segments = message.getSegmentsForOutput();
+        assertEquals(1, segments.length);
+        assertSame(first.array(), segments[0].array());
+        assertEquals(0, segments[0].limit());
+    }
+
+    @Test
+    public void testForeignSegmentsAreNotPooled() {
+        PooledAllocator allocator = new PooledAllocator(
+            DefaultAllocator.ByteBufferAllocationStyle.REGULAR, 64, 1024, 1);
+        allocator.releaseSegment(ByteBuffer.allocate(96));
+        allocator.releaseSegment(ByteBuffer.allocateDirect(64));
+        allocator.releaseSegment(ByteBuffer.allocate(64).asReadOnlyBuffer());
+        assertEquals(0, allocator.pooledSegmentCount());
+
+        ByteBuffer segment = ByteBuffer.allocate(64);
+        allocator.releaseSegment(segment);
+        assertSame(segment, allocator.allocateSegment(8));
+        assertNotSame(segment, allocator.allocateSegment(8));
+    }
+}
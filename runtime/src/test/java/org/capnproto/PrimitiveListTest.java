@@ -0,0 +1,94 @@
+package org.capnproto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.NoSuchElementException;
+
+import org.capnproto.TestFactories.BareListBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class PrimitiveListTest {
+
+    @Test
+    public void testIntBulkAccess() {
+        MessageBuilder message = new MessageBuilder();
+        PrimitiveList.Int.Builder builder = message.getRoot(AnyPointer.factory).initAs(PrimitiveList.Int.factory, 5);
+        builder.setAll(new int[] { 3, -1, 4, 1, 5 });
+        assertThrows(IllegalArgumentException.class, () -> builder.setAll(new int[4]));
+
+        IntBuffer view = builder.asIntBuffer();
+        assertEquals(5, view.remaining());
+        view.put(1, -9);
+        assertEquals(-9, builder.get(1));
+
+        PrimitiveList.Int.Reader reader = builder.asReader();
+        int[] copy = new int[7];
+        reader.copyTo(copy, 1);
+        assertArrayEquals(new int[] { 0, 3, -9, 4, 1, 5, 0 }, copy);
+        assertEquals(4, reader.asIntBuffer().get(2));
+        assertEquals(4, reader.sum());
+        assertEquals(-9, reader.min());
+        assertEquals(5, reader.max());
+        assertEquals(4, reader.stream().sum());
+    }
+
+    @Test
+    public void testFloatBulkAccess() {
+        MessageBuilder message = new MessageBuilder();
+        PrimitiveList.Float.Builder builder = message.getRoot(AnyPointer.factory).initAs(PrimitiveList.Float.factory, 10000);
+        float[] values = new float[10000];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = i * 0.5f;
+        }
+        builder.setAll(values);
+
+        PrimitiveList.Float.Reader reader = builder.asReader();
+        float[] copy = new float[values.length];
+        reader.copyTo(copy, 0);
+        assertArrayEquals(values, copy);
+        FloatBuffer view = reader.asFloatBuffer();
+        assertEquals(4999.5f, view.get(9999));
+        assertEquals(0.5 * 9999 * 10000 / 2, reader.sum());
+        assertEquals(0.5 * 9999 * 10000 / 2, reader.stream().sum());
+        assertEquals(0f, reader.min());
+        assertEquals(4999.5f, reader.max());
+    }
+
+    @Test
+    public void testLongListOfStructs() {
+        // A list of structs can be read as a list of its first data field, whose elements are
+        // then not back to back.
+        BuilderArena arena = new BuilderArena(BuilderArena.SUGGESTED_FIRST_SEGMENT_WORDS,
+                                              BuilderArena.SUGGESTED_ALLOCATION_STRATEGY);
+        arena.allocateInLastSegment(1);
+        ListBuilder structs = WireHelpers.initStructListPointer(
+            new BareListBuilder(), 0, arena.getSegment(0), 3, new StructSize((short) 2, (short) 0));
+        for (int i = 0; i < 3; ++i) {
+            structs.segment.buffer.putLong(structs.ptr + i * 16, 10 * (i + 1));
+            structs.segment.buffer.putLong(structs.ptr + i * 16 + 8, -1);
+        }
+
+        PrimitiveList.Long.Reader reader = PrimitiveList.Long.factory.fromPointerReader(arena.getSegment(0), 0, 64);
+        long[] copy = new long[3];
+        reader.copyTo(copy, 0);
+        assertArrayEquals(new long[] { 10, 20, 30 }, copy);
+        assertEquals(30, reader.asLongBuffer().get(2));
+        assertEquals(60, reader.sum());
+        assertEquals(10, reader.min());
+        assertEquals(30, reader.max());
+        assertEquals(3, reader.stream().count());
+    }
+
+    @Test
+    public void testEmptyList() {
+        PrimitiveList.Double.Reader reader = new PrimitiveList.Double.Reader(null, 0, 0, 64, 0, (short) 0, 64);
+        assertEquals(0, reader.sum());
+        assertEquals(0, reader.asDoubleBuffer().remaining());
+        assertThrows(NoSuchElementException.class, reader::min);
+    }
+}
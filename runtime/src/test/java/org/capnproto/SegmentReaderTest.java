@@ -1,6 +1,5 @@
 package org.capnproto;
 
-import org.capnproto.WireHelpers.FollowFarsResult;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -90,6 +90,109 @@ public class SerializePackedTest {
         }
     }
 
+    @Test
+    public void testUnpackWordsFromDirectAndHeapBuffers() throws IOException {
+        java.util.Random random = new java.util.Random(42);
+        byte[] unpacked = new byte[8 * 1000];
+        for (int i = 0; i < unpacked.length; ++i) {
+            // Mostly zeros, with runs of dense words, to exercise every kind of tag.
+            int word = i / 8;
+            if (word % 50 < 10) {
+                unpacked[i] = (byte) (random.nextInt(255) + 1);
+            } else if (random.nextInt(3) == 0) {
+                unpacked[i] = (byte) random.nextInt(256);
+            }
+        }
+
+        byte[] packedBytes = new byte[unpacked.length * 2];
+        ArrayOutputStream writer = new ArrayOutputStream(ByteBuffer.wrap(packedBytes));
+        new PackedOutputStream(writer).write(ByteBuffer.wrap(unpacked));
+        int packedLength = writer.buf.position();
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(packedLength);
+        direct.put(packedBytes, 0, packedLength);
+        direct.flip();
+        ByteBuffer[] inputs = new ByteBuffer[]{ByteBuffer.wrap(packedBytes, 0, packedLength), direct};
+
+        for (ByteBuffer input : inputs) {
+            for (java.nio.ByteOrder order : new java.nio.ByteOrder[]{java.nio.ByteOrder.BIG_ENDIAN,
+                                                                       java.nio.ByteOrder.LITTLE_ENDIAN}) {
+                // ArrayInputStream hands out a read-only view, which has no accessible array;
+                // BufferedInputStreamWrapper reads through its own heap buffer.
+                BufferedInputStream[] streams = new BufferedInputStream[]{
+                    new ArrayInputStream(input.duplicate()),
+                    new BufferedInputStreamWrapper(new ArrayInputStream(input.duplicate()))};
+                for (BufferedInputStream inner : streams) {
+                    ByteBuffer out = ByteBuffer.allocate(unpacked.length).order(order);
+                    assertEquals(unpacked.length, new PackedInputStream(inner).read(out));
+                    assertTrue(Arrays.equals(unpacked, out.array()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testByteBufferReadAndWrite() throws IOException {
+        MessageBuilder first = new MessageBuilder();
+        first.initRoot(AnyPointer.factory).initAs(Text.factory, 100);
+        MessageBuilder second = new MessageBuilder();
+        second.initRoot(AnyPointer.factory).initAs(Data.factory, 3);
+
+        long firstSize = SerializePacked.computePackedSizeInBytes(first);
+        long secondSize = SerializePacked.computePackedSizeInBytes(second);
+        ByteBuffer out = ByteBuffer.allocateDirect((int) (firstSize + secondSize));
+        SerializePacked.write(out, first);
+        assertEquals(firstSize, out.position());
+        SerializePacked.write(out, second);
+        assertEquals(firstSize + secondSize, out.position());
+
+        out.flip();
+        MessageReader firstRead = SerializePacked.read(out);
+        assertEquals(firstSize, out.position());
+        assertEquals(100, firstRead.getRoot(AnyPointer.factory).getAs(Text.factory).size());
+        MessageReader secondRead = SerializePacked.read(out);
+        assertEquals(3, secondRead.getRoot(AnyPointer.factory).getAs(Data.factory).size());
+        assertEquals(out.limit(), out.position());
+
+        ByteBuffer truncated = out.duplicate();
+        truncated.position(0).limit((int) firstSize - 1);
+        assertThrows(DecodeException.class, () -> SerializePacked.read(truncated));
+
+        ByteBuffer tooSmall = ByteBuffer.allocate((int) firstSize - 1);
+        assertThrows(IOException.class, () -> SerializePacked.write(tooSmall, first));
+    }
+
+    @Test
+    public void testComputePackedSizeInBytes() throws IOException {
+        java.util.Random random = new java.util.Random(7);
+        for (int trial = 0; trial < 20; ++trial) {
+            ByteBuffer[] segments = new ByteBuffer[1 + random.nextInt(4)];
+            for (int i = 0; i < segments.length; ++i) {
+                byte[] bytes = new byte[8 * random.nextInt(700)];
+                int density = random.nextInt(9);
+                for (int j = 0; j < bytes.length; ++j) {
+                    if (random.nextInt(8) < density) {
+                        bytes[j] = (byte) (random.nextInt(255) + 1);
+                    }
+                }
+                segments[i] = ByteBuffer.wrap(bytes).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            }
+            MessageBuilder message = MessageBuilder.unsafeConstructFromMessageReader(
+                new MessageReader(segments, ReaderOptions.DEFAULT_READER_OPTIONS));
+
+            long size = SerializePacked.computePackedSizeInBytes(message);
+            ByteBuffer out = ByteBuffer.allocate((int) size);
+            ArrayOutputStream stream = new ArrayOutputStream(out);
+            SerializePacked.write(stream, message);
+            assertEquals(size, stream.buf.position());
+
+            MessageReader decoded = SerializePacked.read(new ArrayInputStream(out));
+            for (int i = 0; i < segments.length; ++i) {
+                assertEquals(segments[i], decoded.arena.segments.get(i).buffer);
+            }
+        }
+    }
+
     @Test
     @Timeout(value = 1000, unit = TimeUnit.MILLISECONDS)
     public void read_shouldThrowDecodingExceptionOnEmptyArrayInputStream() throws IOException {
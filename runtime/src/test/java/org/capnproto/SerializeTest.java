@@ -24,6 +24,7 @@ package org.capnproto;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -188,6 +189,181 @@ public class SerializeTest {
         assertThrows(DecodeException.class, () -> Serialize.read(channel));
   }
 
+  /**
+   * A GatheringByteChannel that accepts at most `maxBytesPerWrite` bytes per call, so that
+   * vectored writes stop partway through a buffer.
+   */
+  private static final class TrickleGatheringChannel implements java.nio.channels.GatheringByteChannel {
+    final java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+    final int maxBytesPerWrite;
+    int gatheringWrites = 0;
+
+    TrickleGatheringChannel(int maxBytesPerWrite) {
+      this.maxBytesPerWrite = maxBytesPerWrite;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) {
+      ++gatheringWrites;
+      long written = 0;
+      for (int ii = offset; ii < offset + length && written < maxBytesPerWrite; ++ii) {
+        while (srcs[ii].hasRemaining() && written < maxBytesPerWrite) {
+          out.write(srcs[ii].get());
+          ++written;
+        }
+      }
+      return written;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) {
+      return write(srcs, 0, srcs.length);
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+      return (int) write(new ByteBuffer[]{src}, 0, 1);
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  @Test
+  public void testGatheringWrite() throws java.io.IOException {
+    byte[] exampleBytes = new byte[]{
+        2, 0, 0, 0, // 3 segments
+        0, 0, 0, 0, // Segment 0 contains 0 words
+        1, 0, 0, 0, // Segment 1 contains 1 words
+        2, 0, 0, 0, // Segment 2 contains 2 words
+        // Segment 1
+        1, 0, 0, 0, 0, 0, 0, 0,
+        // Segment 2
+        2, 0, 0, 0, 0, 0, 0, 0,
+        2, 0, 0, 0, 0, 0, 0, 0
+    };
+    MessageReader messageReader = Serialize.read(ByteBuffer.wrap(exampleBytes));
+
+    TrickleGatheringChannel single = new TrickleGatheringChannel(Integer.MAX_VALUE);
+    Serialize.write(single, messageReader);
+    assertArrayEquals(exampleBytes, single.out.toByteArray());
+    assertEquals(1, single.gatheringWrites);
+
+    TrickleGatheringChannel trickle = new TrickleGatheringChannel(3);
+    Serialize.write(trickle, messageReader);
+    assertArrayEquals(exampleBytes, trickle.out.toByteArray());
+  }
+
+  @Test
+  public void testChannelReadUsesOneAllocation() throws java.io.IOException {
+    byte[] exampleBytes = new byte[]{
+        2, 0, 0, 0, // 3 segments
+        0, 0, 0, 0, // Segment 0 contains 0 words
+        1, 0, 0, 0, // Segment 1 contains 1 words
+        2, 0, 0, 0, // Segment 2 contains 2 words
+        // Segment 1
+        1, 0, 0, 0, 0, 0, 0, 0,
+        // Segment 2
+        2, 0, 0, 0, 0, 0, 0, 0,
+        2, 0, 0, 0, 0, 0, 0, 0
+    };
+    MessageReader messageReader = Serialize.read(new ArrayInputStream(ByteBuffer.wrap(exampleBytes)));
+    checkSegmentContents(3, messageReader.arena);
+    byte[] backing = messageReader.arena.segments.get(0).buffer.array();
+    for (SegmentReader segment : messageReader.arena.segments) {
+      assertTrue(backing == segment.buffer.array());
+    }
+  }
+
+  @Test
+  public void testFillBuffersScattering() throws java.io.IOException {
+    byte[] input = new byte[24];
+    for (int ii = 0; ii < input.length; ++ii) {
+      input[ii] = (byte) ii;
+    }
+    java.io.ByteArrayInputStream in = new java.io.ByteArrayInputStream(input);
+    int[] scatteringReads = new int[1];
+    java.nio.channels.ScatteringByteChannel channel = new java.nio.channels.ScatteringByteChannel() {
+      @Override
+      public long read(ByteBuffer[] dsts, int offset, int length) {
+        ++scatteringReads[0];
+        // Deliver at most 5 bytes per call, so that reads stop partway through a buffer.
+        long n = 0;
+        for (int ii = offset; ii < offset + length && n < 5; ++ii) {
+          while (dsts[ii].hasRemaining() && n < 5) {
+            int b = in.read();
+            if (b < 0) {
+              return n == 0 ? -1 : n;
+            }
+            dsts[ii].put((byte) b);
+            ++n;
+          }
+        }
+        return n;
+      }
+
+      @Override
+      public long read(ByteBuffer[] dsts) {
+        return read(dsts, 0, dsts.length);
+      }
+
+      @Override
+      public int read(ByteBuffer dst) {
+        return (int) read(new ByteBuffer[]{dst}, 0, 1);
+      }
+
+      @Override
+      public boolean isOpen() {
+        return true;
+      }
+
+      @Override
+      public void close() {}
+    };
+
+    ByteBuffer[] buffers = new ByteBuffer[]{ByteBuffer.allocate(8), ByteBuffer.allocate(0), ByteBuffer.allocate(16)};
+    Serialize.fillBuffers(buffers, channel);
+    assertEquals(5, scatteringReads[0]);
+    assertEquals(0, buffers[0].get(0));
+    assertEquals(8, buffers[2].get(0));
+    assertEquals(23, buffers[2].get(15));
+
+    assertThrows(IOException.class,
+                 () -> Serialize.fillBuffers(new ByteBuffer[]{ByteBuffer.allocate(8)}, channel));
+  }
+
+  @Test
+  public void testReadMapped(@TempDir java.nio.file.Path tempDir) throws java.io.IOException {
+    byte[] exampleBytes = new byte[]{
+        1, 0, 0, 0, // 2 segments
+        0, 0, 0, 0, // Segment 0 contains 0 words
+        1, 0, 0, 0, // Segment 1 contains 1 words
+        // Padding
+        0, 0, 0, 0,
+        // Segment 1
+        1, 0, 0, 0, 0, 0, 0, 0
+    };
+    java.nio.file.Path path = tempDir.resolve("message.bin");
+    byte[] fileBytes = new byte[5 + exampleBytes.length];
+    System.arraycopy(exampleBytes, 0, fileBytes, 5, exampleBytes.length);
+    java.nio.file.Files.write(path, fileBytes);
+
+    try (java.nio.channels.FileChannel fc = java.nio.channels.FileChannel.open(path)) {
+      MessageReader messageReader = Serialize.readMapped(fc, 5, ReaderOptions.DEFAULT_READER_OPTIONS);
+      checkSegmentContents(2, messageReader.arena);
+      assertTrue(messageReader.arena.segments.get(1).buffer.isDirect());
+      assertEquals(0, fc.position());
+
+      assertThrows(IOException.class,
+                   () -> Serialize.readMapped(fc, fileBytes.length - 8, ReaderOptions.DEFAULT_READER_OPTIONS));
+    }
+  }
+
     @Test
     @Disabled("Ignored by default because the huge array used in the test results in a long execution")
     public void computeSerializedSizeInWordsShouldNotOverflowOnLargeSegmentCounts() {
@@ -0,0 +1,78 @@
+package org.capnproto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SlabAllocatorTest {
+    @Test
+    public void testCarvesSegmentsFromSlabs() {
+        SlabAllocator allocator = new SlabAllocator(1024, 64);
+        ByteBuffer first = allocator.allocateSegment(8);
+        // A later segment of the same message grows with it.
+        ByteBuffer second = allocator.allocateSegment(8, 128);
+        assertTrue(first.isDirect());
+        assertEquals(64, first.capacity());
+        assertEquals(128, second.capacity());
+        assertEquals(1, allocator.slabCount());
+
+        // Does not fit in what is left of the first slab.
+        assertEquals(1000, allocator.allocateSegment(1000).capacity());
+        assertEquals(2, allocator.slabCount());
+
+        // Larger than a slab.
+        assertEquals(4096, allocator.allocateSegment(4096).capacity());
+        assertEquals(2, allocator.slabCount());
+    }
+
+    @Test
+    public void testSmallMessagesShareSlab() {
+        try (SlabAllocator allocator = new SlabAllocator(4096, 64)) {
+            for (int ii = 0; ii < 32; ++ii) {
+                MessageBuilder message = new MessageBuilder(allocator);
+                message.initRoot(AnyPointer.factory).initAs(Text.factory, 16);
+                assertEquals(64, message.getSegmentsForOutput()[0].capacity());
+            }
+            assertEquals(1, allocator.slabCount());
+        }
+    }
+
+    @Test
+    public void testResetReusesZeroedSlabs() {
+        try (SlabAllocator allocator = new SlabAllocator(4096, 64)) {
+            MessageBuilder message = new MessageBuilder(allocator);
+            PrimitiveList.Long.Builder longs =
+                message.initRoot(AnyPointer.factory).initAs(PrimitiveList.Long.factory, 300);
+            for (int ii = 0; ii < longs.size(); ++ii) {
+                longs.set(ii, ii + 1);
+            }
+            ByteBuffer[] segments = message.getSegmentsForOutput();
+            assertTrue(segments.length > 1);
+            MessageReader reader = new MessageReader(segments, ReaderOptions.DEFAULT_READER_OPTIONS);
+            assertEquals(300L, reader.getRoot(AnyPointer.factory).getAs(PrimitiveList.Long.factory).get(299));
+            int slabs = allocator.slabCount();
+
+            allocator.reset();
+            MessageBuilder next = new MessageBuilder(allocator);
+            PrimitiveList.Long.Builder nextLongs =
+                next.initRoot(AnyPointer.factory).initAs(PrimitiveList.Long.factory, 300);
+            assertEquals(slabs, allocator.slabCount());
+            for (int ii = 0; ii < nextLongs.size(); ++ii) {
+                assertEquals(0L, nextLongs.get(ii));
+            }
+        }
+    }
+
+    @Test
+    public void testClosedAllocatorRejectsAllocations() {
+        SlabAllocator allocator = new SlabAllocator();
+        allocator.allocateSegment(8);
+        allocator.close();
+        assertEquals(0, allocator.slabCount());
+        assertThrows(IllegalStateException.class, () -> allocator.allocateSegment(8));
+    }
+}
@@ -0,0 +1,80 @@
+package org.capnproto;
+
+import org.junit.jupiter.api.Test;
+
+import org.capnproto.TestFactories.BareListBuilder;
+import org.capnproto.TestFactories.BareStructBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class StructListTest {
+
+    private static final BareStructBuilder ELEMENT = new BareStructBuilder(new StructSize((short) 1, (short) 1));
+
+    private static StructList.Reader<StructReader> list(int count) {
+        BuilderArena arena = new BuilderArena(BuilderArena.SUGGESTED_FIRST_SEGMENT_WORDS,
+                                              BuilderArena.SUGGESTED_ALLOCATION_STRATEGY);
+        arena.allocateInLastSegment(2);
+        ListBuilder list = WireHelpers.initStructListPointer(
+            new BareListBuilder(), 0, arena.getSegment(0), count, ELEMENT.structSize());
+        for (int i = 0; i < count; ++i) {
+            StructBuilder element = list._getStructElement(ELEMENT, i);
+            element._setIntField(1, i);
+            WireHelpers.setTextPointer(element.pointers, element.segment, new Text.Reader("element " + i));
+        }
+        return new StructList.Reader<StructReader>(StructReader::new, list.segment, list.ptr, list.elementCount,
+                                                   list.step, list.structDataSize, list.structPointerCount,
+                                                   java.lang.Integer.MAX_VALUE);
+    }
+
+    private static String text(StructReader reader) {
+        return WireHelpers.readTextPointer(reader.segment, reader.pointers, null, 0, 0).toString();
+    }
+
+    @Test
+    public void testCursor() {
+        StructList.Reader<StructReader> list = list(10);
+        StructList.Reader<StructReader>.Cursor cursor = list.cursor();
+        assertEquals(0, cursor.index());
+        assertEquals(0, cursor.get()._getIntField(1));
+
+        StructReader element = cursor.moveTo(7);
+        assertEquals(7, element._getIntField(1));
+        assertEquals("element 7", text(element));
+        assertSame(element, cursor.moveTo(3));
+        assertEquals(3, element._getIntField(1));
+        assertEquals("element 3", text(element));
+        assertEquals(3, cursor.index());
+
+        assertThrows(IndexOutOfBoundsException.class, () -> cursor.moveTo(10));
+        assertThrows(IndexOutOfBoundsException.class, () -> cursor.moveTo(-1));
+    }
+
+    @Test
+    public void testCursorOverEmptyList() {
+        // The empty list is followed by other data, which the cursor must not read.
+        StructList.Reader<StructReader> list = list(0);
+        WireHelpers.setTextPointer(1, (SegmentBuilder) list.segment, new Text.Reader("unrelated"));
+        StructList.Reader<StructReader>.Cursor cursor = list.cursor();
+        assertEquals(-1, cursor.index());
+        assertThrows(IllegalStateException.class, cursor::get);
+        assertThrows(IndexOutOfBoundsException.class, () -> cursor.moveTo(0));
+    }
+
+    @Test
+    public void testForEachWithCursor() {
+        StructList.Reader<StructReader> list = list(100);
+        long[] sum = new long[1];
+        list.forEachWithCursor(element -> sum[0] += element._getIntField(1));
+        assertEquals(99 * 100 / 2, sum[0]);
+
+        sum[0] = 0;
+        list.forEachWithCursor(10, 20, element -> sum[0] += element._getIntField(1));
+        assertEquals(145, sum[0]);
+
+        list(0).forEachWithCursor(element -> sum[0] = -1);
+        assertEquals(145, sum[0]);
+    }
+}
@@ -0,0 +1,88 @@
+package org.capnproto;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Factories for plain StructReader, StructBuilder, ListReader and ListBuilder objects, for
+ * tests that build and read messages without generated code, and fixtures built with them.
+ */
+final class TestFactories {
+
+    private TestFactories() {}
+
+    static final class BareStructReader implements StructReader.Factory<StructReader>,
+                                                    FromPointerReader<StructReader> {
+        @Override
+        public StructReader constructReader(SegmentReader segment, int data, int pointers, int dataSize, short pointerCount, int nestingLimit) {
+            return new StructReader(segment, data, pointers, dataSize, pointerCount, nestingLimit);
+        }
+
+        @Override
+        public StructReader fromPointerReader(SegmentReader segment, int pointer, int nestingLimit) {
+            return WireHelpers.readStructPointer(this, segment, pointer, null, 0, nestingLimit);
+        }
+    }
+
+    static final class BareStructBuilder implements StructBuilder.Factory<StructBuilder> {
+        private final StructSize structSize;
+
+        BareStructBuilder(StructSize structSize) {
+            this.structSize = structSize;
+        }
+
+        @Override
+        public StructBuilder constructBuilder(SegmentBuilder segment, int data, int pointers, int dataSize, short pointerCount) {
+            return new StructBuilder(segment, data, pointers, dataSize, pointerCount);
+        }
+
+        @Override
+        public StructSize structSize() {
+            return this.structSize;
+        }
+    }
+
+    static final class BareListReader implements ListReader.Factory<ListReader> {
+        @Override
+        public ListReader constructReader(SegmentReader segment, int ptr, int elementCount, int step, int structDataSize, short structPointerCount, int nestingLimit) {
+            return new ListReader(segment, ptr, elementCount, step, structDataSize, structPointerCount, nestingLimit);
+        }
+    }
+
+    static final class BareListBuilder implements ListBuilder.Factory<ListBuilder> {
+        @Override
+        public ListBuilder constructBuilder(SegmentBuilder segment, int ptr, int elementCount, int step, int structDataSize, short structPointerCount) {
+            return new ListBuilder(segment, ptr, elementCount, step, structDataSize, structPointerCount);
+        }
+    }
+
+    private static final BareStructBuilder CHAIN_LINK = new BareStructBuilder(new StructSize((short) 1, (short) 2));
+
+    // Builds a chain of `links` structs at the root of `arena`. Each holds its index and a
+    // "link <index>" text in its second pointer, and points to the next through its first.
+    static void buildChain(BuilderArena arena, int links) {
+        arena.allocateInLastSegment(1);
+        SegmentBuilder segment = arena.getSegment(0);
+        int pointer = 0;
+        for (int i = 0; i < links; ++i) {
+            StructBuilder builder = WireHelpers.initStructPointer(CHAIN_LINK, pointer, segment, CHAIN_LINK.structSize());
+            builder._setIntField(0, i);
+            WireHelpers.setTextPointer(builder.pointers + 1, builder.segment, new Text.Reader("link " + i));
+            segment = builder.segment;
+            pointer = builder.pointers;
+        }
+    }
+
+    // Checks a chain built by buildChain(), given its first struct.
+    static void checkChain(StructReader reader, int links) {
+        for (int i = 0; i < links; ++i) {
+            assertEquals(i, reader._getIntField(0));
+            assertEquals("link " + i,
+                         WireHelpers.readTextPointer(reader.segment, reader.pointers + 1, null, 0, 0).toString());
+            if (i + 1 < links) {
+                reader = WireHelpers.readStructPointer(new BareStructReader(), reader.segment, reader.pointers,
+                                                       null, 0, reader.nestingLimit);
+            }
+        }
+        assertEquals(0L, reader.segment.get(reader.pointers));
+    }
+}
@@ -0,0 +1,81 @@
+package org.capnproto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TextTest {
+
+    // A Text.Reader in the middle of a larger buffer, as it is in a message.
+    private static Text.Reader text(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(16 + bytes.length + 8);
+        Arrays.fill(buffer.array(), (byte) 'x');
+        buffer.position(16);
+        buffer.put(bytes);
+        return new Text.Reader(buffer, 2, bytes.length);
+    }
+
+    @Test
+    public void testCharSequence() {
+        Text.Reader ascii = text("http://example.com/");
+        assertEquals(19, ascii.length());
+        assertEquals('h', ascii.charAt(0));
+        assertEquals('/', ascii.charAt(18));
+        assertThrows(IndexOutOfBoundsException.class, () -> ascii.charAt(19));
+        assertEquals("example", ascii.subSequence(7, 14).toString());
+        assertTrue(ascii.subSequence(7, 14) instanceof Text.Reader);
+
+        Text.Reader other = text("naïve 😀");
+        assertEquals(8, other.length());
+        assertEquals(11, other.size());
+        assertEquals('ï', other.charAt(2));
+        assertEquals('\uDE00', other.charAt(7));
+        assertEquals("ïve", other.subSequence(2, 5).toString());
+        assertTrue(other.chars().anyMatch(c -> c == 'v'));
+    }
+
+    @Test
+    public void testContentEquals() {
+        for (String value : new String[] { "", "abc", "naïve", "€5", "😀!" }) {
+            Text.Reader reader = text(value);
+            assertTrue(reader.contentEquals(value), value);
+            assertTrue(reader.startsWith(value), value);
+            assertTrue(reader.startsWith(""), value);
+            assertFalse(reader.contentEquals(value + "x"), value);
+            assertFalse(reader.contentEquals("x"), value);
+        }
+        assertTrue(text("?").contentEquals("\uD83D"));
+        assertFalse(text("naïve").contentEquals("naive"));
+        assertTrue(text("http://example.com/").startsWith("http://"));
+        assertFalse(text("http://example.com/").startsWith("https://"));
+        assertFalse(text("naïve").contentEquals("naï"));
+        assertTrue(text("naïve").startsWith("naï"));
+        assertTrue(text("naïve").startsWith(text("na")));
+    }
+
+    @Test
+    public void testCompareAndHash() {
+        assertTrue(text("abc").compareTo(text("abd")) < 0);
+        assertTrue(text("abc").compareTo(text("ab")) > 0);
+        assertTrue(text("z").compareTo(text("é")) < 0);
+        assertEquals(0, text("abc").compareTo(new Text.Reader("abc")));
+
+        assertEquals(text("naïve"), new Text.Reader("naïve"));
+        assertNotEquals(text("abc"), text("abd"));
+        assertEquals(Arrays.hashCode("naïve".getBytes(StandardCharsets.UTF_8)), text("naïve").hashCode());
+
+        HashMap<Text.Reader, Integer> map = new HashMap<>();
+        map.put(new Text.Reader("key"), 1);
+        assertEquals(1, map.get(text("key")));
+    }
+}